@@ -0,0 +1,253 @@
+package bguspl.set;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A log handler that writes on a background thread: publish only puts the record on a lock-free queue, and the
+ * writer thread formats the records (so the formatter is never contended) and writes them to name.log.
+ * <p>
+ * When the file grows beyond maxBytes it is rolled: it is gzipped to name.1.log.gz (the older rolled files move to
+ * name.2.log.gz and so on, and the ones beyond maxFiles are deleted). When more than capacity records wait for the
+ * writer, the records below WARNING are dropped (and counted) instead of queued, so a flood of log records cannot
+ * run the game out of memory or slow it down to the speed of the disk; the warnings and the errors are always kept.
+ */
+public class AsyncRollingHandler extends Handler {
+
+    /**
+     * The number of waiting records beyond which the records below WARNING are dropped.
+     */
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    /**
+     * The longest time the writer sleeps when there is nothing to write (publish wakes it up before that).
+     */
+    private static final long IDLE_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final Path directory;
+    private final String name;
+    private final int capacity;
+    private volatile long maxBytes;
+    private volatile int maxFiles;
+
+    private final Queue<LogRecord> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long written;
+    private volatile boolean closed;
+    private final Thread writer;
+
+    /**
+     * The file being written and its size (touched by the writer thread only).
+     */
+    private Writer out;
+    private long bytes;
+
+    /**
+     * @param directory - the directory of the log files (created if needed).
+     * @param name      - the name of the log files (without .log).
+     * @param maxBytes  - the size beyond which the file is rolled.
+     * @param maxFiles  - the number of rolled files kept.
+     * @param capacity  - the number of waiting records beyond which the records below WARNING are dropped.
+     * @throws IOException - if the log file cannot be created.
+     */
+    public AsyncRollingHandler(Path directory, String name, long maxBytes, int maxFiles, int capacity) throws IOException {
+        if (maxBytes < 1 || maxFiles < 0 || capacity < 1) throw new IllegalArgumentException("bad log file limits");
+        this.directory = directory;
+        this.name = name;
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+        this.capacity = capacity;
+        Files.createDirectories(directory);
+        open(false);
+        writer = new Thread(this::write, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Changes the size beyond which the file is rolled and the number of rolled files kept (from the next record).
+     */
+    public void setLimits(long maxBytes, int maxFiles) {
+        if (maxBytes < 1 || maxFiles < 0) throw new IllegalArgumentException("bad log file limits");
+        this.maxBytes = maxBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    /**
+     * @return - the file being written.
+     */
+    public Path file() {
+        return directory.resolve(name + ".log");
+    }
+
+    /**
+     * @return - the n-th rolled file (1 is the newest).
+     */
+    public Path rolledFile(int n) {
+        return directory.resolve(name + "." + n + ".log.gz");
+    }
+
+    /**
+     * @return - the number of records dropped because the writer was behind.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+
+    @Override
+    public void publish(LogRecord record) {
+        if (closed || !isLoggable(record)) return;
+        if (queued.get() >= capacity && record.getLevel().intValue() < Level.WARNING.intValue()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        published.incrementAndGet();
+        queue.add(record);
+        if (queued.getAndIncrement() == 0) LockSupport.unpark(writer);
+    }
+
+    /**
+     * Waits (up to a second) until the records published so far are written to the file.
+     */
+    @Override
+    public void flush() {
+        long target = published.get();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (written < target && writer.isAlive() && System.nanoTime() < deadline) {
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Writes the records published so far and closes the file.
+     */
+    @Override
+    public void close() {
+        if (closed) return;
+        closed = true;
+        LockSupport.unpark(writer);
+        try {
+            writer.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void write() {
+        long count = 0;
+        while (true) {
+            boolean done = closed;
+            LogRecord record;
+            while ((record = queue.poll()) != null) {
+                queued.decrementAndGet();
+                write(format(record));
+                written = ++count;
+            }
+            try {
+                if (out != null) out.flush();
+            } catch (IOException e) {
+                reportError(null, e, ErrorManager.FLUSH_FAILURE);
+            }
+            if (done) break;
+            LockSupport.parkNanos(this, IDLE_NANOS);
+        }
+        if (dropped.get() > 0)
+            write("log: dropped " + dropped.get() + " records below " + Level.WARNING + " (the writer was behind)"
+                    + System.lineSeparator());
+        try {
+            if (out != null) out.close();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.CLOSE_FAILURE);
+        }
+    }
+
+    private String format(LogRecord record) {
+        try {
+            return getFormatter() != null ? getFormatter().format(record) : record.getMessage() + System.lineSeparator();
+        } catch (RuntimeException e) {
+            reportError(null, e, ErrorManager.FORMAT_FAILURE);
+            return "";
+        }
+    }
+
+    private void write(String text) {
+        if (out == null) return;
+        try {
+            if (bytes > 0 && bytes + text.length() > maxBytes) roll();
+            out.write(text);
+            // the size in characters, which is the size in bytes for the ascii log lines
+            bytes += text.length();
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.WRITE_FAILURE);
+        }
+    }
+
+    /**
+     * @param append - true to go on writing the file, false to start it anew.
+     */
+    private void open(boolean append) throws IOException {
+        out = new BufferedWriter(new OutputStreamWriter(append
+                ? Files.newOutputStream(file(), StandardOpenOption.CREATE, StandardOpenOption.APPEND)
+                : Files.newOutputStream(file()), StandardCharsets.UTF_8));
+        bytes = 0;
+    }
+
+    /**
+     * Gzips the file to the first rolled file (moving the older ones up) and starts a new file. The file is open again
+     * whatever happens: if the roll fails, the records go on to the end of the file, and the roll is tried again
+     * after another maxBytes.
+     */
+    private void roll() throws IOException {
+        out.close();
+        out = null;
+        boolean rolled = false;
+        try {
+            int maxFiles = this.maxFiles;
+            if (maxFiles > 0) {
+                Files.deleteIfExists(rolledFile(maxFiles));
+                for (int n = maxFiles - 1; n >= 1; --n)
+                    if (Files.exists(rolledFile(n)))
+                        Files.move(rolledFile(n), rolledFile(n + 1), StandardCopyOption.REPLACE_EXISTING);
+                gzip(file(), rolledFile(1));
+            }
+            rolled = true;
+        } catch (IOException e) {
+            reportError(null, e, ErrorManager.GENERIC_FAILURE);
+        } finally {
+            open(!rolled);
+        }
+    }
+
+    private static void gzip(Path source, Path target) throws IOException {
+        Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+        try (InputStream in = Files.newInputStream(source);
+             OutputStream gz = new GZIPOutputStream(Files.newOutputStream(tmp))) {
+            byte[] buffer = new byte[64 * 1024];
+            for (int n; (n = in.read(buffer)) > 0; ) gz.write(buffer, 0, n);
+        }
+        Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+}
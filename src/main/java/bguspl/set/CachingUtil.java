@@ -0,0 +1,165 @@
+package bguspl.set;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A Util decorator that remembers the answers of findSets, keyed by the cards that were searched (as a bitset, so
+ * the order of the cards does not matter), in an LRU cache of a bounded size. The table and the deck change only
+ * when a set is collected or the cards are reshuffled, while the dealer and the players keep asking about them, so
+ * most of the searches become a hash lookup.
+ * <p>
+ * An answer with all the sets of its cards serves any count, and an answer with count sets serves any smaller count.
+ * The sets returned may be shared with other callers, and must not be modified. All the other methods are forwarded.
+ */
+public class CachingUtil implements Util {
+
+    private final Util util;
+    private final Map<Key, Answer> cache;
+
+    /**
+     * The number of findSets calls answered from the cache and by a search (guarded by this).
+     */
+    private long hits;
+    private long misses;
+
+    /**
+     * @param util     - the Util to search with.
+     * @param capacity - the largest number of answers kept (the least recently used answer is evicted first).
+     */
+    public CachingUtil(Util util, int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive");
+        this.util = util;
+        this.cache = new LinkedHashMap<Key, Answer>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Answer> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    /**
+     * The cards of a search, as a bitset.
+     */
+    private static final class Key {
+        private final long[] words;
+        private final int hash;
+
+        Key(List<Integer> cards) {
+            int max = -1;
+            for (int card : cards) max = Math.max(max, card);
+            long[] words = new long[max < 0 ? 0 : (max >>> 6) + 1];
+            for (int card : cards) words[card >>> 6] |= 1L << card;
+            this.words = words;
+            this.hash = Arrays.hashCode(words);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Key && Arrays.equals(words, ((Key) other).words);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    /**
+     * The sets found by a search, complete iff they are all the sets of its cards.
+     */
+    private static final class Answer {
+        final List<int[]> sets;
+        final boolean complete;
+
+        Answer(List<int[]> sets, boolean complete) {
+            this.sets = sets;
+            this.complete = complete;
+        }
+
+        boolean serves(int count) {
+            return complete || sets.size() >= count;
+        }
+    }
+
+    @Override
+    public List<int[]> findSets(List<Integer> deck, int count) {
+        Key key = new Key(deck);
+        synchronized (this) {
+            Answer answer = cache.get(key);
+            if (answer != null && answer.serves(count)) {
+                ++hits;
+                return answer.sets.size() <= count ? answer.sets : answer.sets.subList(0, count);
+            }
+            ++misses;
+        }
+        List<int[]> sets = util.findSets(deck, count);
+        Answer answer = new Answer(Collections.unmodifiableList(sets), sets.size() < count);
+        synchronized (this) {
+            Answer cached = cache.get(key);
+            // keep the answer that serves more counts (another thread may have searched the same cards)
+            if (cached == null || !cached.complete && cached.sets.size() < sets.size())
+                cache.put(key, answer);
+        }
+        return answer.sets;
+    }
+
+    public synchronized long hits() {
+        return hits;
+    }
+
+    public synchronized long misses() {
+        return misses;
+    }
+
+    /**
+     * @return - the number of answers in the cache.
+     */
+    public synchronized int size() {
+        return cache.size();
+    }
+
+    /**
+     * Forwarded (not cached): the cache key would be an allocation, and looking for a single set is cheap.
+     */
+    @Override
+    public boolean containsSet(List<Integer> deck) {
+        return util.containsSet(deck);
+    }
+
+    /**
+     * Forwarded (not cached), like containsSet.
+     */
+    @Override
+    public int findSet(int[] cards, int count, int preferred, int[] set) {
+        return util.findSet(cards, count, preferred, set);
+    }
+
+    @Override
+    public int[] cardToFeatures(int card) {
+        return util.cardToFeatures(card);
+    }
+
+    @Override
+    public int[][] cardsToFeatures(int[] cards) {
+        return util.cardsToFeatures(cards);
+    }
+
+    @Override
+    public boolean testSet(int[] cards) {
+        return util.testSet(cards);
+    }
+
+    @Override
+    public long testSets(int[] cards, int setSize, int count) {
+        return util.testSets(cards, setSize, count);
+    }
+
+    @Override
+    public void spin() {
+        util.spin();
+    }
+}
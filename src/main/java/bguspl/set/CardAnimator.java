@@ -0,0 +1,160 @@
+package bguspl.set;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A user interface decorator that plays the card deals and removals as an animation: each card is drawn (or
+ * cleared) config.tableDelayMillis after the previous one, on an animator thread, while the game state and the
+ * caller move on immediately.
+ * <p>
+ * Token updates wait behind the card updates that were scheduled before them (so a token never shows up on a card
+ * that was not drawn yet). All the other updates are forwarded right away.
+ * <p>
+ * The table updates are kept in one queue, in the order they were scheduled, each with its absolute deadline. The
+ * deadlines never decrease along the queue, so the animator thread runs them in that order, waiting for each
+ * deadline in turn.
+ */
+public class CardAnimator implements UserInterface, Runnable {
+
+    private final UserInterface ui;
+    private final long delayNanos;
+
+    /**
+     * A table update and its deadline (System.nanoTime()).
+     */
+    private static class Update {
+        final long deadline;
+        final Runnable action;
+
+        Update(long deadline, Runnable action) {
+            this.deadline = deadline;
+            this.action = action;
+        }
+    }
+
+    /**
+     * The scheduled table updates, in the order of their deadlines (guarded by this).
+     */
+    private final Queue<Update> updates = new ArrayDeque<>();
+
+    /**
+     * The deadline of the last scheduled table update (guarded by this).
+     */
+    private long last;
+    private boolean terminate;
+
+    public CardAnimator(Config config, UserInterface ui) {
+        this.ui = ui;
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(config.tableDelayMillis);
+        this.last = System.nanoTime();
+        Thread thread = new Thread(this, "card-animator");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * The animator thread starts here.
+     */
+    @Override
+    public void run() {
+        while (true) {
+            Update update;
+            synchronized (this) {
+                try {
+                    long left = 0;
+                    while (!terminate && (updates.isEmpty() || (left = updates.peek().deadline - System.nanoTime()) > 0))
+                        if (updates.isEmpty()) wait();
+                        else TimeUnit.NANOSECONDS.timedWait(this, left);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                if (terminate) return;
+                update = updates.poll();
+            }
+            try {
+                update.action.run();
+            } catch (RuntimeException ignored) {
+                // a failed update must not stop the ones after it
+            }
+        }
+    }
+
+    /**
+     * Schedules a table update after the ones already scheduled.
+     *
+     * @param delay  - true iff the update is a card animation step (comes tableDelayMillis after the previous one).
+     * @param update - the update.
+     */
+    private synchronized void schedule(boolean delay, Runnable update) {
+        long now = System.nanoTime();
+        last = Math.max(now, last) + (delay ? delayNanos : 0);
+        updates.add(new Update(last, update));
+        notifyAll();
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        schedule(true, () -> ui.placeCard(card, slot));
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        schedule(true, () -> ui.removeCard(slot));
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        schedule(false, () -> ui.placeToken(player, slot));
+    }
+
+    @Override
+    public void removeTokens() {
+        schedule(false, ui::removeTokens);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        schedule(false, () -> ui.removeTokens(slot));
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        schedule(false, () -> ui.removeToken(player, slot));
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        ui.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        ui.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        ui.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        ui.setScore(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        ui.announceWinner(players);
+    }
+
+    @Override
+    public void dispose() {
+        synchronized (this) {
+            terminate = true;
+            notifyAll();
+        }
+        ui.dispose();
+    }
+}
@@ -21,6 +21,11 @@ public class Config {
     public final long randomSpinMin;
     public final long randomSpinMax;
 
+    /**
+     * The seed all the random sources of the game are derived from (see seed(String))
+     */
+    public final long randomSeed;
+
     /**
      * The number of features on the cards (e.g. shape, color etc.)
      */
@@ -36,6 +41,12 @@ public class Config {
      */
     public final int deckSize;
 
+    /**
+     * The largest number of sets for which the set catalogue is built at runtime (bigger decks need a prebuilt
+     * catalogue resource, otherwise sets are searched for without it)
+     */
+    public final long setCatalogueMaxSets;
+
     /**
      * The number of human players in the game.
      */
@@ -46,16 +57,70 @@ public class Config {
      */
     public final int computerPlayers;
 
+    /**
+     * The strategies of the computer players ("random" or "seeker"), assigned to the computer players in turn
+     */
+    public final String[] computerStrategies;
+
     /**
      * The total number of players (human + computer) in the game
      */
     public final int players;
 
+    /**
+     * What happens to a key press when the inbox of the player is full: drop-newest, drop-oldest or coalesce
+     * (a key press on a slot that is already waiting cancels it)
+     */
+    public final String inputOverflowPolicy;
+
+    /**
+     * How the game runs: "threads" (a thread for the dealer, each player and each computer player) or "event-loop"
+     * (the dealer, all the players and all the timers on the dealer thread)
+     */
+    public final String engine;
+
+    /**
+     * Whether the dealer of the threads engine is split in two stages: the dealer thread checks the claims, and a
+     * second thread changes the table, the deck and the user interface (connected by a bounded queue)
+     */
+    public final boolean dealerPipeline;
+
+    /**
+     * The number of threads of the pool that moves the computer players of all the games (0 for a thread per computer
+     * player in the threads engine, and moves on the dealer thread in the event loop engine)
+     */
+    public final int aiThreads;
+
+    /**
+     * The file of the persistent leaderboard the results of each game are added to (empty for none)
+     */
+    public final String leaderboardFile;
+
+    /**
+     * The file the state of the running game is saved to, and resumed from when the game starts (empty for none)
+     */
+    public final String snapshotFile;
+
+    /**
+     * The number of milliseconds between two saves of the state of the running game
+     */
+    public final long snapshotIntervalMillis;
+
+    /**
+     * The largest number of findSets answers remembered (see CachingUtil), 0 to search every time
+     */
+    public final int findSetsCacheSize;
+
     /**
      * Whether to print out hints to the console or not
      */
     public final boolean hints;
 
+    /**
+     * Whether the dealer picks the cards it deals so that a legal set is on the table whenever the deck holds one
+     */
+    public final boolean guaranteeSetOnTable;
+
     /**
      * The number of milliseconds until the dealer reshuffles the deck (0 show timer since last action, -1 show nothing)
      */
@@ -77,7 +142,7 @@ public class Config {
     public final long pointFreezeMillis;
 
     /**
-     * The number of milliseconds to delay before removing/placing a card on the table
+     * The number of milliseconds between two card animations (placing/removing a card) in the user interface
      */
     public final long tableDelayMillis;
 
@@ -86,6 +151,29 @@ public class Config {
      */
     public final long endGamePauseMillies;
 
+    /**
+     * The port on which remote players can connect (0 for any free port, -1 to disable remote players)
+     */
+    public final int serverPort;
+
+    /**
+     * The user interface: "swing" (a window, every call is also logged by UserInterfaceDecorator) or "headless" (no
+     * window, no logging, see HeadlessUserInterface)
+     */
+    public final String userInterface;
+
+    /**
+     * Whether the game starts dealing while the user interface is built (it shows the game once it is built), instead
+     * of waiting for it
+     */
+    public final boolean fastStartup;
+
+    /**
+     * The number of times per second the countdown and the freezes are shown (see DisplayClock), 0 to show them
+     * whenever the dealer and the players update them
+     */
+    public final double displayFps;
+
     /**
      * The names of the players to display on the screen
      * Note: if there are more players than names, the remaining players will be called "Player 3", "Player 4", etc.
@@ -186,32 +274,54 @@ public class Config {
         Level logLevel = Level.parse(properties.getProperty("LogLevel", "ALL"));
         String logFormat = properties.getProperty("LogFormat", "[%1$tT.%1$tL] [%2$-7s] %3$s%n");
         Main.setLoggerLevelAndFormat(logger, logLevel, logFormat);
+        long logFileMaxBytes = (long) (Double.parseDouble(properties.getProperty("LogFileMaxMegabytes", "10")) * 1024 * 1024);
+        int logFiles = Integer.parseInt(properties.getProperty("LogFiles", "5"));
+        Main.setLogFileLimits(logger, logFileMaxBytes, logFiles);
 
         // for debugging
         randomSpinMin = Long.parseLong(properties.getProperty("RandomSpinMin", "0"));
         randomSpinMax = Long.parseLong(properties.getProperty("RandomSpinMax", "0"));
         if (randomSpinMax < randomSpinMin || randomSpinMin < 0)
             logger.severe("invalid random spin cycles: max: " + randomSpinMax + " min: " + randomSpinMin);
+        String seed = properties.getProperty("RandomSeed", "").trim();
+        randomSeed = seed.isEmpty() ? System.nanoTime() ^ System.currentTimeMillis() : Long.parseLong(seed);
+        logger.info("random seed: " + randomSeed + " (set RandomSeed=" + randomSeed + " to replay)");
 
         // cards settings
         featureSize = Integer.parseInt(properties.getProperty("FeatureSize", "3"));
         featureCount = Integer.parseInt(properties.getProperty("FeatureCount", "4"));
         deckSize = (int) Math.pow(featureSize, featureCount);
+        setCatalogueMaxSets = Long.parseLong(properties.getProperty("SetCatalogueMaxSets", "1000000"));
+        findSetsCacheSize = Integer.parseInt(properties.getProperty("FindSetsCacheSize", "1024"));
 
         // gameplay settings
         humanPlayers = Integer.parseInt(properties.getProperty("HumanPlayers", "2"));
         computerPlayers = Integer.parseInt(properties.getProperty("ComputerPlayers", "0"));
         players = humanPlayers + computerPlayers;
+        computerStrategies = Arrays.stream(properties.getProperty("ComputerStrategies", "random").split(","))
+                .map(String::trim).toArray(String[]::new);
 
         hints = Boolean.parseBoolean(properties.getProperty("Hints", "False"));
+        inputOverflowPolicy = properties.getProperty("InputOverflowPolicy", "drop-newest");
+        engine = properties.getProperty("Engine", "threads").trim();
+        dealerPipeline = Boolean.parseBoolean(properties.getProperty("DealerPipeline", "False"));
+        aiThreads = Integer.parseInt(properties.getProperty("AiThreads", "0").trim());
+        leaderboardFile = properties.getProperty("LeaderboardFile", "").trim();
+        snapshotFile = properties.getProperty("SnapshotFile", "").trim();
+        snapshotIntervalMillis = (long) (Double.parseDouble(properties.getProperty("SnapshotIntervalSeconds", "1")) * 1000.0);
+        guaranteeSetOnTable = Boolean.parseBoolean(properties.getProperty("GuaranteeSetOnTable", "False"));
         turnTimeoutMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutSeconds", "60")) * 1000.0);
         turnTimeoutWarningMillis = (long) (Double.parseDouble(properties.getProperty("TurnTimeoutWarningSeconds", "60")) * 1000.0);
         pointFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PointFreezeSeconds", "1")) * 1000.0);
         penaltyFreezeMillis = (long) (Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds", "3")) * 1000.0);
         tableDelayMillis = (long) (Double.parseDouble(properties.getProperty("TableDelaySeconds", "0.1")) * 1000.0);
         endGamePauseMillies = (long) (Double.parseDouble(properties.getProperty("EndGamePauseSeconds", "5")) * 1000.0);
+        serverPort = Integer.parseInt(properties.getProperty("ServerPort", "-1"));
 
         // ui settings
+        userInterface = properties.getProperty("UserInterface", "swing").trim();
+        fastStartup = Boolean.parseBoolean(properties.getProperty("FastStartup", "False"));
+        displayFps = Double.parseDouble(properties.getProperty("DisplayFramesPerSecond", "0"));
         String[] names = properties.getProperty("PlayerNames", "Player 1, Player 2").split(",");
         playerNames = new String[players];
         Arrays.setAll(playerNames, i -> i < names.length ? names[i].trim() : "Player " + (i + 1));
@@ -225,9 +335,9 @@ public class Config {
         playerCellHeight = Integer.parseInt(properties.getProperty("PlayerCellHeight", "40"));
         fontSize = Integer.parseInt(properties.getProperty("FontSize", "40"));
 
-        // keyboard input data
-        playerKeys = new int[players][rows * columns];
-        for (int i = 0; i < players; i++) {
+        // keyboard input data (computer players have no keys, so there is nothing to keep per computer player)
+        playerKeys = new int[humanPlayers][rows * columns];
+        for (int i = 0; i < humanPlayers; i++) {
             String defaultCodes = "";
             if (i < 2) defaultCodes = playerKeysDefaults[i];
             String playerKeysString = properties.getProperty("PlayerKeys" + (i + 1), defaultCodes);
@@ -241,7 +351,26 @@ public class Config {
         }
     }
 
+    /**
+     * @param player - the player id.
+     * @return - the key codes of the slots for a human player (an empty array for a computer player).
+     */
     public int[] playerKeys(int player) {
-        return playerKeys[player];
+        return player < humanPlayers ? playerKeys[player] : new int[0];
+    }
+
+    /**
+     * Derives the seed of a named random stream (e.g. "dealer", "computer-0" or a thread name) from randomSeed,
+     * so that every random source gets its own reproducible sequence.
+     *
+     * @param stream - the name of the random stream.
+     * @return - the seed of the stream.
+     */
+    public long seed(String stream) {
+        // SplitMix64 finalizer
+        long z = randomSeed ^ (stream.hashCode() * 0x9E3779B97F4A7C15L);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
     }
 }
@@ -0,0 +1,202 @@
+package bguspl.set;
+
+import java.util.Arrays;
+
+/**
+ * A user interface that the game can use before the real one is built (e.g. while the card images load): until a
+ * user interface is attached, the calls only update the state that would be on the screen, and attach replays that
+ * state into it. From then on all the calls are forwarded.
+ * <p>
+ * A user interface may never be attached (e.g. if it failed to build), then the calls only keep the state.
+ */
+public class DeferredUserInterface implements UserInterface {
+
+    private static final int EMPTY = -1;
+
+    /**
+     * The attached user interface (null until attach).
+     */
+    private volatile UserInterface ui;
+
+    /**
+     * The state to replay (guarded by this, until attach).
+     */
+    private final int[] slotToCard;
+    private final boolean[][] tokens;
+    private final int[] score;
+    private final long[] freeze;
+    private long countdown = -1;
+    private boolean warn;
+    private long elapsed = -1;
+    private int[] winners;
+    private boolean disposed;
+
+    public DeferredUserInterface(Config config) {
+        slotToCard = new int[config.tableSize];
+        Arrays.fill(slotToCard, EMPTY);
+        tokens = new boolean[config.tableSize][config.players];
+        score = new int[config.players];
+        freeze = new long[config.players];
+    }
+
+    /**
+     * Shows the state so far in the user interface, and forwards all the calls to it from now on.
+     */
+    public synchronized void attach(UserInterface ui) {
+        if (this.ui != null) throw new IllegalStateException("a user interface is already attached");
+        for (int slot = 0; slot < slotToCard.length; ++slot) {
+            if (slotToCard[slot] != EMPTY) ui.placeCard(slotToCard[slot], slot);
+            for (int player = 0; player < tokens[slot].length; ++player)
+                if (tokens[slot][player]) ui.placeToken(player, slot);
+        }
+        for (int player = 0; player < score.length; ++player) {
+            if (score[player] != 0) ui.setScore(player, score[player]);
+            if (freeze[player] > 0) ui.setFreeze(player, freeze[player]);
+        }
+        if (countdown >= 0) ui.setCountdown(countdown, warn);
+        if (elapsed >= 0) ui.setElapsed(elapsed);
+        if (winners != null) ui.announceWinner(winners);
+        this.ui = ui;
+        if (disposed) ui.dispose();
+    }
+
+    /**
+     * @return - true iff a user interface is attached.
+     */
+    public boolean attached() {
+        return ui != null;
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        if (ui == null) synchronized (this) {
+            if (ui == null) {
+                slotToCard[slot] = card;
+                return;
+            }
+        }
+        ui.placeCard(card, slot);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        if (ui == null) synchronized (this) {
+            if (ui == null) {
+                slotToCard[slot] = EMPTY;
+                return;
+            }
+        }
+        ui.removeCard(slot);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        if (ui == null) synchronized (this) {
+            if (ui == null) {
+                tokens[slot][player] = true;
+                return;
+            }
+        }
+        ui.placeToken(player, slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        if (ui == null) synchronized (this) {
+            if (ui == null) {
+                for (boolean[] slot : tokens) Arrays.fill(slot, false);
+                return;
+            }
+        }
+        ui.removeTokens();
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        if (ui == null) synchronized (this) {
+            if (ui == null) {
+                Arrays.fill(tokens[slot], false);
+                return;
+            }
+        }
+        ui.removeTokens(slot);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        if (ui == null) synchronized (this) {
+            if (ui == null) {
+                tokens[slot][player] = false;
+                return;
+            }
+        }
+        ui.removeToken(player, slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        if (ui == null) synchronized (this) {
+            if (ui == null) {
+                this.countdown = millies;
+                this.warn = warn;
+                return;
+            }
+        }
+        ui.setCountdown(millies, warn);
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        if (ui == null) synchronized (this) {
+            if (ui == null) {
+                this.elapsed = millies;
+                return;
+            }
+        }
+        ui.setElapsed(millies);
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        if (ui == null) synchronized (this) {
+            if (ui == null) {
+                freeze[player] = millies;
+                return;
+            }
+        }
+        ui.setFreeze(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        if (ui == null) synchronized (this) {
+            if (ui == null) {
+                this.score[player] = score;
+                return;
+            }
+        }
+        ui.setScore(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        if (ui == null) synchronized (this) {
+            if (ui == null) {
+                winners = players.clone();
+                return;
+            }
+        }
+        ui.announceWinner(players);
+    }
+
+    @Override
+    public void dispose() {
+        if (ui == null) synchronized (this) {
+            if (ui == null) {
+                disposed = true;
+                return;
+            }
+        }
+        ui.dispose();
+    }
+}
@@ -0,0 +1,132 @@
+package bguspl.set;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+
+/**
+ * The Java Flight Recorder events of the game engine. They cost next to nothing unless a recording enables them
+ * (see the bundled settings file set.jfc). The hot paths check the type of an event is enabled before creating it
+ * (an event is an object, so creating it would allocate in every claim, key press and search).
+ */
+public final class GameEvents {
+
+    private static final String CATEGORY = "Set Game";
+
+    public static final EventType CLAIM_SUBMITTED = EventType.getEventType(ClaimSubmitted.class);
+    public static final EventType CLAIM_VERDICT = EventType.getEventType(ClaimVerdict.class);
+    public static final EventType RESHUFFLE = EventType.getEventType(Reshuffle.class);
+    public static final EventType FIND_SETS = EventType.getEventType(FindSets.class);
+    public static final EventType TOKEN = EventType.getEventType(Token.class);
+    public static final EventType FREEZE = EventType.getEventType(Freeze.class);
+
+    private GameEvents() {}
+
+    /**
+     * Loads all the event classes. The first event created in a JVM initializes the flight recorder, which takes a
+     * few hundred milliseconds, so the launch does it on a background thread instead of the first deal.
+     */
+    public static void preload() {
+        new ClaimSubmitted();
+        new ClaimVerdict();
+        new Reshuffle();
+        new FindSets();
+        new Token();
+        new Freeze();
+    }
+
+    @Name("bguspl.set.ClaimSubmitted")
+    @Label("Claim Submitted")
+    @Description("A player asked the dealer to check its set")
+    @Category({CATEGORY, "Claims"})
+    @StackTrace(false)
+    public static class ClaimSubmitted extends Event {
+        @Label("Player")
+        public int player;
+    }
+
+    @Name("bguspl.set.ClaimVerdict")
+    @Label("Claim Verdict")
+    @Description("The dealer checked the set of a player")
+    @Category({CATEGORY, "Claims"})
+    @StackTrace(false)
+    public static class ClaimVerdict extends Event {
+        @Label("Player")
+        public int player;
+
+        @Label("Verdict")
+        @Description("point, penalty or stale (the tokens of the claim changed before it was checked)")
+        public String verdict;
+
+        @Label("Latency")
+        @Description("The time from the submission of the claim to the verdict")
+        @Timespan(Timespan.NANOSECONDS)
+        public long latency;
+    }
+
+    @Name("bguspl.set.Reshuffle")
+    @Label("Reshuffle")
+    @Description("The dealer returned all the cards on the table to the deck")
+    @Category({CATEGORY, "Dealer"})
+    @StackTrace(false)
+    public static class Reshuffle extends Event {
+        @Label("Reason")
+        @Description("timeout, no set on the table or game end")
+        public String reason;
+
+        @Label("Cards")
+        public int cards;
+    }
+
+    @Name("bguspl.set.FindSets")
+    @Label("Find Sets")
+    @Description("A search for legal sets among cards")
+    @Category({CATEGORY, "Util"})
+    @StackTrace(false)
+    public static class FindSets extends Event {
+        @Label("Cards")
+        public int cards;
+
+        @Label("Requested")
+        public int requested;
+
+        @Label("Found")
+        public int found;
+    }
+
+    @Name("bguspl.set.Token")
+    @Label("Token")
+    @Description("A player placed or removed a token")
+    @Category({CATEGORY, "Table"})
+    @StackTrace(false)
+    public static class Token extends Event {
+        @Label("Player")
+        public int player;
+
+        @Label("Slot")
+        public int slot;
+
+        @Label("Placed")
+        @Description("true if the token was placed, false if it was removed")
+        public boolean placed;
+    }
+
+    @Name("bguspl.set.Freeze")
+    @Label("Freeze")
+    @Description("A player was frozen after a claim (the event spans the freeze, from its start to its end)")
+    @Category({CATEGORY, "Players"})
+    @StackTrace(false)
+    public static class Freeze extends Event {
+        @Label("Player")
+        public int player;
+
+        @Label("Reason")
+        @Description("point or penalty")
+        public String reason;
+    }
+}
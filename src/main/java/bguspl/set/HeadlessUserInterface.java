@@ -0,0 +1,176 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A user interface with no window: every call only updates a counter and the latest state it shows (the cards, the
+ * number of tokens on each slot, the countdown, the scores...). There is no logging, no string formatting and no
+ * spin, so a headless game (a tournament, a benchmark, a server room) pays for the engine only.
+ * <p>
+ * The state may be read by any thread while the game runs (e.g. by a test or a monitor).
+ */
+public class HeadlessUserInterface implements UserInterface {
+
+    /**
+     * The methods that are counted (the index of each counter).
+     */
+    public enum Call {
+        PLACE_CARD, REMOVE_CARD, PLACE_TOKEN, REMOVE_TOKEN, REMOVE_TOKENS, SET_COUNTDOWN, SET_ELAPSED, SET_FREEZE,
+        SET_SCORE, ANNOUNCE_WINNER, DISPOSE
+    }
+
+    private static final int EMPTY = -1;
+
+    private final AtomicLongArray calls = new AtomicLongArray(Call.values().length);
+
+    private final AtomicIntegerArray slotToCard;
+    private final AtomicIntegerArray tokensOnSlot;
+    private final AtomicIntegerArray score;
+    private final AtomicLongArray freeze;
+    private volatile long countdown;
+    private volatile boolean warn;
+    private volatile long elapsed;
+    private volatile int[] winners;
+
+    public HeadlessUserInterface(Config config) {
+        slotToCard = new AtomicIntegerArray(config.tableSize);
+        for (int slot = 0; slot < config.tableSize; ++slot) slotToCard.set(slot, EMPTY);
+        tokensOnSlot = new AtomicIntegerArray(config.tableSize);
+        score = new AtomicIntegerArray(config.players);
+        freeze = new AtomicLongArray(config.players);
+    }
+
+    private void count(Call call) {
+        calls.getAndIncrement(call.ordinal());
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        count(Call.PLACE_CARD);
+        slotToCard.set(slot, card);
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        count(Call.REMOVE_CARD);
+        slotToCard.set(slot, EMPTY);
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        count(Call.PLACE_TOKEN);
+        tokensOnSlot.incrementAndGet(slot);
+    }
+
+    @Override
+    public void removeTokens() {
+        count(Call.REMOVE_TOKENS);
+        for (int slot = 0; slot < tokensOnSlot.length(); ++slot) tokensOnSlot.set(slot, 0);
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        count(Call.REMOVE_TOKENS);
+        tokensOnSlot.set(slot, 0);
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        count(Call.REMOVE_TOKEN);
+        tokensOnSlot.decrementAndGet(slot);
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        count(Call.SET_COUNTDOWN);
+        this.countdown = millies;
+        this.warn = warn;
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        count(Call.SET_ELAPSED);
+        this.elapsed = millies;
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        count(Call.SET_FREEZE);
+        freeze.set(player, millies);
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        count(Call.SET_SCORE);
+        this.score.set(player, score);
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        count(Call.ANNOUNCE_WINNER);
+        this.winners = players.clone();
+    }
+
+    @Override
+    public void dispose() {
+        count(Call.DISPOSE);
+    }
+
+    /**
+     * @return - the number of calls of the method.
+     */
+    public long calls(Call call) {
+        return calls.get(call.ordinal());
+    }
+
+    /**
+     * @return - the card shown in the slot (-1 for none).
+     */
+    public int card(int slot) {
+        return slotToCard.get(slot);
+    }
+
+    /**
+     * @return - the number of tokens shown on the slot.
+     */
+    public int tokens(int slot) {
+        return tokensOnSlot.get(slot);
+    }
+
+    public long countdown() {
+        return countdown;
+    }
+
+    public boolean warn() {
+        return warn;
+    }
+
+    public long elapsed() {
+        return elapsed;
+    }
+
+    public int score(int player) {
+        return score.get(player);
+    }
+
+    public long freeze(int player) {
+        return freeze.get(player);
+    }
+
+    /**
+     * @return - the winners announced (null before the end of the game).
+     */
+    public int[] winners() {
+        int[] winners = this.winners;
+        return winners == null ? null : winners.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("calls:");
+        for (Call call : Call.values())
+            if (calls(call) > 0) sb.append(' ').append(call.name().toLowerCase()).append('=').append(calls(call));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package bguspl.set;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A histogram of non-negative values with a fixed relative precision, in the spirit of HdrHistogram: the values
+ * below 2^precisionBits are counted exactly, and every power of two above them is split into 2^precisionBits equal
+ * buckets, so a quantile is off by less than 1 / 2^precisionBits of its value. The memory is fixed when the
+ * histogram is created (about (log2(highestValue) - precisionBits + 1) * 2^precisionBits longs), however many values
+ * are recorded.
+ * <p>
+ * Recording is lock-free and can be done from any number of threads; the queries can run at any time (while values
+ * are recorded they see a recent, not necessarily atomic, state).
+ */
+public class Histogram {
+
+    private final int precisionBits;
+    private final long highestValue;
+    private final AtomicLongArray counts;
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * @param precisionBits - the number of bits of precision of the values (e.g. 3 for 12.5%, 7 for 1%).
+     * @param highestValue  - the highest value tracked, bigger values are counted as this value.
+     */
+    public Histogram(int precisionBits, long highestValue) {
+        if (precisionBits < 1 || precisionBits > 16) throw new IllegalArgumentException("precisionBits must be in [1, 16]");
+        if (highestValue < 1) throw new IllegalArgumentException("highestValue must be positive");
+        this.precisionBits = precisionBits;
+        this.highestValue = highestValue;
+        this.counts = new AtomicLongArray(index(highestValue) + 1);
+    }
+
+    private int index(long value) {
+        if (value < 1L << precisionBits) return (int) value;
+        int shift = 63 - Long.numberOfLeadingZeros(value) - precisionBits;
+        return (shift << precisionBits) + (int) (value >>> shift);
+    }
+
+    /**
+     * @return - the highest value that is counted in the bucket at the given index.
+     */
+    private long highestInBucket(int index) {
+        if (index < 1 << precisionBits) return index;
+        int shift = (index >>> precisionBits) - 1;
+        long sub = index - ((long) shift << precisionBits);
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * @param value - the value to record (negative values are counted as 0).
+     */
+    public void record(long value) {
+        value = Math.max(0, Math.min(value, highestValue));
+        counts.incrementAndGet(index(value));
+        sum.addAndGet(value);
+        long seen;
+        while (value > (seen = max.get()) && !max.compareAndSet(seen, value)) ;
+        count.incrementAndGet();
+    }
+
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * @return - the largest value recorded (exact), 0 if none.
+     */
+    public long max() {
+        return max.get();
+    }
+
+    /**
+     * @return - the mean of the values recorded (exact), 0 if none.
+     */
+    public double mean() {
+        long count = this.count.get();
+        return count == 0 ? 0 : (double) sum.get() / count;
+    }
+
+    /**
+     * @param percentile - the percentile, in [0, 100].
+     * @return - the value at the percentile (the highest value of its bucket, but at most the max), 0 if empty.
+     */
+    public long percentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < counts.length(); ++i)
+            total += counts.get(i);
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(Math.min(100, Math.max(0, percentile)) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); ++i) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(highestInBucket(i), max.get());
+        }
+        return max.get();
+    }
+
+    /**
+     * @return - e.g. "n=120 mean=35.1 p50=31 p90=55 p99=71 max=80".
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.1f p50=%d p90=%d p99=%d max=%d",
+                count(), mean(), percentile(50), percentile(90), percentile(99), max());
+    }
+}
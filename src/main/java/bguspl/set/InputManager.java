@@ -22,8 +22,8 @@ class InputManager extends KeyAdapter {
         this.players = players;
         this.logger = logger;
 
-        // initialize the keys
-        for (int player = 0; player < config.players; ++player)
+        // initialize the keys (only human players have keys)
+        for (int player = 0; player < config.humanPlayers; ++player)
             for (int i = 0; i < config.playerKeys(player).length; i++) {
                 int keyCode = config.playerKeys(player)[i];
                 if (keyCode >= keyMap.length) reallocArrays(keyCode); // enlarge the array for higher key codes
@@ -42,7 +42,8 @@ class InputManager extends KeyAdapter {
         // dispatch the key event to the player according to the key map
         int keyCode = e.getKeyCode();
         int player = keyMap[keyCode] - 1;
-        if (player >= 0){
+        // the window may be up before the players are created (see Main)
+        if (player >= 0 && players[player] != null){
             logger.severe("key " + keyCode + " was pressed by player " + (player + 1));
             players[player].keyPressed(keyToSlot[keyCode]);
         }
@@ -0,0 +1,396 @@
+package bguspl.set;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * A persistent leaderboard of players across games, kept in a memory-mapped file so that millions of players do not
+ * have to be loaded onto the heap.
+ * <p>
+ * For every player (by name) it keeps the cumulative score, the number of games played and the best time (the
+ * shortest game the player won). The file has four regions:
+ * <ul>
+ * <li>a header: magic, version, capacity and number of players</li>
+ * <li>a hash index: open addressing with linear probing, 2 * capacity ints, each 0 (empty) or record index + 1</li>
+ * <li>the records: capacity fixed size records, in insertion order</li>
+ * <li>a max-heap of record indices ordered by score, capacity ints (every record knows its heap position)</li>
+ * </ul>
+ * Looking up a player is O(1) expected, recording a game is O(log n) (a sift in the heap) and the top k players are
+ * found in O(k log k) by walking the heap. When the file is full it is rebuilt with twice the capacity.
+ * All the methods are synchronized.
+ */
+public class Leaderboard implements Closeable {
+
+    private static final int MAGIC = 0x5345544C; // "SETL"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 64;
+
+    /**
+     * The record layout: the name (a length byte and up to MAX_NAME_BYTES bytes of UTF-8), the score, the best time,
+     * the number of games and the position in the heap.
+     */
+    static final int RECORD_SIZE = 64;
+    static final int MAX_NAME_BYTES = 39;
+    private static final int SCORE = 40;
+    private static final int BEST = 48;
+    private static final int GAMES = 56;
+    private static final int HEAP_POSITION = 60;
+
+    /**
+     * The best time of a player that did not win a game yet.
+     */
+    public static final long NO_TIME = Long.MAX_VALUE;
+
+    static final int MIN_CAPACITY = 1024;
+    private static final int MAX_CAPACITY = 1 << 24;
+
+    /**
+     * A snapshot of the record of a player.
+     */
+    public static class Entry {
+        public final String name;
+        public final long score;
+        public final int games;
+        public final long bestMillis;
+
+        Entry(String name, long score, int games, long bestMillis) {
+            this.name = name;
+            this.score = score;
+            this.games = games;
+            this.bestMillis = bestMillis;
+        }
+
+        @Override
+        public String toString() {
+            return name + ": score " + score + ", games " + games
+                    + (bestMillis == NO_TIME ? "" : ", best time " + bestMillis / 1000.0 + "s");
+        }
+    }
+
+    private final Path path;
+    private FileChannel channel;
+    private int capacity;
+    private int size;
+    private MappedByteBuffer header;
+    private MappedByteBuffer index;
+    private MappedByteBuffer records;
+    private MappedByteBuffer heap;
+
+    /**
+     * Opens the leaderboard in the given file, creating it if it does not exist.
+     *
+     * @param path - the leaderboard file.
+     */
+    public Leaderboard(Path path) throws IOException {
+        this(path, MIN_CAPACITY);
+    }
+
+    /**
+     * @param initialCapacity - the capacity of a new file (a power of two, at least MIN_CAPACITY).
+     */
+    Leaderboard(Path path, int initialCapacity) throws IOException {
+        this.path = path;
+        if (Files.exists(path) && Files.size(path) >= HEADER_SIZE) open();
+        else create(initialCapacity);
+    }
+
+    private static long fileSize(int capacity) {
+        return HEADER_SIZE + 2L * capacity * Integer.BYTES + (long) capacity * RECORD_SIZE + (long) capacity * Integer.BYTES;
+    }
+
+    private void create(int capacity) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        map(capacity);
+        header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, capacity).putInt(12, 0);
+    }
+
+    private void open() throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ByteBuffer head = ByteBuffer.allocate(16);
+            channel.read(head, 0);
+            if (head.getInt(0) != MAGIC || head.getInt(4) != VERSION)
+                throw new IOException(path + " is not a leaderboard file");
+            // checked before mapping: a read-write mapping grows the file to the mapped size
+            int capacity = head.getInt(8);
+            if (capacity < MIN_CAPACITY || capacity > MAX_CAPACITY || Integer.bitCount(capacity) != 1)
+                throw new IOException(path + " has a corrupt capacity " + capacity);
+            if (channel.size() < fileSize(capacity)) throw new IOException(path + " is truncated");
+            int size = head.getInt(12);
+            if (size < 0 || size > capacity) throw new IOException(path + " has a corrupt size " + size);
+            map(capacity);
+            this.size = size;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void map(int capacity) throws IOException {
+        this.capacity = capacity;
+        long position = 0;
+        header = channel.map(FileChannel.MapMode.READ_WRITE, position, HEADER_SIZE);
+        position += HEADER_SIZE;
+        index = channel.map(FileChannel.MapMode.READ_WRITE, position, 2L * capacity * Integer.BYTES);
+        position += 2L * capacity * Integer.BYTES;
+        records = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) capacity * RECORD_SIZE);
+        position += (long) capacity * RECORD_SIZE;
+        heap = channel.map(FileChannel.MapMode.READ_WRITE, position, (long) capacity * Integer.BYTES);
+    }
+
+    /**
+     * @return - the number of players on the leaderboard.
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Adds the result of a game to the record of a player (creating it if needed).
+     *
+     * @param name   - the name of the player.
+     * @param score  - the score of the player in the game.
+     * @param won    - true iff the player won the game.
+     * @param millis - the duration of the game.
+     */
+    public synchronized void record(String name, int score, boolean won, long millis) {
+        byte[] key = encode(name);
+        int record = find(key);
+        if (record < 0) record = insert(key);
+        int base = record * RECORD_SIZE;
+        records.putLong(base + SCORE, records.getLong(base + SCORE) + score);
+        records.putInt(base + GAMES, records.getInt(base + GAMES) + 1);
+        if (won && millis < records.getLong(base + BEST)) records.putLong(base + BEST, millis);
+        int position = records.getInt(base + HEAP_POSITION);
+        siftDown(siftUp(position));
+    }
+
+    /**
+     * @param name - the name of the player.
+     * @return - the record of the player, or null if the player is not on the leaderboard.
+     */
+    public synchronized Entry get(String name) {
+        int record = find(encode(name));
+        return record < 0 ? null : entry(record);
+    }
+
+    /**
+     * @param k - the number of players.
+     * @return - the k players with the highest scores (fewer if there are not enough), highest first.
+     */
+    public synchronized List<Entry> top(int k) {
+        if (size == 0 || k <= 0) return new ArrayList<>();
+        List<Entry> top = new ArrayList<>(Math.min(k, size));
+        // the candidates are heap positions, the next best player is always one of their children
+        PriorityQueue<Integer> candidates = new PriorityQueue<>((a, b) -> compare(heap.getInt(b * Integer.BYTES), heap.getInt(a * Integer.BYTES)));
+        candidates.add(0);
+        while (top.size() < k && !candidates.isEmpty()) {
+            int position = candidates.poll();
+            top.add(entry(heap.getInt(position * Integer.BYTES)));
+            for (int child = 2 * position + 1; child <= 2 * position + 2; ++child)
+                if (child < size) candidates.add(child);
+        }
+        return top;
+    }
+
+    /**
+     * Writes all the changes to the file.
+     */
+    public synchronized void flush() {
+        header.force();
+        index.force();
+        records.force();
+        heap.force();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        channel.close();
+    }
+
+    private static byte[] encode(String name) {
+        byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_NAME_BYTES)
+            throw new IllegalArgumentException("player name longer than " + MAX_NAME_BYTES + " bytes: " + name);
+        return bytes;
+    }
+
+    private String name(int record) {
+        int base = record * RECORD_SIZE;
+        byte[] bytes = new byte[records.get(base)];
+        for (int i = 0; i < bytes.length; ++i)
+            bytes[i] = records.get(base + 1 + i);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private Entry entry(int record) {
+        int base = record * RECORD_SIZE;
+        return new Entry(name(record), records.getLong(base + SCORE), records.getInt(base + GAMES), records.getLong(base + BEST));
+    }
+
+    private static int hash(byte[] key) {
+        int h = 1;
+        for (byte b : key) h = 31 * h + b;
+        return h ^ (h >>> 16);
+    }
+
+    private boolean matches(int record, byte[] key) {
+        int base = record * RECORD_SIZE;
+        if (records.get(base) != key.length) return false;
+        for (int i = 0; i < key.length; ++i)
+            if (records.get(base + 1 + i) != key[i]) return false;
+        return true;
+    }
+
+    /**
+     * @return - the record index of the key, or -1 if it is not on the leaderboard.
+     */
+    private int find(byte[] key) {
+        int mask = 2 * capacity - 1;
+        for (int slot = hash(key) & mask; ; slot = (slot + 1) & mask) {
+            int entry = index.getInt(slot * Integer.BYTES);
+            if (entry == 0) return -1;
+            if (matches(entry - 1, key)) return entry - 1;
+        }
+    }
+
+    private int insert(byte[] key) {
+        if (size == capacity) {
+            grow();
+        }
+        int record = size++;
+        int base = record * RECORD_SIZE;
+        records.put(base, (byte) key.length);
+        for (int i = 0; i < key.length; ++i)
+            records.put(base + 1 + i, key[i]);
+        records.putLong(base + SCORE, 0).putLong(base + BEST, NO_TIME).putInt(base + GAMES, 0);
+        addToIndex(key, record);
+        // a new record goes to the end of the heap, record() sifts it to its place
+        heap.putInt(record * Integer.BYTES, record);
+        records.putInt(base + HEAP_POSITION, record);
+        header.putInt(12, size);
+        return record;
+    }
+
+    private void addToIndex(byte[] key, int record) {
+        int mask = 2 * capacity - 1;
+        int slot = hash(key) & mask;
+        while (index.getInt(slot * Integer.BYTES) != 0) slot = (slot + 1) & mask;
+        index.putInt(slot * Integer.BYTES, record + 1);
+    }
+
+    /**
+     * Rebuilds the file with twice the capacity (the records keep their indices, so the heap is copied as is).
+     */
+    private void grow() {
+        if (capacity >= MAX_CAPACITY) throw new IllegalStateException("the leaderboard is full");
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try {
+            Files.deleteIfExists(tmp);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try (Leaderboard bigger = new Leaderboard(tmp, capacity * 2)) {
+            for (int record = 0; record < size; ++record) {
+                int base = record * RECORD_SIZE;
+                for (int i = 0; i < RECORD_SIZE; ++i)
+                    bigger.records.put(base + i, records.get(base + i));
+                byte[] key = new byte[records.get(base)];
+                for (int i = 0; i < key.length; ++i) key[i] = records.get(base + 1 + i);
+                bigger.addToIndex(key, record);
+                bigger.heap.putInt(record * Integer.BYTES, heap.getInt(record * Integer.BYTES));
+            }
+            bigger.size = size;
+            bigger.header.putInt(12, size);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        try {
+            channel.close();
+            Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            open();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * Orders records by score (then by index, so that earlier players come first on ties).
+     *
+     * @return - a positive number iff record a ranks above record b.
+     */
+    private int compare(int a, int b) {
+        int byScore = Long.compare(records.getLong(a * RECORD_SIZE + SCORE), records.getLong(b * RECORD_SIZE + SCORE));
+        return byScore != 0 ? byScore : Integer.compare(b, a);
+    }
+
+    private int heapRecord(int position) {
+        return heap.getInt(position * Integer.BYTES);
+    }
+
+    private void setHeap(int position, int record) {
+        heap.putInt(position * Integer.BYTES, record);
+        records.putInt(record * RECORD_SIZE + HEAP_POSITION, position);
+    }
+
+    private int siftUp(int position) {
+        int record = heapRecord(position);
+        while (position > 0) {
+            int parent = (position - 1) / 2;
+            int parentRecord = heapRecord(parent);
+            if (compare(record, parentRecord) <= 0) break;
+            setHeap(position, parentRecord);
+            position = parent;
+        }
+        setHeap(position, record);
+        return position;
+    }
+
+    private void siftDown(int position) {
+        int record = heapRecord(position);
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= size) break;
+            if (child + 1 < size && compare(heapRecord(child + 1), heapRecord(child)) > 0) ++child;
+            int childRecord = heapRecord(child);
+            if (compare(childRecord, record) <= 0) break;
+            setHeap(position, childRecord);
+            position = child;
+        }
+        setHeap(position, record);
+    }
+
+    /**
+     * Prints the top of a leaderboard file.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: Leaderboard file [k]");
+            return;
+        }
+        int k = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        try (Leaderboard leaderboard = new Leaderboard(Paths.get(args[0]))) {
+            System.out.println(leaderboard.size() + " players");
+            int rank = 0;
+            for (Entry entry : leaderboard.top(k))
+                System.out.println(++rank + ". " + entry);
+        }
+    }
+}
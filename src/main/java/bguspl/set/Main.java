@@ -1,15 +1,20 @@
 package bguspl.set;
 
 import bguspl.set.ex.Dealer;
+import bguspl.set.ex.GameSnapshot;
+import bguspl.set.ex.GameStats;
 import bguspl.set.ex.Player;
 import bguspl.set.ex.Table;
 
-import java.io.File;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.text.SimpleDateFormat;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
 import java.util.logging.*;
 
 /**
@@ -38,24 +43,56 @@ public class Main {
     public static void main(String[] args) {
 
         mainThread = Thread.currentThread();
+        StartupTimes startup = new StartupTimes();
+        Thread preload = new Thread(GameEvents::preload, "preload");
+        preload.setDaemon(true);
+        preload.start();
 
         // create the game environment objects
         logger = initLogger();
         ThreadLogger.logStart(logger, Thread.currentThread().getName());
+        startup.phase("logger");
         Config config = new Config(logger, "config.properties");
-        Util util = new UtilImpl(config);
+        startup.phase("config");
 
+        // the window is built (and the card images decoded) while the game is created and starts dealing
         Player[] players = new Player[config.players];
-        UserInterface ui = null;
-        try {
-            ui = new UserInterfaceSwing(logger, config, players);
-        } catch (UnsupportedOperationException | IllegalArgumentException e) {
-            logger.severe("error creating swing user interface: " + e.getMessage());
-            logger.severe("will try to run without user interface");
-            if (config.humanPlayers > 0)
-                logger.severe("warning: running with human players with no user interface");
+        HeadlessUserInterface headless = null;
+        DeferredUserInterface deferred = null;
+        ThreadLogger uiThread = null;
+        CompletableFuture<Util> utilReady = new CompletableFuture<>();
+        if (!config.userInterface.equals("headless")) {
+            DeferredUserInterface window = deferred = new DeferredUserInterface(config);
+            uiThread = new ThreadLogger(() -> buildUserInterface(config, players, window, utilReady, startup),
+                    "ui-builder", logger);
+            uiThread.startWithLog();
+        }
+
+        Util util = new UtilImpl(config);
+        if (config.findSetsCacheSize > 0) util = new CachingUtil(util, config.findSetsCacheSize);
+        utilReady.complete(util);
+        startup.phase("util");
+
+        UserInterface ui;
+        if (deferred == null) {
+            // no window and no decorator
+            ui = headless = new HeadlessUserInterface(config);
+        } else {
+            // the window (with the decorator) or, if it cannot be built, a headless user interface is attached to it
+            ui = deferred;
+            // the window is up before the game starts
+            if (!config.fastStartup) joinQuietly(uiThread);
+        }
+
+        // let human players join over the network
+        RemotePlayerServer server = null;
+        ThreadLogger serverThread = null;
+        if (config.serverPort >= 0) {
+            server = new RemotePlayerServer(logger, config, players, ui);
+            ui = server;
+            serverThread = new ThreadLogger(server, "remote-server", logger);
+            serverThread.startWithLog();
         }
-        ui = new UserInterfaceDecorator(logger, util, ui);
 
         Env env = new Env(logger, config, ui, util);
 
@@ -64,14 +101,23 @@ public class Main {
         dealer = new Dealer(env, table, players);
         for (int i = 0; i < players.length; i++)
             players[i] = new Player(env, dealer, table, i, i < env.config.humanPlayers);
+        if (!config.snapshotFile.isEmpty()) resume(config, dealer);
+        startup.phase("engine");
 
         // start the dealer thread
         ThreadLogger dealerThread = new ThreadLogger(dealer, "dealer", logger);
         dealerThread.startWithLog();
 
         try {
+            awaitFirstCard(table, dealerThread);
+            startup.phase("first card");
+            if (uiThread != null) uiThread.joinWithLog();
+            logger.info(startup.toString());
+            System.out.println(startup);
+
             // shutdown stuff
             dealerThread.joinWithLog();
+            if (!xButtonPressed && !config.leaderboardFile.isEmpty()) updateLeaderboard(config, dealer.stats());
             if (!xButtonPressed && config.endGamePauseMillies > 0) Thread.sleep(config.endGamePauseMillies);
         } catch (InterruptedException ignored) {
         } finally {
@@ -79,7 +125,94 @@ public class Main {
             System.out.println("Thanks for playing... it was fun!");
             ThreadLogger.logStop(logger, Thread.currentThread().getName());
             if (!xButtonPressed) env.ui.dispose();
-            for (Handler h : logger.getHandlers()) h.flush();
+            if (server != null) {
+                server.terminate();
+                try {
+                    serverThread.joinWithLog();
+                } catch (InterruptedException ignored) {}
+            }
+            if (headless != null) logger.info("headless user interface " + headless);
+            if (util instanceof CachingUtil)
+                logger.info("findSets cache: " + ((CachingUtil) util).hits() + " hits, " + ((CachingUtil) util).misses() + " misses");
+            // closing writes the records left (and the count of the dropped ones) and closes the log file
+            for (Handler h : logger.getHandlers()) h.close();
+        }
+    }
+
+    /**
+     * Builds the swing user interface and attaches it (with the decorator) to the game, that may be playing already.
+     * If the window cannot be built, a headless user interface is attached instead (without the decorator).
+     */
+    private static void buildUserInterface(Config config, Player[] players, DeferredUserInterface deferred,
+                                           CompletableFuture<Util> util, StartupTimes startup) {
+        UserInterface ui;
+        try {
+            ui = new UserInterfaceSwing(logger, config, players);
+            if (config.tableDelayMillis > 0) ui = new CardAnimator(config, ui);
+            startup.phase("ui");
+        } catch (UnsupportedOperationException | IllegalArgumentException e) {
+            logger.severe("error creating swing user interface: " + e.getMessage());
+            logger.severe("will try to run without user interface");
+            System.out.println("running without a user interface. Check logs.");
+            if (config.humanPlayers > 0)
+                logger.severe("warning: running with human players with no user interface");
+            deferred.attach(new HeadlessUserInterface(config));
+            return;
+        }
+        deferred.attach(new UserInterfaceDecorator(logger, util.join(), ui));
+    }
+
+    private static void joinQuietly(ThreadLogger thread) {
+        try {
+            thread.joinWithLog();
+        } catch (InterruptedException ignored) {}
+    }
+
+    /**
+     * Waits until the dealer places the first card on the table (or ends).
+     */
+    private static void awaitFirstCard(Table table, Thread dealerThread) throws InterruptedException {
+        long created = table.changedNanos();
+        while (table.changedNanos() == created && dealerThread.isAlive())
+            Thread.sleep(1);
+    }
+
+    /**
+     * Resumes the game saved in the snapshot file, if there is one.
+     */
+    private static void resume(Config config, Dealer dealer) {
+        Path file = Paths.get(config.snapshotFile);
+        if (!Files.exists(file)) return;
+        try {
+            GameSnapshot snapshot = GameSnapshot.load(file);
+            dealer.resume(snapshot);
+            logger.info("resumed the game saved in " + file + " (" + snapshot.sets() + " sets collected, "
+                    + snapshot.cardsLeft() + " cards left)");
+        } catch (IOException | IllegalArgumentException e) {
+            logger.severe("cannot resume the game saved in " + file + ", starting a new game: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Adds the results of the game to the persistent leaderboard.
+     */
+    private static void updateLeaderboard(Config config, GameStats stats) {
+        int[] winners = stats.winners();
+        try (Leaderboard leaderboard = new Leaderboard(Paths.get(config.leaderboardFile))) {
+            for (int i = 0; i < config.players; i++) {
+                boolean won = false;
+                for (int winner : winners) won |= winner == i;
+                try {
+                    leaderboard.record(config.playerNames[i], stats.points(i), won, stats.durationMillis());
+                } catch (IllegalArgumentException e) {
+                    // a name that does not fit the leaderboard must not cost the other players their records
+                    logger.warning("player " + (i + 1) + " is not on the leaderboard: " + e.getMessage());
+                }
+            }
+            for (Leaderboard.Entry entry : leaderboard.top(10))
+                logger.info("leaderboard: " + entry);
+        } catch (IOException | RuntimeException e) {
+            logger.severe("cannot update the leaderboard " + config.leaderboardFile + ": " + e.getMessage());
         }
     }
 
@@ -87,11 +220,11 @@ public class Main {
 
         //just to make our log file nicer :)
         SimpleDateFormat format = new SimpleDateFormat("M-d_HH-mm-ss");
-        FileHandler handler;
+        Handler handler;
         try {
-            //noinspection ResultOfMethodCallIgnored
-            new File("./logs/").mkdirs();
-            handler = new FileHandler("./logs/" + format.format(Calendar.getInstance().getTime()) + ".log");
+            // the limits are set by the config (see setLogFileLimits)
+            handler = new AsyncRollingHandler(Paths.get("./logs/"), format.format(Calendar.getInstance().getTime()),
+                    10L * 1024 * 1024, 5, AsyncRollingHandler.DEFAULT_CAPACITY);
         } catch (IOException e) {
             throw new RuntimeException(e);
         }
@@ -117,4 +250,10 @@ public class Main {
         }));
         logger.setLevel(level);
     }
+
+    public static void setLogFileLimits(Logger logger, long maxBytes, int maxFiles) {
+        Handler[] handlers = logger.getHandlers();
+        if (handlers != null) Arrays.stream(handlers).filter(h -> h instanceof AsyncRollingHandler)
+                .forEach(h -> ((AsyncRollingHandler) h).setLimits(maxBytes, maxFiles));
+    }
 }
@@ -0,0 +1,104 @@
+package bguspl.set;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.Socket;
+import java.util.Scanner;
+
+import static bguspl.set.RemotePlayerServer.*;
+
+/**
+ * A minimal console client for the remote player server: prints the updates pushed by the server and sends the slots
+ * typed on the standard input as key presses.
+ * <p>
+ * Usage: RemotePlayerClient host port player [room] (player is 1 based, like the names on the screen). With a room,
+ * port is the port of a room coordinator (see RoomCoordinator), which tells the client where the room runs: a room
+ * number joins that room, "new" opens a new room.
+ */
+public class RemotePlayerClient {
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 && args.length != 4) {
+            System.out.println("usage: RemotePlayerClient host port player [room|new]");
+            return;
+        }
+        int port = Integer.parseInt(args[1]);
+        if (args.length == 4) {
+            port = roomPort(args[0], port, args[3].equals("new") ? -1 : Integer.parseInt(args[3]));
+            if (port < 0) {
+                System.out.println("no such room");
+                return;
+            }
+            System.out.println("the room runs on port " + port);
+        }
+        try (Socket socket = new Socket(args[0], port)) {
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            send(out, OP_JOIN, Integer.parseInt(args[2]) - 1);
+
+            Thread reader = new Thread(() -> {
+                try {
+                    //noinspection InfiniteLoopStatement
+                    while (true) System.out.println(describe(in.readByte(), in.readInt(), in.readLong()));
+                } catch (EOFException e) {
+                    System.out.println("disconnected by the server");
+                } catch (IOException e) {
+                    System.out.println("connection error: " + e.getMessage());
+                }
+            }, "remote-client-reader");
+            reader.setDaemon(true);
+            reader.start();
+
+            Scanner scanner = new Scanner(System.in);
+            while (scanner.hasNextInt())
+                send(out, OP_KEY, scanner.nextInt());
+        }
+    }
+
+    /**
+     * Asks a room coordinator where a room runs.
+     *
+     * @param room - the room to find, negative to open a new room.
+     * @return - the port of the remote player server of the room, -1 if there is no such room (or no worker to open it).
+     */
+    static int roomPort(String host, int coordinatorPort, int room) throws IOException {
+        try (Socket socket = new Socket(host, coordinatorPort)) {
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            send(out, room < 0 ? RoomCoordinator.OP_OPEN_ROOM : RoomCoordinator.OP_FIND_ROOM, room);
+            byte op = in.readByte();
+            in.readInt();
+            long b = in.readLong();
+            return op == RoomCoordinator.OP_ROOM_AT ? (int) b : -1;
+        }
+    }
+
+    private static void send(DataOutputStream out, byte op, int a) throws IOException {
+        out.writeByte(op);
+        out.writeInt(a);
+        out.writeLong(0);
+        out.flush();
+    }
+
+    static String describe(byte op, int a, long b) {
+        switch (op) {
+            case OP_JOINED: return "joined as player " + (a + 1);
+            case OP_REJECTED: return "cannot join as player " + (a + 1);
+            case OP_PLACE_CARD: return "card " + b + " placed in slot " + a;
+            case OP_REMOVE_CARD: return "card removed from slot " + a;
+            case OP_PLACE_TOKEN: return "player " + (a + 1) + " placed a token on slot " + b;
+            case OP_REMOVE_TOKEN: return "player " + (a + 1) + " removed a token from slot " + b;
+            case OP_REMOVE_TOKENS: return a < 0 ? "all tokens removed" : "tokens removed from slot " + a;
+            case OP_COUNTDOWN: return "countdown " + b + (a != 0 ? " (warning)" : "");
+            case OP_ELAPSED: return "elapsed " + b;
+            case OP_FREEZE: return "player " + (a + 1) + " frozen for " + b;
+            case OP_SCORE: return "player " + (a + 1) + " score " + b;
+            case OP_WINNER: return "player " + (a + 1) + " won" + (b > 1 ? " (draw)" : "");
+            default: return "unknown message " + op;
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Logger;
+
+/**
+ * A non-blocking (NIO selector) server that lets human players play from another process.
+ * <p>
+ * Every message in both directions is a fixed size frame of {@link #FRAME_SIZE} bytes: an opcode byte, an int
+ * argument and a long argument (big endian). A client joins as a human player with {@link #OP_JOIN} and sends slots
+ * with {@link #OP_KEY}. The server sends the current table state on join and pushes every user interface update
+ * (cards, tokens, scores, freezes, countdown) to all joined clients afterwards.
+ * <p>
+ * The server is a user interface decorator: all updates are forwarded to the wrapped user interface as well.
+ * <p>
+ * When the selector thread falls so far behind that the pending updates do not fit its buffer, the server drops them
+ * and sends every joined client the current state instead (all tokens removed, then every slot, token, score, freeze,
+ * the countdown and the winners).
+ */
+public class RemotePlayerServer implements UserInterface, Runnable {
+
+    public static final int FRAME_SIZE = 1 + Integer.BYTES + Long.BYTES;
+
+    // client -> server
+    public static final byte OP_JOIN = 1;        // a = player id
+    public static final byte OP_KEY = 2;         // a = slot
+
+    // server -> client
+    public static final byte OP_JOINED = 10;     // a = player id
+    public static final byte OP_REJECTED = 11;   // a = player id
+    public static final byte OP_PLACE_CARD = 12; // a = slot, b = card
+    public static final byte OP_REMOVE_CARD = 13;// a = slot
+    public static final byte OP_PLACE_TOKEN = 14;// a = player, b = slot
+    public static final byte OP_REMOVE_TOKEN = 15;// a = player, b = slot
+    public static final byte OP_REMOVE_TOKENS = 16;// a = slot (-1 for all slots)
+    public static final byte OP_COUNTDOWN = 17;  // a = 1 iff warn, b = millies
+    public static final byte OP_ELAPSED = 18;    // b = millies
+    public static final byte OP_FREEZE = 19;     // a = player, b = millies
+    public static final byte OP_SCORE = 20;      // a = player, b = score
+    public static final byte OP_WINNER = 21;     // a = player, b = number of winners
+
+    /**
+     * The maximal number of bytes of updates waiting to be sent to a single client before it is disconnected as too
+     * slow (its buffer has room for a snapshot of the state on top of them).
+     */
+    private static final int CLIENT_BUFFER_SIZE = 64 * 1024;
+
+    private final Logger logger;
+    private final Config config;
+    private final Player[] players;
+    private final UserInterface ui;
+
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private volatile boolean terminate;
+
+    /**
+     * Frames waiting to be broadcast to all joined clients (guarded by this).
+     */
+    private ByteBuffer broadcast = ByteBuffer.allocate(CLIENT_BUFFER_SIZE);
+    private ByteBuffer broadcastSpare = ByteBuffer.allocate(CLIENT_BUFFER_SIZE);
+
+    /**
+     * True iff frames were dropped and the joined clients must be sent the current state (guarded by this).
+     */
+    private boolean resync;
+    private final AtomicBoolean wakeupPending = new AtomicBoolean();
+
+    /**
+     * The latest state pushed to the clients, sent to a client when it joins (guarded by this).
+     */
+    private final int[] slotToCard;
+    private final boolean[][] tokens;
+    private final long[] scores;
+    private final long[] freezes;
+    private long countdown;
+    private boolean warn;
+    private int[] winners = new int[0];
+
+    /**
+     * The channel bound to each player (null if none). Only accessed by the selector thread.
+     */
+    private final SocketChannel[] playerChannels;
+
+    /**
+     * The size of the output buffer of a client: CLIENT_BUFFER_SIZE and a whole snapshot, which grows with the number
+     * of players (so a client is not disconnected as it joins a game with many players).
+     */
+    private final int clientBufferSize;
+
+    /**
+     * Per connection state, attached to its selection key.
+     */
+    private static class Client {
+        final ByteBuffer in = ByteBuffer.allocate(FRAME_SIZE);
+        final ByteBuffer out;
+        int player = -1;
+
+        Client(int bufferSize) {
+            out = ByteBuffer.allocate(bufferSize);
+        }
+    }
+
+    public RemotePlayerServer(Logger logger, Config config, Player[] players, UserInterface ui) {
+        this.logger = logger;
+        this.config = config;
+        this.players = players;
+        this.ui = ui;
+        this.slotToCard = new int[config.tableSize];
+        Arrays.fill(slotToCard, -1);
+        this.tokens = new boolean[config.players][config.tableSize];
+        this.scores = new long[config.players];
+        this.freezes = new long[config.players];
+        this.playerChannels = new SocketChannel[config.players];
+        // a snapshot: OP_JOINED or OP_REMOVE_TOKENS, every slot, the tokens (featureSize at most), score, freeze and
+        // win of every player, and the countdown
+        long snapshotFrames = 2 + config.tableSize + (long) config.players * (config.featureSize + 3);
+        this.clientBufferSize = (int) Math.min(Integer.MAX_VALUE, CLIENT_BUFFER_SIZE + snapshotFrames * FRAME_SIZE);
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(config.serverPort));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return - the local port the server listens on.
+     */
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * The selector thread starts here.
+     */
+    @Override
+    public void run() {
+        logger.info("remote player server listening on port " + port());
+        try {
+            while (!terminate) {
+                selector.select();
+                wakeupPending.set(false);
+                flushBroadcast();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        if (key.isValid() && key.isReadable()) read(key);
+                        if (key.isValid() && key.isWritable()) write(key);
+                    } catch (IOException e) {
+                        logger.warning("remote client error: " + e.getMessage());
+                        close(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.severe("remote player server failed: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) close(key);
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException ignored) {}
+            logger.info("remote player server stopped.");
+        }
+    }
+
+    /**
+     * Stops the selector thread and disconnects all clients.
+     */
+    public void terminate() {
+        terminate = true;
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Client(clientBufferSize));
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Client client = (Client) key.attachment();
+        int read;
+        while ((read = channel.read(client.in)) > 0) {
+            if (client.in.hasRemaining()) continue;
+            client.in.flip();
+            byte op = client.in.get();
+            int a = client.in.getInt();
+            client.in.clear();
+            handle(key, client, op, a);
+        }
+        if (read < 0) close(key);
+    }
+
+    private void handle(SelectionKey key, Client client, byte op, int a) {
+        if (op == OP_JOIN) {
+            boolean legal = client.player < 0 && a >= 0 && a < config.humanPlayers && playerChannels[a] == null;
+            if (!legal) {
+                queue(key, client, OP_REJECTED, a, 0);
+                return;
+            }
+            playerChannels[a] = (SocketChannel) key.channel();
+            synchronized (this) {
+                // deliver what is pending to the other clients first (the client is not joined yet, so it does not get
+                // these frames), so the new client continues from its snapshot
+                flushBroadcast();
+                client.player = a;
+                queue(key, client, OP_JOINED, a, 0);
+                writeSnapshot(key, client, false);
+            }
+            logger.info("remote client joined as player " + (a + 1));
+        } else if (op == OP_KEY && client.player >= 0 && a >= 0 && a < config.tableSize) {
+            Player player = players[client.player];
+            if (player != null) player.keyPressed(a);
+        }
+    }
+
+    /**
+     * Queues the current state for a client. Must be called while holding the lock of this object.
+     *
+     * @param reset - true iff the client already has a (stale) state, which the snapshot replaces.
+     */
+    private void writeSnapshot(SelectionKey key, Client client, boolean reset) {
+        if (reset) queue(key, client, OP_REMOVE_TOKENS, -1, 0);
+        for (int slot = 0; slot < slotToCard.length; ++slot) {
+            if (slotToCard[slot] >= 0) queue(key, client, OP_PLACE_CARD, slot, slotToCard[slot]);
+            else if (reset) queue(key, client, OP_REMOVE_CARD, slot, 0);
+        }
+        for (int player = 0; player < tokens.length; ++player) {
+            for (int slot = 0; slot < tokens[player].length; ++slot)
+                if (tokens[player][slot]) queue(key, client, OP_PLACE_TOKEN, player, slot);
+            queue(key, client, OP_SCORE, player, scores[player]);
+            if (freezes[player] > 0 || reset) queue(key, client, OP_FREEZE, player, freezes[player]);
+        }
+        queue(key, client, OP_COUNTDOWN, warn ? 1 : 0, countdown);
+        for (int player : winners) queue(key, client, OP_WINNER, player, winners.length);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Client client = (Client) key.attachment();
+        client.out.flip();
+        ((SocketChannel) key.channel()).write(client.out);
+        client.out.compact();
+        if (client.out.position() == 0) key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void queue(SelectionKey key, Client client, byte op, int a, long b) {
+        if (!key.isValid()) return;
+        if (client.out.remaining() < FRAME_SIZE) {
+            logger.warning("remote client of player " + (client.player + 1) + " is too slow, disconnecting");
+            close(key);
+            return;
+        }
+        client.out.put(op).putInt(a).putLong(b);
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    /**
+     * Copies the pending broadcast frames to the output buffer of every joined client. Called by the selector thread.
+     */
+    private void flushBroadcast() {
+        ByteBuffer frames;
+        synchronized (this) {
+            if (resync) {
+                resync();
+                return;
+            }
+            if (broadcast.position() == 0) return;
+            frames = broadcast;
+            broadcast = broadcastSpare;
+            broadcastSpare = frames;
+        }
+        frames.flip();
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (!key.isValid() || !(attachment instanceof Client)) continue;
+            Client client = (Client) attachment;
+            if (client.player < 0) continue;
+            // the updates may take CLIENT_BUFFER_SIZE bytes, the rest of the buffer is kept for a snapshot
+            if (client.out.position() + frames.remaining() > CLIENT_BUFFER_SIZE) {
+                logger.warning("remote client of player " + (client.player + 1) + " is too slow, disconnecting");
+                close(key);
+                continue;
+            }
+            client.out.put(frames.duplicate());
+            key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+        }
+        frames.clear();
+    }
+
+    /**
+     * Sends every joined client the current state in place of the dropped frames. Called by the selector thread while
+     * holding the lock of this object.
+     */
+    private void resync() {
+        resync = false;
+        broadcast.clear();
+        logger.warning("remote player server fell behind, resending the table state");
+        for (SelectionKey key : selector.keys()) {
+            Object attachment = key.attachment();
+            if (!key.isValid() || !(attachment instanceof Client)) continue;
+            Client client = (Client) attachment;
+            if (client.player >= 0) writeSnapshot(key, client, true);
+        }
+    }
+
+    private void close(SelectionKey key) {
+        Object attachment = key.attachment();
+        if (attachment instanceof Client) {
+            Client client = (Client) attachment;
+            if (client.player >= 0 && playerChannels[client.player] == key.channel())
+                playerChannels[client.player] = null;
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {}
+    }
+
+    /**
+     * Queues a frame for all joined clients and wakes up the selector thread (if it was not woken up already).
+     * Must be called while holding the lock of this object.
+     */
+    private void broadcast(byte op, int a, long b) {
+        if (!resync && broadcast.remaining() < FRAME_SIZE) {
+            // the selector thread is far behind: the frames would not fit the buffers of the clients either, so drop
+            // them and resend the state (which includes this update) as a whole
+            broadcast.clear();
+            resync = true;
+        }
+        if (!resync) broadcast.put(op).putInt(a).putLong(b);
+        if (wakeupPending.compareAndSet(false, true)) selector.wakeup();
+    }
+
+    @Override
+    public void placeCard(int card, int slot) {
+        ui.placeCard(card, slot);
+        synchronized (this) {
+            slotToCard[slot] = card;
+            broadcast(OP_PLACE_CARD, slot, card);
+        }
+    }
+
+    @Override
+    public void removeCard(int slot) {
+        ui.removeCard(slot);
+        synchronized (this) {
+            slotToCard[slot] = -1;
+            broadcast(OP_REMOVE_CARD, slot, 0);
+        }
+    }
+
+    @Override
+    public void placeToken(int player, int slot) {
+        ui.placeToken(player, slot);
+        synchronized (this) {
+            tokens[player][slot] = true;
+            broadcast(OP_PLACE_TOKEN, player, slot);
+        }
+    }
+
+    @Override
+    public void removeTokens() {
+        ui.removeTokens();
+        synchronized (this) {
+            for (boolean[] playerTokens : tokens) Arrays.fill(playerTokens, false);
+            broadcast(OP_REMOVE_TOKENS, -1, 0);
+        }
+    }
+
+    @Override
+    public void removeTokens(int slot) {
+        ui.removeTokens(slot);
+        synchronized (this) {
+            for (boolean[] playerTokens : tokens) playerTokens[slot] = false;
+            broadcast(OP_REMOVE_TOKENS, slot, 0);
+        }
+    }
+
+    @Override
+    public void removeToken(int player, int slot) {
+        ui.removeToken(player, slot);
+        synchronized (this) {
+            tokens[player][slot] = false;
+            broadcast(OP_REMOVE_TOKEN, player, slot);
+        }
+    }
+
+    @Override
+    public void setCountdown(long millies, boolean warn) {
+        ui.setCountdown(millies, warn);
+        synchronized (this) {
+            this.countdown = millies;
+            this.warn = warn;
+            broadcast(OP_COUNTDOWN, warn ? 1 : 0, millies);
+        }
+    }
+
+    @Override
+    public void setElapsed(long millies) {
+        ui.setElapsed(millies);
+        synchronized (this) {
+            broadcast(OP_ELAPSED, 0, millies);
+        }
+    }
+
+    @Override
+    public void setFreeze(int player, long millies) {
+        ui.setFreeze(player, millies);
+        synchronized (this) {
+            freezes[player] = millies;
+            broadcast(OP_FREEZE, player, millies);
+        }
+    }
+
+    @Override
+    public void setScore(int player, int score) {
+        ui.setScore(player, score);
+        synchronized (this) {
+            scores[player] = score;
+            broadcast(OP_SCORE, player, score);
+        }
+    }
+
+    @Override
+    public void announceWinner(int[] players) {
+        ui.announceWinner(players);
+        synchronized (this) {
+            winners = players.clone();
+            for (int player : players) broadcast(OP_WINNER, player, players.length);
+        }
+    }
+
+    @Override
+    public void dispose() {
+        ui.dispose();
+        terminate();
+    }
+}
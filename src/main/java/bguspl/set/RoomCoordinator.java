@@ -0,0 +1,374 @@
+package bguspl.set;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Spreads the rooms (games) of one host over several worker processes (see RoomWorker): a non-blocking (NIO selector)
+ * server on the loopback interface that the workers register with and the clients ask for rooms.
+ * <p>
+ * The messages are the frames of RemotePlayerServer (an opcode byte, an int argument and a long argument). A client
+ * opens a room with {@link #OP_OPEN_ROOM}: the coordinator starts it on the least loaded worker that is not draining
+ * (the fewest rooms, then the fewest players, as last reported by the workers with {@link #OP_LOAD}) and answers with
+ * {@link #OP_ROOM_AT} once the worker reports the port of the room. The players then connect to that port and play
+ * with the RemotePlayerServer protocol, so the coordinator routes the connections without carrying the game traffic.
+ * {@link #OP_FIND_ROOM} finds a room that is already open.
+ * <p>
+ * {@link #OP_DRAIN_WORKER} drains a worker: no more rooms are placed on it, and it leaves (and may shut down) once its
+ * rooms ended, or after the grace time given, when it stops the rooms that are still running.
+ */
+public class RoomCoordinator implements Runnable {
+
+    public static final int FRAME_SIZE = RemotePlayerServer.FRAME_SIZE;
+
+    // worker -> coordinator
+    public static final byte OP_REGISTER = 30;     // a worker joins
+    public static final byte OP_LOAD = 31;         // a = rooms, b = players
+    public static final byte OP_ROOM_STARTED = 32; // a = room, b = port
+    public static final byte OP_ROOM_ENDED = 33;   // a = room
+    public static final byte OP_DRAINED = 34;      // the rooms of the worker ended, it leaves
+
+    // coordinator -> worker
+    public static final byte OP_REGISTERED = 40;   // a = worker id
+    public static final byte OP_START_ROOM = 41;   // a = room
+    public static final byte OP_DRAIN = 42;        // b = grace millies (0 to wait for the rooms to end)
+
+    // client -> coordinator
+    public static final byte OP_OPEN_ROOM = 50;    // a new room
+    public static final byte OP_FIND_ROOM = 51;    // a = room
+    public static final byte OP_DRAIN_WORKER = 52; // a = worker id, b = grace millies
+
+    // coordinator -> client
+    public static final byte OP_ROOM_AT = 60;      // a = room, b = port
+    public static final byte OP_NO_ROOM = 61;      // a = room (-1 if no worker can open one)
+    public static final byte OP_DRAINING = 62;     // a = worker id (-1 if there is no such worker)
+
+    /**
+     * The maximal number of bytes waiting to be sent to a single connection before it is disconnected as too slow.
+     */
+    private static final int BUFFER_SIZE = 16 * 1024;
+
+    private final Logger logger;
+    private final Selector selector;
+    private final ServerSocketChannel serverChannel;
+    private volatile boolean terminate;
+
+    /**
+     * Per connection state, attached to its selection key. Only accessed by the selector thread.
+     */
+    private static class Connection {
+        final ByteBuffer in = ByteBuffer.allocate(FRAME_SIZE);
+        final ByteBuffer out = ByteBuffer.allocate(BUFFER_SIZE);
+        Worker worker;
+    }
+
+    /**
+     * A registered worker and its last reported load.
+     */
+    private static class Worker {
+        final int id;
+        final SelectionKey key;
+        int rooms;
+        long players;
+        boolean draining;
+
+        Worker(int id, SelectionKey key) {
+            this.id = id;
+            this.key = key;
+        }
+    }
+
+    /**
+     * A room, the worker it runs on and its port (-1 while the worker starts it).
+     */
+    private static class Room {
+        final int id;
+        final Worker worker;
+        long port = -1;
+        final List<SelectionKey> waiting = new ArrayList<>();
+
+        Room(int id, Worker worker) {
+            this.id = id;
+            this.worker = worker;
+        }
+    }
+
+    /**
+     * The workers and the rooms (guarded by this, changed by the selector thread only).
+     */
+    private final Map<Integer, Worker> workers = new HashMap<>();
+    private final Map<Integer, Room> rooms = new HashMap<>();
+    private int nextWorker;
+    private int nextRoom;
+
+    /**
+     * @param port - the port to listen on (0 for any free port), on the loopback interface only.
+     */
+    public RoomCoordinator(Logger logger, int port) {
+        this.logger = logger;
+        try {
+            selector = Selector.open();
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), port));
+            serverChannel.configureBlocking(false);
+            serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * @return - the local port the coordinator listens on.
+     */
+    public int port() {
+        return serverChannel.socket().getLocalPort();
+    }
+
+    /**
+     * @return - the number of registered workers (including the draining ones).
+     */
+    public synchronized int workers() {
+        return workers.size();
+    }
+
+    /**
+     * @return - the number of rooms that are open (or being opened).
+     */
+    public synchronized int rooms() {
+        return rooms.size();
+    }
+
+    /**
+     * @return - the number of rooms of a worker as it last reported (-1 if there is no such worker).
+     */
+    public synchronized int rooms(int worker) {
+        Worker registered = workers.get(worker);
+        return registered == null ? -1 : registered.rooms;
+    }
+
+    /**
+     * The selector thread starts here.
+     */
+    @Override
+    public void run() {
+        logger.info("room coordinator listening on port " + port());
+        try {
+            while (!terminate) {
+                selector.select();
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    try {
+                        if (!key.isValid()) continue;
+                        if (key.isAcceptable()) accept();
+                        if (key.isValid() && key.isReadable()) read(key);
+                        if (key.isValid() && key.isWritable()) write(key);
+                    } catch (IOException e) {
+                        logger.warning("room coordinator connection error: " + e.getMessage());
+                        close(key);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.severe("room coordinator failed: " + e.getMessage());
+        } finally {
+            for (SelectionKey key : selector.keys()) close(key);
+            try {
+                serverChannel.close();
+                selector.close();
+            } catch (IOException ignored) {}
+            logger.info("room coordinator stopped.");
+        }
+    }
+
+    /**
+     * Stops the selector thread and disconnects the workers and the clients (the workers keep their rooms).
+     */
+    public void terminate() {
+        terminate = true;
+        selector.wakeup();
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) return;
+        channel.configureBlocking(false);
+        channel.socket().setTcpNoDelay(true);
+        channel.register(selector, SelectionKey.OP_READ, new Connection());
+    }
+
+    private void read(SelectionKey key) throws IOException {
+        SocketChannel channel = (SocketChannel) key.channel();
+        Connection connection = (Connection) key.attachment();
+        int read = 0;
+        // a message may close the connection (see OP_DRAINED)
+        while (key.isValid() && (read = channel.read(connection.in)) > 0) {
+            if (connection.in.hasRemaining()) continue;
+            connection.in.flip();
+            byte op = connection.in.get();
+            int a = connection.in.getInt();
+            long b = connection.in.getLong();
+            connection.in.clear();
+            synchronized (this) {
+                handle(key, connection, op, a, b);
+            }
+        }
+        if (read < 0) close(key);
+    }
+
+    private void handle(SelectionKey key, Connection connection, byte op, int a, long b) {
+        Worker worker = connection.worker;
+        switch (op) {
+            case OP_REGISTER:
+                if (worker != null) return;
+                worker = connection.worker = new Worker(nextWorker++, key);
+                workers.put(worker.id, worker);
+                queue(key, OP_REGISTERED, worker.id, 0);
+                logger.info("room worker " + worker.id + " registered");
+                return;
+            case OP_OPEN_ROOM:
+                openRoom(key);
+                return;
+            case OP_FIND_ROOM: {
+                Room room = rooms.get(a);
+                if (room == null) queue(key, OP_NO_ROOM, a, 0);
+                else if (room.port < 0) room.waiting.add(key);
+                else queue(key, OP_ROOM_AT, room.id, room.port);
+                return;
+            }
+            case OP_DRAIN_WORKER: {
+                Worker draining = workers.get(a);
+                if (draining == null) {
+                    queue(key, OP_DRAINING, -1, 0);
+                    return;
+                }
+                draining.draining = true;
+                queue(draining.key, OP_DRAIN, 0, Math.max(0, b));
+                queue(key, OP_DRAINING, a, 0);
+                logger.info("room worker " + a + " draining");
+                return;
+            }
+        }
+        if (worker == null) return;
+        switch (op) {
+            case OP_LOAD:
+                worker.rooms = a;
+                worker.players = b;
+                return;
+            case OP_ROOM_STARTED: {
+                Room room = rooms.get(a);
+                if (room == null || room.worker != worker) return;
+                room.port = b;
+                for (SelectionKey waiting : room.waiting)
+                    if (waiting.isValid()) queue(waiting, OP_ROOM_AT, room.id, room.port);
+                room.waiting.clear();
+                return;
+            }
+            case OP_ROOM_ENDED: {
+                Room room = rooms.get(a);
+                if (room == null || room.worker != worker) return;
+                rooms.remove(a);
+                // a room that was refused by a draining worker never started
+                for (SelectionKey waiting : room.waiting)
+                    if (waiting.isValid()) queue(waiting, OP_NO_ROOM, room.id, 0);
+                return;
+            }
+            case OP_DRAINED:
+                logger.info("room worker " + worker.id + " drained");
+                close(key);
+        }
+    }
+
+    /**
+     * Starts a room on the least loaded worker that is not draining; the client is answered when it started.
+     */
+    private void openRoom(SelectionKey client) {
+        Worker best = null;
+        for (Worker worker : workers.values()) {
+            if (worker.draining) continue;
+            if (best == null || worker.rooms < best.rooms
+                    || worker.rooms == best.rooms && (worker.players < best.players
+                    || worker.players == best.players && worker.id < best.id))
+                best = worker;
+        }
+        if (best == null) {
+            queue(client, OP_NO_ROOM, -1, 0);
+            return;
+        }
+        Room room = new Room(nextRoom++, best);
+        room.waiting.add(client);
+        rooms.put(room.id, room);
+        // count the room until the worker reports its load, so a burst of rooms is spread over the workers
+        ++best.rooms;
+        queue(best.key, OP_START_ROOM, room.id, 0);
+    }
+
+    private void write(SelectionKey key) throws IOException {
+        Connection connection = (Connection) key.attachment();
+        connection.out.flip();
+        ((SocketChannel) key.channel()).write(connection.out);
+        connection.out.compact();
+        if (connection.out.position() == 0) key.interestOps(SelectionKey.OP_READ);
+    }
+
+    private void queue(SelectionKey key, byte op, int a, long b) {
+        if (!key.isValid()) return;
+        Connection connection = (Connection) key.attachment();
+        if (connection.out.remaining() < FRAME_SIZE) {
+            logger.warning("room coordinator connection is too slow, disconnecting");
+            close(key);
+            return;
+        }
+        connection.out.put(op).putInt(a).putLong(b);
+        key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+    }
+
+    private void close(SelectionKey key) {
+        Object attachment = key.attachment();
+        if (attachment instanceof Connection && ((Connection) attachment).worker != null) {
+            Worker worker = ((Connection) attachment).worker;
+            synchronized (this) {
+                if (workers.remove(worker.id) != null) {
+                    // the rooms of a worker that left are gone with it
+                    Iterator<Room> it = rooms.values().iterator();
+                    while (it.hasNext()) {
+                        Room room = it.next();
+                        if (room.worker != worker) continue;
+                        it.remove();
+                        for (SelectionKey waiting : room.waiting) queue(waiting, OP_NO_ROOM, room.id, 0);
+                    }
+                    logger.info("room worker " + worker.id + " left");
+                }
+            }
+        }
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {}
+    }
+
+    public static void main(String[] args) {
+        if (args.length != 1) {
+            System.out.println("usage: RoomCoordinator port");
+            return;
+        }
+        Logger logger = Logger.getLogger("SetRoomCoordinator");
+        RoomCoordinator coordinator = new RoomCoordinator(logger, Integer.parseInt(args[0]));
+        System.out.println("room coordinator listening on port " + coordinator.port());
+        coordinator.run();
+    }
+}
@@ -0,0 +1,280 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static bguspl.set.RoomCoordinator.*;
+
+/**
+ * A worker process of the room coordinator (see RoomCoordinator): registers with the coordinator over the loopback
+ * interface and runs the rooms the coordinator starts on it. Each room is a game of its own (Config, Table, Dealer and
+ * players, with a headless user interface) that the human players join through a RemotePlayerServer on a port of the
+ * room. The worker reports its load (the rooms and the players in them) whenever a room starts or ends.
+ * <p>
+ * When the coordinator drains the worker, it refuses new rooms, waits for its rooms to end (or stops them after the
+ * grace time), reports OP_DRAINED and disconnects, so run returns and the process can exit.
+ * <p>
+ * Usage: RoomWorker coordinatorPort [config file] (the default is config.properties).
+ */
+public class RoomWorker implements Runnable {
+
+    private final Logger logger;
+    private final Properties properties;
+    private final int coordinatorPort;
+
+    /**
+     * A room that runs on this worker.
+     */
+    private static class Room {
+        final int id;
+        final Config config;
+        final Dealer dealer;
+        final RemotePlayerServer server;
+        Thread dealerThread;
+        Thread serverThread;
+
+        Room(int id, Config config, Dealer dealer, RemotePlayerServer server) {
+            this.id = id;
+            this.config = config;
+            this.dealer = dealer;
+            this.server = server;
+        }
+    }
+
+    /**
+     * The rooms that run on this worker (guarded by this).
+     */
+    private final Map<Integer, Room> rooms = new HashMap<>();
+    private boolean draining;
+
+    private volatile int id = -1;
+    private DataOutputStream out;
+
+    /**
+     * @param properties      - the configuration of the rooms (the players join over the network).
+     * @param coordinatorPort - the port of the coordinator (on the loopback interface).
+     */
+    public RoomWorker(Logger logger, Properties properties, int coordinatorPort) {
+        this.logger = logger;
+        this.properties = new Properties();
+        this.properties.putAll(properties);
+        this.properties.put("UserInterface", "headless");
+        this.properties.put("ServerPort", "0");
+        this.properties.put("EndGamePauseSeconds", "0");
+        // the rooms would all save to (and delete) the same snapshot file
+        this.properties.put("SnapshotFile", "");
+        this.coordinatorPort = coordinatorPort;
+    }
+
+    /**
+     * @return - the id the coordinator gave this worker (-1 until it registered).
+     */
+    public int id() {
+        return id;
+    }
+
+    /**
+     * @return - the number of rooms that run on this worker.
+     */
+    public synchronized int rooms() {
+        return rooms.size();
+    }
+
+    /**
+     * Connects to the coordinator and runs the rooms it starts, until the worker is drained or the coordinator is gone.
+     */
+    @Override
+    public void run() {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), coordinatorPort)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            synchronized (this) {
+                out = new DataOutputStream(socket.getOutputStream());
+                send(OP_REGISTER, 0, 0);
+            }
+            while (true) {
+                byte op = in.readByte();
+                int a = in.readInt();
+                long b = in.readLong();
+                if (op == OP_REGISTERED) {
+                    id = a;
+                    logger.info("room worker registered as worker " + a);
+                } else if (op == OP_START_ROOM) {
+                    startRoom(a);
+                } else if (op == OP_DRAIN) {
+                    drain(b);
+                    return;
+                }
+            }
+        } catch (EOFException e) {
+            logger.warning("room worker " + id + ": the coordinator is gone");
+        } catch (IOException e) {
+            logger.severe("room worker " + id + " failed: " + e.getMessage());
+        } finally {
+            stopRooms();
+        }
+    }
+
+    private synchronized void send(byte op, int a, long b) throws IOException {
+        out.writeByte(op);
+        out.writeInt(a);
+        out.writeLong(b);
+        out.flush();
+    }
+
+    /**
+     * Sends a message, logging (rather than throwing) when the coordinator is gone: the rooms go on without it.
+     */
+    private void report(byte op, int a, long b) {
+        try {
+            send(op, a, b);
+        } catch (IOException e) {
+            logger.warning("room worker " + id + " cannot reach the coordinator: " + e.getMessage());
+        }
+    }
+
+    private synchronized void reportLoad() {
+        long players = 0;
+        for (Room room : rooms.values()) players += room.config.players;
+        report(OP_LOAD, rooms.size(), players);
+    }
+
+    private void startRoom(int id) {
+        Room room;
+        synchronized (this) {
+            if (draining) {
+                // the coordinator placed the room before it saw the drain
+                report(OP_ROOM_ENDED, id, 0);
+                return;
+            }
+            room = createRoom(id);
+            rooms.put(id, room);
+        }
+        room.serverThread = new Thread(room.server, "room-" + id + "-server");
+        room.serverThread.start();
+        room.dealerThread = new Thread(() -> playRoom(room), "room-" + id);
+        room.dealerThread.start();
+        report(OP_ROOM_STARTED, id, room.server.port());
+        reportLoad();
+        logger.info("room " + id + " started on port " + room.server.port());
+    }
+
+    private Room createRoom(int id) {
+        Properties roomProperties = new Properties();
+        roomProperties.putAll(properties);
+        Config config = new Config(logger, roomProperties);
+        Util util = new UtilImpl(config);
+        if (config.findSetsCacheSize > 0) util = new CachingUtil(util, config.findSetsCacheSize);
+        Player[] players = new Player[config.players];
+        RemotePlayerServer server = new RemotePlayerServer(logger, config, players, new HeadlessUserInterface(config));
+        Env env = new Env(logger, config, server, util);
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, i < config.humanPlayers);
+        return new Room(id, config, dealer, server);
+    }
+
+    /**
+     * Plays a room to its end (the room thread starts here).
+     */
+    private void playRoom(Room room) {
+        try {
+            room.dealer.run();
+        } finally {
+            room.server.terminate();
+            synchronized (this) {
+                rooms.remove(room.id);
+                notifyAll();
+            }
+            report(OP_ROOM_ENDED, room.id, 0);
+            reportLoad();
+            logger.info("room " + room.id + " ended");
+        }
+    }
+
+    /**
+     * Refuses new rooms and waits for the rooms to end, stopping the ones left after the grace time.
+     *
+     * @param graceMillis - the time to wait for the rooms to end (0 to wait as long as they play).
+     */
+    private void drain(long graceMillis) {
+        logger.info("room worker " + id + " draining " + rooms() + " rooms");
+        long deadline = graceMillis > 0 ? System.currentTimeMillis() + graceMillis : Long.MAX_VALUE;
+        synchronized (this) {
+            draining = true;
+            try {
+                long left;
+                while (!rooms.isEmpty() && (left = deadline - System.currentTimeMillis()) > 0)
+                    wait(Math.min(left, 1000));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        stopRooms();
+        report(OP_DRAINED, 0, 0);
+        logger.info("room worker " + id + " drained");
+    }
+
+    /**
+     * Stops the rooms that still run and waits for them to end.
+     */
+    private void stopRooms() {
+        List<Room> left;
+        synchronized (this) {
+            draining = true;
+            left = new ArrayList<>(rooms.values());
+        }
+        for (Room room : left)
+            room.dealer.terminate();
+        for (Room room : left) {
+            try {
+                room.dealerThread.join();
+                room.serverThread.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private static Properties loadProperties(String filename) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream is = Files.exists(Paths.get(filename)) ? Files.newInputStream(Paths.get(filename))
+                : RoomWorker.class.getClassLoader().getResourceAsStream(filename)) {
+            if (is == null) throw new IOException("cannot find configuration file " + filename);
+            properties.load(is);
+        }
+        return properties;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1 || args.length > 2) {
+            System.out.println("usage: RoomWorker coordinatorPort [config file]");
+            return;
+        }
+        Properties properties = loadProperties(args.length == 2 ? args[1] : "config.properties");
+        // the rooms log their warnings only (a worker runs many games)
+        Logger logger = Logger.getLogger("SetRoomWorker");
+        logger.setLevel(Level.WARNING);
+        new RoomWorker(logger, properties, Integer.parseInt(args[0])).run();
+    }
+}
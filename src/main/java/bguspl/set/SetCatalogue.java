@@ -0,0 +1,428 @@
+package bguspl.set;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The catalogue of all the legal sets of a deck, as flat primitive arrays.
+ * <p>
+ * A set has featureSize cards, and since every feature has exactly featureSize values, a feature that is different
+ * in all the cards of a set takes every value exactly once. The catalogue holds:
+ * <ul>
+ * <li>set id -> cards (sorted ascending), with the set ids grouped by their smallest card</li>
+ * <li>card -> the ids of the sets that contain it</li>
+ * </ul>
+ * For the standard deck (4 features, 3 values) there are 1080 sets and every card belongs to 40 of them.
+ * Catalogues are immutable and shared between all the configs with the same deck.
+ */
+public class SetCatalogue {
+
+    private static final int MAGIC = 0x53455443; // "SETC"
+
+    private static final Map<Long, SetCatalogue> catalogues = new ConcurrentHashMap<>();
+
+    public final int featureCount;
+    public final int featureSize;
+    public final int deckSize;
+    public final int setCount;
+
+    /**
+     * The cards of set s are setCards[s * featureSize] .. setCards[s * featureSize + featureSize - 1] (ascending).
+     */
+    private final int[] setCards;
+
+    /**
+     * The sets whose smallest card is c are the ids firstSet[c] .. firstSet[c + 1] - 1.
+     */
+    private final int[] firstSet;
+
+    /**
+     * The ids of the sets containing card c are cardSets[cardOffsets[c]] .. cardSets[cardOffsets[c + 1] - 1].
+     */
+    private final int[] cardOffsets;
+    private final int[] cardSets;
+
+    /**
+     * The cards given to containsSet and findSet, and the preferred cards given to findSet, as bitsets (of each
+     * thread, cleared after each call).
+     */
+    private final ThreadLocal<long[]> present;
+    private final ThreadLocal<long[]> favoured;
+
+    private SetCatalogue(int featureCount, int featureSize, int[] setCards) {
+        this.featureCount = featureCount;
+        this.featureSize = featureSize;
+        this.deckSize = (int) Math.pow(featureSize, featureCount);
+        this.setCount = setCards.length / featureSize;
+        this.firstSet = new int[deckSize + 1];
+        this.cardOffsets = new int[deckSize + 1];
+        this.cardSets = new int[setCards.length];
+        this.setCards = groupBySmallestCard(setCards);
+        indexCards();
+        this.present = ThreadLocal.withInitial(() -> new long[(deckSize + 63) >>> 6]);
+        this.favoured = ThreadLocal.withInitial(() -> new long[(deckSize + 63) >>> 6]);
+    }
+
+    /**
+     * Counting sort of the sets by their smallest card (the first card of each set).
+     */
+    private int[] groupBySmallestCard(int[] sets) {
+        for (int s = 0; s < setCount; ++s)
+            ++firstSet[sets[s * featureSize] + 1];
+        for (int c = 0; c < deckSize; ++c)
+            firstSet[c + 1] += firstSet[c];
+        int[] next = firstSet.clone();
+        int[] sorted = new int[sets.length];
+        for (int s = 0; s < setCount; ++s)
+            System.arraycopy(sets, s * featureSize, sorted, next[sets[s * featureSize]]++ * featureSize, featureSize);
+        return sorted;
+    }
+
+    /**
+     * Builds the card -> sets reverse index.
+     */
+    private void indexCards() {
+        for (int card : setCards)
+            ++cardOffsets[card + 1];
+        for (int c = 0; c < deckSize; ++c)
+            cardOffsets[c + 1] += cardOffsets[c];
+        int[] next = cardOffsets.clone();
+        for (int i = 0; i < setCards.length; ++i)
+            cardSets[next[setCards[i]]++] = i / featureSize;
+    }
+
+    /**
+     * @param featureCount - the number of features.
+     * @param featureSize  - the number of values of each feature (and the number of cards in a set).
+     * @return - the number of sets that contain a given card: ((1 + (featureSize - 1)!) ^ featureCount - 1) / (featureSize - 1)!
+     */
+    public static long setsPerCard(int featureCount, int featureSize) {
+        long permutations = factorial(featureSize - 1);
+        return (pow(1 + permutations, featureCount) - 1) / permutations;
+    }
+
+    /**
+     * @return - the total number of sets in a deck (every set is counted once for each of its cards).
+     */
+    public static long setCount(int featureCount, int featureSize) {
+        return pow(featureSize, featureCount) * setsPerCard(featureCount, featureSize) / featureSize;
+    }
+
+    private static long factorial(int n) {
+        long result = 1;
+        for (int i = 2; i <= n; ++i) result *= i;
+        return result;
+    }
+
+    private static long pow(long base, int exponent) {
+        long result = 1;
+        for (int i = 0; i < exponent; ++i) result *= base;
+        return result;
+    }
+
+    /**
+     * @param set - the set id.
+     * @param i   - the index of the card in the set (0 .. featureSize - 1).
+     * @return - the i-th smallest card of the set.
+     */
+    public int card(int set, int i) {
+        return setCards[set * featureSize + i];
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - the number of sets that contain the card.
+     */
+    public int setsOf(int card) {
+        return cardOffsets[card + 1] - cardOffsets[card];
+    }
+
+    /**
+     * @param card - the card id.
+     * @param i    - the index of the set among the sets of the card (0 .. setsOf(card) - 1).
+     * @return - the id of the i-th set that contains the card.
+     */
+    public int setOf(int card, int i) {
+        return cardSets[cardOffsets[card] + i];
+    }
+
+    /**
+     * Finds up to count sets in the given collection of cards (see Util.findSets).
+     * Each set is found through its smallest card, so the cost is the number of sets of the given cards.
+     */
+    public List<int[]> findSets(List<Integer> deck, int count) {
+        List<int[]> sets = new ArrayList<>();
+        long[] present = new long[(deckSize + 63) >>> 6];
+        for (int card : deck)
+            present[card >>> 6] |= 1L << card;
+        for (int card : deck) {
+            for (int set = firstSet[card]; set < firstSet[card + 1]; ++set) {
+                int first = set * featureSize;
+                boolean found = true;
+                for (int i = first + 1; i < first + featureSize && found; ++i)
+                    found = (present[setCards[i] >>> 6] & (1L << setCards[i])) != 0;
+                if (found) {
+                    int[] cards = new int[featureSize];
+                    System.arraycopy(setCards, first, cards, 0, featureSize);
+                    sets.add(cards);
+                    if (sets.size() >= count) return sets;
+                }
+            }
+        }
+        return sets;
+    }
+
+    /**
+     * Checks if there is a set in the given collection of cards, like findSets(deck, 1) but without allocating.
+     */
+    public boolean containsSet(List<Integer> deck) {
+        long[] present = this.present.get();
+        int n = deck.size();
+        for (int i = 0; i < n; ++i) {
+            int card = deck.get(i);
+            present[card >>> 6] |= 1L << card;
+        }
+        boolean found = false;
+        for (int i = 0; i < n && !found; ++i) {
+            int card = deck.get(i);
+            for (int set = firstSet[card]; set < firstSet[card + 1] && !found; ++set) {
+                int first = set * featureSize;
+                found = true;
+                for (int k = first + 1; k < first + featureSize && found; ++k)
+                    found = (present[setCards[k] >>> 6] & (1L << setCards[k])) != 0;
+            }
+        }
+        for (int i = 0; i < n; ++i) {
+            int card = deck.get(i);
+            present[card >>> 6] &= ~(1L << card);
+        }
+        return found;
+    }
+
+    /**
+     * Finds the set with the fewest cards outside the first preferred entries, like Util.findSet but without
+     * allocating. The search stops early when no set can have fewer such cards.
+     */
+    public int findSet(int[] cards, int count, int preferred, int[] set) {
+        long[] present = this.present.get();
+        long[] favoured = this.favoured.get();
+        for (int i = 0; i < count; ++i) {
+            int card = cards[i];
+            if (card < 0) continue;
+            present[card >>> 6] |= 1L << card;
+            if (i < preferred) favoured[card >>> 6] |= 1L << card;
+        }
+        int best = -1;
+        int fewest = Math.max(0, featureSize - preferred);
+        for (int i = 0; i < count && best != fewest; ++i) {
+            int card = cards[i];
+            if (card < 0) continue;
+            for (int s = firstSet[card]; s < firstSet[card + 1] && best != fewest; ++s) {
+                int first = s * featureSize;
+                int missing = 0;
+                boolean found = true;
+                for (int k = first; k < first + featureSize && found; ++k) {
+                    int other = setCards[k];
+                    found = (present[other >>> 6] & (1L << other)) != 0;
+                    if ((favoured[other >>> 6] & (1L << other)) == 0) ++missing;
+                }
+                if (found && (best < 0 || missing < best)) {
+                    best = missing;
+                    System.arraycopy(setCards, first, set, 0, featureSize);
+                }
+            }
+        }
+        for (int i = 0; i < count; ++i) {
+            int card = cards[i];
+            if (card < 0) continue;
+            present[card >>> 6] &= ~(1L << card);
+            favoured[card >>> 6] &= ~(1L << card);
+        }
+        return best;
+    }
+
+    /**
+     * Returns the shared catalogue of the deck of the given config: loaded from the resource
+     * catalogues/sets-{featureCount}-{featureSize}.bin if it exists, otherwise built (if it is not too large).
+     *
+     * @param config - the game configuration.
+     * @return - the catalogue, or null if there is no resource and the deck has more than config.setCatalogueMaxSets sets.
+     */
+    public static SetCatalogue of(Config config) {
+        if (config.featureSize < 2) return null;
+        long key = ((long) config.featureCount << 32) | config.featureSize;
+        SetCatalogue catalogue = catalogues.get(key);
+        if (catalogue != null) return catalogue;
+
+        try (InputStream is = SetCatalogue.class.getClassLoader().getResourceAsStream(resourceName(config.featureCount, config.featureSize))) {
+            if (is != null) catalogue = read(is);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (catalogue == null) {
+            if (setCount(config.featureCount, config.featureSize) > config.setCatalogueMaxSets) return null;
+            catalogue = build(config.featureCount, config.featureSize);
+        }
+        SetCatalogue existing = catalogues.putIfAbsent(key, catalogue);
+        return existing != null ? existing : catalogue;
+    }
+
+    static String resourceName(int featureCount, int featureSize) {
+        return "catalogues/sets-" + featureCount + "-" + featureSize + ".bin";
+    }
+
+    /**
+     * Enumerates all the sets: every feature is either the same value in all the cards, or takes the values in the
+     * order of some permutation. The permutation of the first "different" feature is fixed to the identity, so each
+     * set is generated exactly once.
+     */
+    public static SetCatalogue build(int featureCount, int featureSize) {
+        long count = setCount(featureCount, featureSize);
+        if (count * featureSize > Integer.MAX_VALUE)
+            throw new IllegalArgumentException("too many sets: " + count);
+        int[][] permutations = permutations(featureSize);
+        int options = featureSize + permutations.length; // same value v (v < featureSize) or permutation
+        int[] setCards = new int[(int) count * featureSize];
+        int[] option = new int[featureCount];
+        int[] cards = new int[featureSize];
+        int sets = 0;
+
+        do {
+            int firstDifferent = -1;
+            boolean canonical = true;
+            for (int f = 0; f < featureCount && canonical; ++f)
+                if (option[f] >= featureSize && firstDifferent < 0) {
+                    firstDifferent = f;
+                    canonical = option[f] == featureSize; // identity permutation
+                }
+            if (firstDifferent >= 0 && canonical) {
+                for (int j = 0; j < featureSize; ++j) {
+                    int card = 0;
+                    for (int f = 0; f < featureCount; ++f)
+                        card = card * featureSize + (option[f] < featureSize ? option[f] : permutations[option[f] - featureSize][j]);
+                    cards[j] = card;
+                }
+                insertionSort(cards);
+                System.arraycopy(cards, 0, setCards, sets++ * featureSize, featureSize);
+            }
+        } while (next(option, options));
+
+        return new SetCatalogue(featureCount, featureSize, setCards);
+    }
+
+    private static boolean next(int[] digits, int base) {
+        for (int i = digits.length - 1; i >= 0; --i) {
+            if (++digits[i] < base) return true;
+            digits[i] = 0;
+        }
+        return false;
+    }
+
+    private static void insertionSort(int[] values) {
+        for (int i = 1; i < values.length; ++i)
+            for (int j = i; j > 0 && values[j - 1] > values[j]; --j) {
+                int tmp = values[j];
+                values[j] = values[j - 1];
+                values[j - 1] = tmp;
+            }
+    }
+
+    /**
+     * @return - all the permutations of 0 .. n-1 in lexicographic order (the identity first).
+     */
+    private static int[][] permutations(int n) {
+        int[][] result = new int[(int) factorial(n)][];
+        int[] permutation = new int[n];
+        for (int i = 0; i < n; ++i) permutation[i] = i;
+        for (int p = 0; p < result.length; ++p) {
+            result[p] = permutation.clone();
+            // next permutation in lexicographic order
+            int i = n - 2;
+            while (i >= 0 && permutation[i] >= permutation[i + 1]) --i;
+            if (i < 0) break;
+            int j = n - 1;
+            while (permutation[j] <= permutation[i]) --j;
+            int tmp = permutation[i];
+            permutation[i] = permutation[j];
+            permutation[j] = tmp;
+            for (int a = i + 1, b = n - 1; a < b; ++a, --b) {
+                tmp = permutation[a];
+                permutation[a] = permutation[b];
+                permutation[b] = tmp;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Writes the catalogue in its binary format (the set cards; the indexes are rebuilt when reading).
+     */
+    public void write(OutputStream os) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(os));
+        out.writeInt(MAGIC);
+        out.writeInt(featureCount);
+        out.writeInt(featureSize);
+        out.writeInt(setCount);
+        ByteBuffer buffer = ByteBuffer.allocate(Integer.BYTES * 8192);
+        for (int i = 0; i < setCards.length; ) {
+            buffer.clear();
+            while (buffer.hasRemaining() && i < setCards.length) buffer.putInt(setCards[i++]);
+            out.write(buffer.array(), 0, buffer.position());
+        }
+        out.flush();
+    }
+
+    /**
+     * Reads a catalogue written by write.
+     */
+    public static SetCatalogue read(InputStream is) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(is));
+        if (in.readInt() != MAGIC) throw new IOException("not a set catalogue");
+        int featureCount = in.readInt();
+        int featureSize = in.readInt();
+        int setCount = in.readInt();
+        if (setCount != setCount(featureCount, featureSize)) throw new IOException("corrupted set catalogue");
+        int[] setCards = new int[setCount * featureSize];
+        byte[] bytes = new byte[Integer.BYTES * 8192];
+        for (int i = 0; i < setCards.length; ) {
+            int n = Math.min(bytes.length / Integer.BYTES, setCards.length - i);
+            in.readFully(bytes, 0, n * Integer.BYTES);
+            ByteBuffer.wrap(bytes, 0, n * Integer.BYTES).asIntBuffer().get(setCards, i, n);
+            i += n;
+        }
+        return new SetCatalogue(featureCount, featureSize, setCards);
+    }
+
+    /**
+     * Builds a catalogue ahead of time, to be bundled as a resource (see of).
+     * Usage: SetCatalogue featureCount featureSize [output directory]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: SetCatalogue featureCount featureSize [output directory]");
+            return;
+        }
+        int featureCount = Integer.parseInt(args[0]);
+        int featureSize = Integer.parseInt(args[1]);
+        SetCatalogue catalogue = build(featureCount, featureSize);
+        String file = (args.length > 2 ? args[2] + "/" : "") + resourceName(featureCount, featureSize);
+        Files.createDirectories(Paths.get(file).getParent());
+        try (OutputStream os = Files.newOutputStream(Paths.get(file))) {
+            catalogue.write(os);
+        }
+        System.out.println("wrote " + catalogue.setCount + " sets to " + file);
+    }
+}
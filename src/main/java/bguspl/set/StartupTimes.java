@@ -0,0 +1,52 @@
+package bguspl.set;
+
+import java.lang.management.ManagementFactory;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The time each phase of the launch of the game was done at, in milliseconds since the JVM started (the phases may
+ * be done on different threads, e.g. the user interface is built while the dealer deals). "first card" is the phase
+ * to track: the time until the game is playing.
+ */
+public class StartupTimes {
+
+    /**
+     * The time (System.nanoTime()) the JVM started.
+     */
+    private final long jvmStart;
+
+    /**
+     * The phases, in the order they were done (guarded by this).
+     */
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    public StartupTimes() {
+        jvmStart = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(ManagementFactory.getRuntimeMXBean().getUptime());
+        phase("main");
+    }
+
+    /**
+     * Records that a phase is done now (only the first time it is done counts).
+     */
+    public synchronized void phase(String name) {
+        phases.putIfAbsent(name, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - jvmStart));
+    }
+
+    /**
+     * @return - the time the phase was done at (milliseconds since the JVM started), -1 if it was not done.
+     */
+    public synchronized long millis(String name) {
+        return phases.getOrDefault(name, -1L);
+    }
+
+    @Override
+    public synchronized String toString() {
+        StringBuilder sb = new StringBuilder("startup (ms since launch):");
+        for (Map.Entry<String, Long> phase : phases.entrySet())
+            sb.append(' ').append(phase.getKey()).append(' ').append(phase.getValue()).append(',');
+        sb.setLength(sb.length() - 1);
+        return sb.toString();
+    }
+}
@@ -0,0 +1,285 @@
+package bguspl.set;
+
+import bguspl.set.ex.Dealer;
+import bguspl.set.ex.GameStats;
+import bguspl.set.ex.Player;
+import bguspl.set.ex.Table;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Runs many independent headless games (computer players only) in parallel and prints aggregated statistics per
+ * configuration and per computer player strategy.
+ * <p>
+ * Usage: Tournament games [config files...] (the default is config.properties). Each game gets its own Config,
+ * Table, Dealer and players, and runs on the event loop engine (a single thread, see GameLoop) with its times (the
+ * freezes and the turn timeout) scaled down by the time scale, so a game takes a fraction of a second of mostly cpu.
+ * The games still wait for their timers, so more games run at once than there are processors.
+ * <p>
+ * The game seeds are derived from the tournament seed (printed at startup, set it with -Dtournament.seed=...). The
+ * number of games played at once is -Dtournament.parallelism=... (the default is 16 per available processor) and
+ * the time scale is -Dtournament.timeScale=... (the default is 0.001; 1 plays the times of the configuration).
+ */
+public class Tournament {
+
+    /**
+     * Running statistics of a single value (e.g. the sets per game).
+     */
+    static class Summary {
+        private long count;
+        private double sum;
+        private double min = Double.MAX_VALUE;
+        private double max = -Double.MAX_VALUE;
+
+        synchronized long count() {
+            return count;
+        }
+
+        synchronized double sum() {
+            return sum;
+        }
+
+        synchronized void add(double value) {
+            ++count;
+            sum += value;
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+
+        @Override
+        public synchronized String toString() {
+            if (count == 0) return "n/a";
+            return String.format("avg %.2f min %.2f max %.2f", sum / count, min, max);
+        }
+    }
+
+    /**
+     * The statistics aggregated for one configuration or one strategy.
+     */
+    static class Aggregate {
+        final Summary sets = new Summary();
+        final Summary durationSeconds = new Summary();
+        final Summary reshuffles = new Summary();
+        final Summary penalties = new Summary();
+        final Summary points = new Summary();
+        final Summary wins = new Summary();
+    }
+
+    private final Logger logger;
+    private final long seed;
+    private final ExecutorService pool;
+    private final Map<String, Aggregate> perConfig = new TreeMap<>();
+    private final Map<String, Aggregate> perStrategy = new TreeMap<>();
+
+    public Tournament(Logger logger, long seed, int parallelism) {
+        this.logger = logger;
+        this.seed = seed;
+        this.pool = Executors.newFixedThreadPool(parallelism);
+    }
+
+    private synchronized Aggregate aggregate(Map<String, Aggregate> map, String key) {
+        return map.computeIfAbsent(key, k -> new Aggregate());
+    }
+
+    /**
+     * @return - the statistics of the games of a configuration (null if none were played).
+     */
+    synchronized Aggregate perConfig(String name) {
+        return perConfig.get(name);
+    }
+
+    /**
+     * @return - the statistics of the players of a strategy (null if none played).
+     */
+    synchronized Aggregate perStrategy(String strategy) {
+        return perStrategy.get(strategy);
+    }
+
+    /**
+     * Plays a single game to its end and records its statistics.
+     *
+     * @param name       - the name of the configuration the game belongs to.
+     * @param properties - the configuration of the game.
+     */
+    void playGame(String name, Properties properties) {
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+        if (config.findSetsCacheSize > 0) util = new CachingUtil(util, config.findSetsCacheSize);
+        Env env = new Env(logger, config, new HeadlessUserInterface(config), util);
+
+        Player[] players = new Player[config.players];
+        Table table = new Table(env);
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+        dealer.run();
+
+        String[] strategies = new String[players.length];
+        for (Player player : players) strategies[player.id] = player.strategy();
+        record(name, dealer.stats(), strategies);
+    }
+
+    /**
+     * Records the statistics of a game.
+     *
+     * @param strategies - the strategy of each player.
+     */
+    void record(String name, GameStats stats, String[] strategies) {
+        Aggregate game = aggregate(perConfig, name);
+        game.sets.add(stats.sets());
+        game.durationSeconds.add(stats.durationMillis() / 1000.0);
+        game.reshuffles.add(stats.reshuffles());
+        game.penalties.add(stats.penalties());
+
+        int maxScore = 0;
+        for (int player = 0; player < strategies.length; ++player)
+            maxScore = Math.max(maxScore, stats.points(player));
+        for (int player = 0; player < strategies.length; ++player) {
+            Aggregate strategy = aggregate(perStrategy, strategies[player]);
+            strategy.points.add(stats.points(player));
+            strategy.penalties.add(stats.penalties(player));
+            // nobody wins a game without points
+            strategy.wins.add(maxScore > 0 && stats.points(player) == maxScore ? 1 : 0);
+        }
+    }
+
+    /**
+     * Each game gets its own seed, derived from the seed of its configuration (or the tournament seed if the
+     * configuration has none), so a tournament can be replayed game by game.
+     */
+    private Properties gameProperties(Properties config, int game) {
+        Properties properties = new Properties();
+        properties.putAll(config);
+        String configSeed = config.getProperty("RandomSeed", "").trim();
+        long base = configSeed.isEmpty() ? seed : Long.parseLong(configSeed);
+        properties.put("RandomSeed", Long.toString(base + game * 0x9E3779B97F4A7C15L));
+        return properties;
+    }
+
+    /**
+     * Plays all the games and waits for them to finish.
+     *
+     * @param games   - the number of games to play for each configuration.
+     * @param configs - the configurations (by name).
+     */
+    public void run(int games, Map<String, Properties> configs) throws InterruptedException {
+        List<Future<?>> results = new ArrayList<>();
+        for (Map.Entry<String, Properties> config : configs.entrySet())
+            for (int i = 0; i < games; ++i) {
+                Properties properties = gameProperties(config.getValue(), i);
+                results.add(pool.submit(() -> playGame(config.getKey(), properties)));
+            }
+        try {
+            for (Future<?> result : results) result.get();
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public void print() {
+        perConfig.forEach((name, game) -> {
+            System.out.println("config " + name + ":");
+            System.out.println("  sets per game:    " + game.sets);
+            System.out.println("  game duration(s): " + game.durationSeconds);
+            System.out.println("  reshuffles:       " + game.reshuffles);
+            System.out.println("  penalties:        " + game.penalties);
+        });
+        perStrategy.forEach((name, strategy) -> {
+            System.out.println("strategy " + name + ":");
+            System.out.println("  points per game:    " + strategy.points);
+            System.out.println("  penalties per game: " + strategy.penalties);
+            System.out.println("  win rate:           " + strategy.wins);
+        });
+    }
+
+    private static Properties loadTournamentProperties(String filename, double timeScale) throws IOException {
+        Properties properties = new Properties();
+        try (InputStream is = Files.exists(Paths.get(filename)) ? Files.newInputStream(Paths.get(filename))
+                : Tournament.class.getClassLoader().getResourceAsStream(filename)) {
+            if (is == null) throw new IOException("cannot find configuration file " + filename);
+            properties.load(is);
+        }
+        return tournamentProperties(filename, properties, timeScale);
+    }
+
+    /**
+     * @param timeScale - the factor the freezes and the turn timeout are multiplied by.
+     * @return - the configuration of the games of a tournament: headless games of computer players only, on the event
+     *           loop engine (each game on one thread, the computer players move on it too), with no table delay and no
+     *           end of game pause, no snapshots (the parallel games would share the file), and the times scaled.
+     * @throws IllegalArgumentException - if the configuration has no computer players (its games would never end).
+     */
+    static Properties tournamentProperties(String name, Properties config, double timeScale) {
+        if (!(timeScale > 0)) throw new IllegalArgumentException("the time scale must be positive");
+        if (Integer.parseInt(config.getProperty("ComputerPlayers", "0").trim()) < 1)
+            throw new IllegalArgumentException("configuration " + name + " has no computer players (set ComputerPlayers)");
+        Properties properties = new Properties();
+        properties.putAll(config);
+        properties.put("HumanPlayers", "0");
+        properties.put("Engine", "event-loop");
+        properties.put("AiThreads", "0");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("EndGamePauseSeconds", "0");
+        properties.put("SnapshotFile", "");
+        properties.put("LogLevel", "OFF");
+        // 0 and negative turn timeouts are display modes, not times
+        for (String time : new String[]{"PointFreezeSeconds", "PenaltyFreezeSeconds", "TurnTimeoutSeconds", "TurnTimeoutWarningSeconds"}) {
+            String value = properties.getProperty(time, "").trim();
+            if (value.isEmpty()) continue;
+            double seconds = Double.parseDouble(value);
+            if (seconds > 0) properties.put(time, Double.toString(seconds * timeScale));
+        }
+        return properties;
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        if (args.length < 1) {
+            System.out.println("usage: Tournament games [config files...]");
+            return;
+        }
+        int games = Integer.parseInt(args[0]);
+        double timeScale = Double.parseDouble(System.getProperty("tournament.timeScale", "0.001"));
+        Map<String, Properties> configs = new TreeMap<>();
+        try {
+            if (args.length == 1) configs.put("config.properties", loadTournamentProperties("config.properties", timeScale));
+            for (int i = 1; i < args.length; ++i)
+                configs.put(args[i], loadTournamentProperties(args[i], timeScale));
+        } catch (IllegalArgumentException e) {
+            System.out.println(e.getMessage());
+            return;
+        }
+
+        // the games log to a logger without handlers (the statistics are printed at the end)
+        Logger logger = Logger.getLogger("SetTournamentLogger");
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+
+        Long seed = Long.getLong("tournament.seed");
+        if (seed == null) seed = System.nanoTime() ^ System.currentTimeMillis();
+        // the games wait for their timers, so the games in flight are not bound to the processors
+        int parallelism = Integer.getInteger("tournament.parallelism", 16 * Runtime.getRuntime().availableProcessors());
+        System.out.println("playing " + games + " games for each of " + configs.size() + " configurations, "
+                + parallelism + " at a time (tournament seed " + seed + ", time scale " + timeScale + ")");
+        long start = System.currentTimeMillis();
+        Tournament tournament = new Tournament(logger, seed, parallelism);
+        tournament.run(games, configs);
+        System.out.println("finished in " + (System.currentTimeMillis() - start) / 1000.0 + " seconds");
+        tournament.print();
+    }
+}
@@ -2,14 +2,18 @@ package bguspl.set;
 
 import bguspl.set.ex.Player;
 
+import javax.imageio.ImageIO;
 import javax.swing.*;
 import java.awt.*;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URL;
 import java.util.Arrays;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static java.lang.String.format;
 
@@ -112,7 +116,12 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             URL imageResource = getClass().getClassLoader().getResource(filename);
             if (imageResource == null)
                 throw new RuntimeException(new FileNotFoundException(filename));
-            return new ImageIcon(imageResource).getImage();
+            try {
+                // decoded right away (and thread safe, unlike ImageIcon that shares one MediaTracker)
+                return ImageIO.read(imageResource);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
         }
 
         private GamePanel() {
@@ -122,10 +131,10 @@ public class UserInterfaceSwing extends JFrame implements UserInterface {
             // init deck and load all pictures from png files
             assert config.featureSize < 10; // otherwise there will be naming conflicts
 
-            // load the image resources
+            // load the image resources (decoding them is most of the startup time, so in parallel)
             deck = new Image[config.deckSize];
-            for (int i = 0; i < config.deckSize; ++i)
-                deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png");
+            IntStream.range(0, config.deckSize).parallel().forEach(i ->
+                    deck[i] = loadImageResource("cards/" + intInBaseToPaddedString(i, config.featureCount, config.featureSize) + ".png"));
             emptyCard = loadImageResource("cards/empty_card.png");
 
             grid = new Image[config.rows][config.columns];
@@ -1,6 +1,9 @@
 package bguspl.set;
 
+import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 /**
  * An interface for general utilities provided for convenience.
@@ -31,6 +34,47 @@ public interface Util {
      */
     boolean testSet(int[] cards);
 
+    /**
+     * Checks up to 64 candidate sets at once, bit-sliced: the features of the candidates are spread over one-hot
+     * bit-planes (bit i of plane (k, f, v) is set iff card k of candidate i has value v in feature f), so each word
+     * operation applies the rule to all the candidates. A feature is the same in all the cards of a candidate iff
+     * OR over v of (AND over k of plane (k, f, v)), and it is different in all the cards iff AND over v of (OR over k
+     * of plane (k, f, v)) (the cards of a set are as many as the values of a feature).
+     *
+     * @param cards   - the cards of the candidates: candidate i is cards[i * setSize] .. cards[i * setSize + setSize - 1].
+     * @param setSize - the number of cards in a set (config.featureSize).
+     * @param count   - the number of candidates (at most 64).
+     * @return - a mask with bit i set iff candidate i forms a legal set.
+     */
+    default long testSets(int[] cards, int setSize, int count) {
+        if (count > 64) throw new IllegalArgumentException("at most 64 candidates per call");
+        if (count <= 0) return 0;
+        int featureCount = cardToFeatures(cards[0]).length;
+        long[] planes = new long[setSize * featureCount * setSize];
+        for (int i = 0; i < count; ++i)
+            for (int k = 0; k < setSize; ++k) {
+                int[] features = cardToFeatures(cards[i * setSize + k]);
+                for (int f = 0; f < featureCount; ++f)
+                    planes[(k * featureCount + f) * setSize + features[f]] |= 1L << i;
+            }
+        long legal = count == 64 ? -1L : (1L << count) - 1;
+        for (int f = 0; f < featureCount && legal != 0; ++f) {
+            long same = 0, different = -1L;
+            for (int v = 0; v < setSize; ++v) {
+                long all = -1L, any = 0;
+                for (int k = 0; k < setSize; ++k) {
+                    long plane = planes[(k * featureCount + f) * setSize + v];
+                    all &= plane;
+                    any |= plane;
+                }
+                same |= all;
+                different &= any;
+            }
+            legal &= same | different;
+        }
+        return legal;
+    }
+
     /**
      * Finds and returns up to count sets in the given collection of cards.
      *
@@ -40,6 +84,48 @@ public interface Util {
      */
     List<int[]> findSets(List<Integer> deck, int count);
 
+    /**
+     * Checks if there is a legal set in a list of cards (like findSets(deck, 1), without returning the set).
+     *
+     * @param deck - the list of cards to check.
+     * @return - true iff there is a legal set in the cards.
+     */
+    default boolean containsSet(List<Integer> deck) {
+        return !findSets(deck, 1).isEmpty();
+    }
+
+    /**
+     * Looks for the legal set among the given cards with the fewest cards outside the first preferred ones (e.g. the set
+     * that needs the fewest cards of the deck to be completed on the table), in the order of findSets. Unlike findSets
+     * it does not allocate when the set catalogue is used.
+     *
+     * @param cards     - the cards to look in (negative entries, like the empty slots of a table, are skipped).
+     * @param count     - the number of entries of cards to look in.
+     * @param preferred - the number of entries at the start of cards that are preferred.
+     * @param set       - filled with the cards of the set found.
+     * @return - the number of cards of the set found that are not among the preferred entries, -1 if there is no set.
+     */
+    default int findSet(int[] cards, int count, int preferred, int[] set) {
+        List<Integer> deck = new ArrayList<>(count);
+        Set<Integer> preferredCards = new HashSet<>();
+        for (int i = 0; i < count; ++i) {
+            if (cards[i] < 0) continue;
+            deck.add(cards[i]);
+            if (i < preferred) preferredCards.add(cards[i]);
+        }
+        int best = -1;
+        for (int[] found : findSets(deck, Integer.MAX_VALUE)) {
+            int missing = 0;
+            for (int card : found)
+                if (!preferredCards.contains(card)) ++missing;
+            if (best < 0 || missing < best) {
+                best = missing;
+                System.arraycopy(found, 0, set, 0, found.length);
+            }
+        }
+        return best;
+    }
+
     /**
      * Spin a random number of times (for debugging/testing).
      */
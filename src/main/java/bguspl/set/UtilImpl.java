@@ -3,7 +3,7 @@ package bguspl.set;
 import java.util.Arrays;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.ThreadLocalRandom;
+import java.util.Random;
 import java.util.stream.IntStream;
 
 /**
@@ -13,8 +13,45 @@ public class UtilImpl implements Util {
 
     private final Config config;
 
+    /**
+     * The random stream of each thread (for spin), seeded by the thread name.
+     */
+    private final ThreadLocal<Random> random;
+
+    /**
+     * The catalogue of all the legal sets of the deck (null if the deck is too large to build it).
+     */
+    private final SetCatalogue catalogue;
+
+    /**
+     * The one-hot features of each card: bit f * featureSize + v is set iff the card has value v in feature f (null
+     * if they do not fit in a long).
+     */
+    private final long[] oneHot;
+
+    /**
+     * The bit-planes of the candidates of testSets, of each thread.
+     */
+    private final ThreadLocal<long[]> planes;
+
     public UtilImpl(Config config) {
         this.config = config;
+        this.random = ThreadLocal.withInitial(() -> new Random(config.seed(Thread.currentThread().getName())));
+        this.catalogue = SetCatalogue.of(config);
+        this.oneHot = oneHotFeatures();
+        this.planes = ThreadLocal.withInitial(() -> new long[config.featureSize * config.featureCount * config.featureSize]);
+    }
+
+    private long[] oneHotFeatures() {
+        if (config.featureCount * config.featureSize > 64) return null;
+        long[] oneHot = new long[config.deckSize];
+        int[] features = new int[config.featureCount];
+        for (int card = 0; card < config.deckSize; ++card) {
+            cardToFeatures(card, features);
+            for (int f = 0; f < config.featureCount; ++f)
+                oneHot[card] |= 1L << (f * config.featureSize + features[f]);
+        }
+        return oneHot;
     }
 
     private void cardToFeatures(int card, int[] features) {
@@ -40,6 +77,15 @@ public class UtilImpl implements Util {
 
     @Override
     public boolean testSet(int[] cards) {
+        // the bit-sliced check does not allocate
+        if (oneHot != null && cards.length == config.featureSize) return testSets(cards, cards.length, 1) != 0;
+        return testSetScalar(cards);
+    }
+
+    /**
+     * The check of testSet feature by feature (for sets of any size, and to compare the bit-sliced check against).
+     */
+    public boolean testSetScalar(int[] cards) {
         int[][] features = cardsToFeatures(Arrays.copyOf(cards, cards.length));
         for (int i = 0; i < config.featureCount; ++i) {
             boolean sameSame = true, butDifferent = true;
@@ -64,21 +110,96 @@ public class UtilImpl implements Util {
         return true;
     }
 
+    /**
+     * The bit-sliced check of Util.testSets, with the bit-planes built from the precomputed one-hot features.
+     */
+    @Override
+    public long testSets(int[] cards, int setSize, int count) {
+        if (oneHot == null || setSize != config.featureSize) return Util.super.testSets(cards, setSize, count);
+        if (count > 64) throw new IllegalArgumentException("at most 64 candidates per call");
+        int width = config.featureCount * setSize;
+        long[] planes = this.planes.get();
+        Arrays.fill(planes, 0);
+        for (int i = 0; i < count; ++i)
+            for (int k = 0; k < setSize; ++k)
+                for (long features = oneHot[cards[i * setSize + k]]; features != 0; features &= features - 1)
+                    planes[k * width + Long.numberOfTrailingZeros(features)] |= 1L << i;
+        long legal = count == 64 ? -1L : (1L << count) - 1;
+        for (int f = 0; f < config.featureCount && legal != 0; ++f) {
+            long same = 0, different = -1L;
+            for (int v = f * setSize; v < (f + 1) * setSize; ++v) {
+                long all = -1L, any = 0;
+                for (int k = 0; k < setSize; ++k) {
+                    long plane = planes[k * width + v];
+                    all &= plane;
+                    any |= plane;
+                }
+                same |= all;
+                different &= any;
+            }
+            legal &= same | different;
+        }
+        return legal;
+    }
+
     @Override
     public List<int[]> findSets(List<Integer> deck, int count) {
+        if (!GameEvents.FIND_SETS.isEnabled()) return search(deck, count);
+        GameEvents.FindSets event = new GameEvents.FindSets();
+        event.begin();
+        List<int[]> sets = search(deck, count);
+        event.end();
+        if (event.shouldCommit()) {
+            event.cards = deck.size();
+            event.requested = count;
+            event.found = sets.size();
+            event.commit();
+        }
+        return sets;
+    }
+
+    private List<int[]> search(List<Integer> deck, int count) {
+        return catalogue != null ? catalogue.findSets(deck, count) : findSetsByCombinations(deck, count);
+    }
+
+    /**
+     * Looks for a set in the catalogue without building the list of sets (so it does not allocate).
+     */
+    @Override
+    public boolean containsSet(List<Integer> deck) {
+        return catalogue != null ? catalogue.containsSet(deck) : Util.super.containsSet(deck);
+    }
+
+    /**
+     * Looks for the set in the catalogue (so it does not allocate).
+     */
+    @Override
+    public int findSet(int[] cards, int count, int preferred, int[] set) {
+        return catalogue != null ? catalogue.findSet(cards, count, preferred, set) : Util.super.findSet(cards, count, preferred, set);
+    }
+
+    /**
+     * Goes over all the combinations of cards in lexicographic order, checking them 64 at a time (see testSets).
+     */
+    private List<int[]> findSetsByCombinations(List<Integer> deck, int count) {
         LinkedList<int[]> sets = new LinkedList<>();
         int n = deck.size();
         int r = config.featureSize;
+        if (n < r) return sets;
         int[] combination = new int[r];
+        int[] candidates = new int[64 * r];
+        int candidateCount = 0;
 
         for (int i = 0; i < r; ++i)
             combination[i] = i;
 
-        while (combination[r - 1] < deck.size()) {
-            int[] cards = Arrays.stream(combination).map(deck::get).sorted().toArray();
-            if (testSet(cards)) {
-                sets.add(cards);
-                if (sets.size() >= count) return sets;
+        while (combination[r - 1] < n) {
+            int first = candidateCount * r;
+            for (int i = 0; i < r; ++i) candidates[first + i] = deck.get(combination[i]);
+            Arrays.sort(candidates, first, first + r);
+            if (++candidateCount == 64) {
+                if (addSets(candidates, candidateCount, sets, count)) return sets;
+                candidateCount = 0;
             }
 
             // generate next combination in lexicographic order
@@ -87,12 +208,27 @@ public class UtilImpl implements Util {
             combination[t]++;
             for (int i = t + 1; i < r; i++) combination[i] = combination[i - 1] + 1;
         }
+        addSets(candidates, candidateCount, sets, count);
         return sets;
     }
 
+    /**
+     * Adds the legal sets among the candidates to the sets (in order), up to count sets.
+     *
+     * @return - true iff there are count sets.
+     */
+    private boolean addSets(int[] candidates, int candidateCount, List<int[]> sets, int count) {
+        int r = config.featureSize;
+        for (long legal = testSets(candidates, r, candidateCount); legal != 0 && sets.size() < count; legal &= legal - 1) {
+            int first = Long.numberOfTrailingZeros(legal) * r;
+            sets.add(Arrays.copyOfRange(candidates, first, first + r));
+        }
+        return sets.size() >= count;
+    }
+
     public void spin() {
         if (config.randomSpinMax <= 0) return;
-        long cycles = ThreadLocalRandom.current().nextLong(config.randomSpinMin, config.randomSpinMax);
+        long cycles = config.randomSpinMin + (long) (random.get().nextDouble() * (config.randomSpinMax - config.randomSpinMin));
         for (int i = 0; i < cycles; ++i)
             Thread.yield();
     }
@@ -0,0 +1,152 @@
+package bguspl.set.ex;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A fixed-size pool of threads that moves computer players: instead of a thread of its own, each computer player is a
+ * task that the pool runs while it has something to do, one move every STEP_MILLIS (see Player.aiIdle and
+ * Player.aiStep). A task that finds nothing to do (the player is frozen, waits for the dealer or for its key presses to
+ * be handled, or the table did not change since its last search) is not run again until it is woken (see Bot.wake):
+ * when the cards on the table change, the freeze of the player ends or its key presses are handled. Idle computer
+ * players cost nothing, so a thousand of them take a handful of threads. One pool is shared by all the games of the
+ * process (see shared).
+ * <p>
+ * The pool measures the cpu time of each move (the cpu time of the pool thread, or the elapsed time where the JVM does
+ * not measure it) and adds it to the analytics of the game of the player.
+ */
+class AiPool {
+
+    /**
+     * The time between two moves of a computer player.
+     */
+    static final long STEP_MILLIS = GameLoop.COMPUTER_STEP_MILLIS;
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+    private static final boolean CPU_TIME = THREADS.isCurrentThreadCpuTimeSupported();
+
+    private static AiPool shared;
+
+    private final ScheduledThreadPoolExecutor executor;
+
+    /**
+     * @param threads - the number of threads of the pool (positive).
+     * @param name    - the prefix of the names of the threads.
+     */
+    AiPool(int threads, String name) {
+        if (threads < 1) throw new IllegalArgumentException("the pool needs at least one thread");
+        AtomicInteger count = new AtomicInteger();
+        executor = new ScheduledThreadPoolExecutor(threads, task -> {
+            Thread thread = new Thread(task, name + "-" + count.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+    }
+
+    /**
+     * @param threads - the number of threads of the pool, if it was not created yet (the first caller sets it).
+     * @return - the pool shared by all the games of the process.
+     */
+    static synchronized AiPool shared(int threads) {
+        if (shared == null) shared = new AiPool(threads, "ai");
+        return shared;
+    }
+
+    /**
+     * @return - the number of threads of the pool.
+     */
+    int threads() {
+        return executor.getCorePoolSize();
+    }
+
+    /**
+     * @return - the number of runs of the tasks of the computer players so far (approximate while they run).
+     */
+    long runs() {
+        return executor.getCompletedTaskCount();
+    }
+
+    /**
+     * Starts moving a computer player (until the returned task is stopped).
+     */
+    Bot start(Player player) {
+        Bot bot = new Bot(player, executor);
+        bot.wake();
+        return bot;
+    }
+
+    /**
+     * Stops the threads of the pool (the tasks are dropped).
+     */
+    void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private static long cpuNanos() {
+        return CPU_TIME ? THREADS.getCurrentThreadCpuTime() : System.nanoTime();
+    }
+
+    /**
+     * The task of a computer player: scheduled at most once at a time (see scheduled), it runs again after a move and
+     * waits to be woken after a run that found nothing to do.
+     */
+    static final class Bot implements Runnable {
+
+        private final Player player;
+        private final ScheduledThreadPoolExecutor executor;
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean stopped;
+
+        private Bot(Player player, ScheduledThreadPoolExecutor executor) {
+            this.player = player;
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            // cleared before the player is looked at, so a wake that comes meanwhile runs the task again
+            scheduled.set(false);
+            if (stopped || player.aiIdle()) return;
+            long start = cpuNanos();
+            player.aiStep();
+            player.aiMoved(cpuNanos() - start);
+            schedule(STEP_MILLIS);
+        }
+
+        /**
+         * Runs the task soon, unless it is already scheduled: the player may have something to do.
+         */
+        void wake() {
+            schedule(0);
+        }
+
+        private void schedule(long delayMillis) {
+            if (stopped || !scheduled.compareAndSet(false, true)) return;
+            try {
+                ScheduledFuture<?> future = executor.schedule(this, delayMillis, TimeUnit.MILLISECONDS);
+                this.future = future;
+                if (stopped) future.cancel(false);
+            } catch (RejectedExecutionException e) {
+                // the pool was shut down
+                scheduled.set(false);
+            }
+        }
+
+        /**
+         * Stops moving the player (a move that already started finishes).
+         */
+        void stop() {
+            stopped = true;
+            ScheduledFuture<?> future = this.future;
+            if (future != null) future.cancel(false);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A lock-free, bounded, multi-producer single-consumer queue of set claims (player ids), used by the players to ask
+ * the dealer to check their sets.
+ * <p>
+ * Each claim is stamped with its submission time. Producers reserve a cell with a single compare-and-set on the tail
+ * and publish it through the cell sequence number. The consumer moves every published claim to a small buffer
+ * ordered by submission time and takes the earliest one, so a claim that lost a race for a cell does not lose its
+ * place. The consumer parks only when there is nothing to take; producers unpark it only if it is parked.
+ *
+ * @inv 0 <= size() <= 2 * capacity
+ */
+public class ClaimQueue {
+
+    /**
+     * The value returned by poll when there is no claim.
+     */
+    public static final int NONE = -1;
+
+    private final int capacity;
+    private final int mask;
+
+    /**
+     * The ring: the player and submission time of each cell, and the cell sequence numbers
+     * (sequence == ticket: free for the producer of that ticket, sequence == ticket + 1: published).
+     */
+    private final int[] players;
+    private final long[] timestamps;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * The consumer side: the next ticket to take from the ring, and the published claims ordered by submission time.
+     */
+    private long head;
+    private final int[] pendingPlayers;
+    private final long[] pendingTimestamps;
+    private int pendingSize;
+    private long lastTimestamp;
+
+    /**
+     * The consumer thread, while it is parked waiting for claims (null otherwise).
+     */
+    private volatile Thread waiting;
+
+    /**
+     * @param minCapacity - the minimal number of claims the ring holds before producers have to wait.
+     */
+    public ClaimQueue(int minCapacity) {
+        int size = Integer.highestOneBit(Math.max(2, minCapacity) - 1) << 1;
+        this.capacity = size;
+        this.mask = size - 1;
+        this.players = new int[size];
+        this.timestamps = new long[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; ++i)
+            sequences.set(i, i);
+        this.pendingPlayers = new int[size];
+        this.pendingTimestamps = new long[size];
+    }
+
+    /**
+     * Submits a claim if there is room (never blocks).
+     *
+     * @param player    - the id of the player that submits the claim.
+     * @param timestamp - the submission time (System.nanoTime()).
+     * @return - true iff the claim was queued.
+     */
+    public boolean offer(int player, long timestamp) {
+        while (true) {
+            long ticket = tail.get();
+            int index = (int) ticket & mask;
+            long sequence = sequences.get(index);
+            if (sequence == ticket) {
+                if (tail.compareAndSet(ticket, ticket + 1)) {
+                    players[index] = player;
+                    timestamps[index] = timestamp;
+                    sequences.set(index, ticket + 1);
+                    Thread consumer = waiting;
+                    if (consumer != null) LockSupport.unpark(consumer);
+                    return true;
+                }
+            } else if (sequence < ticket) {
+                return false; // full
+            }
+        }
+    }
+
+    /**
+     * Submits a claim, waiting for room if necessary. The claim keeps the time of this call as its submission time.
+     *
+     * @param player - the id of the player that submits the claim.
+     * @throws InterruptedException - if interrupted while waiting for room.
+     */
+    public void put(int player) throws InterruptedException {
+        long timestamp = System.nanoTime();
+        while (!offer(player, timestamp)) {
+            if (Thread.interrupted()) throw new InterruptedException();
+            Thread.yield();
+        }
+    }
+
+    /**
+     * Moves the published claims from the ring to the pending buffer (consumer only).
+     */
+    private void drain() {
+        while (pendingSize < pendingPlayers.length) {
+            int index = (int) head & mask;
+            if (sequences.get(index) != head + 1) return;
+            int player = players[index];
+            long timestamp = timestamps[index];
+            sequences.set(index, head + capacity);
+            ++head;
+
+            // insert ordered by submission time (claims with the same time keep their order)
+            int i = pendingSize++;
+            while (i > 0 && pendingTimestamps[i - 1] > timestamp) {
+                pendingPlayers[i] = pendingPlayers[i - 1];
+                pendingTimestamps[i] = pendingTimestamps[i - 1];
+                --i;
+            }
+            pendingPlayers[i] = player;
+            pendingTimestamps[i] = timestamp;
+        }
+    }
+
+    /**
+     * Takes the earliest submitted claim (consumer only, never blocks).
+     *
+     * @return - the id of the player of the claim, or NONE if there is no claim.
+     */
+    public int poll() {
+        drain();
+        if (pendingSize == 0) return NONE;
+        int player = pendingPlayers[0];
+        lastTimestamp = pendingTimestamps[0];
+        --pendingSize;
+        System.arraycopy(pendingPlayers, 1, pendingPlayers, 0, pendingSize);
+        System.arraycopy(pendingTimestamps, 1, pendingTimestamps, 0, pendingSize);
+        return player;
+    }
+
+    /**
+     * Takes the earliest submitted claim, parking until one arrives or the timeout passes (consumer only).
+     *
+     * @return - the id of the player of the claim, or NONE if the timeout passed.
+     * @throws InterruptedException - if interrupted while waiting.
+     */
+    public int poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (true) {
+            int player = poll();
+            if (player != NONE) return player;
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) return NONE;
+            waiting = Thread.currentThread();
+            // check again after announcing, a producer may have published before it could see the consumer waiting
+            player = poll();
+            if (player == NONE) LockSupport.parkNanos(this, remaining);
+            waiting = null;
+            if (player != NONE) return player;
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    /**
+     * @return - the submission time (System.nanoTime()) of the claim last taken by poll.
+     */
+    public long lastTimestamp() {
+        return lastTimestamp;
+    }
+
+    /**
+     * @return - the number of claims in the queue (approximate while producers are active).
+     */
+    public int size() {
+        return (int) (tail.get() - head) + pendingSize;
+    }
+}
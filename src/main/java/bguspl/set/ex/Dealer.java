@@ -1,17 +1,18 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.GameEvents;
 
+import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Vector;
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 import java.util.stream.IntStream;
 
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.Random;
 
 /**
  * This class manages the dealer's threads and data
@@ -47,7 +48,7 @@ public class Dealer implements Runnable {
     /**
      * The time when the dealer needs to reshuffle the deck due to turn timeout.
      */
-    private long reshuffleTime = Long.MAX_VALUE;
+    private volatile long reshuffleTime = Long.MAX_VALUE;
 
     /**
      * dealer Thread
@@ -62,18 +63,109 @@ public class Dealer implements Runnable {
     private boolean inFinalSeconds = false;
 
     /**
-     * queue of the players id that request to check their set
+     * queue of the players id that request to check their set (ordered by submission time)
      */
-    protected BlockingQueue <Integer> requests;
+    protected final ClaimQueue requests;
+
+    /**
+     * The statistics of this game.
+     */
+    private final GameStats stats;
+
+    /**
+     * The streaming analytics of the players (see GameAnalytics).
+     */
+    private final GameAnalytics analytics;
+
+    /**
+     * The random source of the deck shuffles (seeded from the config).
+     */
+    private final Random random;
+
+    /**
+     * The single-threaded engine running the game (null when every player has its own thread).
+     */
+    private volatile GameLoop loop;
+
+    /**
+     * The clock that shows the countdown and the freezes (null when the dealer and the players show them).
+     */
+    private DisplayClock clock;
+
+    /**
+     * The table-mutation stage of the pipelined dealer (null when the dealer thread changes the table itself).
+     */
+    private TableStage tableStage;
+
+    /**
+     * The number of the last collect submitted to the table stage (see TableStage.submit): the table is being changed
+     * while the view of the table stage did not apply it yet.
+     */
+    private long lastCollect;
+
+    /**
+     * The slots of the tokens and the cards of the claim being checked (reused by every claim, so checking a claim does
+     * not allocate).
+     */
+    private final int[] claimSlots;
+    private final int[] claimCards;
+
+    /**
+     * The set guaranteeing deal (see chooseCardsToPlace): the cards on the table followed by the cards of the deck that
+     * are not on it, the set it looks for and the cards it chooses (reused by every deal, so dealing does not
+     * allocate).
+     */
+    private final int[] dealCards;
+    private final int[] dealSet;
+    private final int[] dealChosen;
+
+    /**
+     * The writer of the game snapshots (null when the game is not saved), and the time of the next snapshot.
+     */
+    private final SnapshotWriter snapshots;
+    private long nextSnapshot;
+
+    /**
+     * True iff the game was resumed from a snapshot (the deck is not shuffled before the first turn).
+     */
+    private boolean resumed = false;
+
+    /**
+     * The length of the first turn of a resumed game (the time it had left when it was saved), -1 otherwise.
+     */
+    private long resumedTurnMillis = -1;
 
     public Dealer(Env env, Table table, Player[] players) {
         this.env = env;
         this.table = table;
         this.players = players;
         this.playersThreads = new Thread[players.length];
-        this.requests =new ArrayBlockingQueue<Integer>(players.length,true);
+        this.requests = new ClaimQueue(players.length);
         this.deck = IntStream.range(0, env.config.deckSize).boxed().collect(Collectors.toList());
-        this.cardsOnTheTable = IntStream.range(0, env.config.rows*env.config.columns).boxed().collect(Collectors.toList());
+        this.cardsOnTheTable = new ArrayList<>(env.config.tableSize);
+        this.stats = new GameStats(players.length);
+        this.analytics = new GameAnalytics(players.length);
+        this.claimSlots = new int[env.config.featureSize];
+        this.claimCards = new int[env.config.featureSize];
+        this.dealCards = new int[env.config.deckSize];
+        this.dealSet = new int[env.config.featureSize];
+        this.dealChosen = new int[env.config.tableSize];
+        this.random = new Random(env.config.seed("dealer"));
+        this.snapshots = env.config.snapshotFile.isEmpty() ? null : new SnapshotWriter(env.logger, Paths.get(env.config.snapshotFile));
+    }
+
+    /**
+     * @return - the statistics of this game.
+     */
+    public GameStats stats() {
+        return stats;
+    }
+
+    /**
+     * @return - the analytics of the players of this game (can be queried while the game runs).
+     */
+    public GameAnalytics analytics() {
+        return analytics;
     }
 
     /**
@@ -82,22 +174,55 @@ public class Dealer implements Runnable {
     @Override
     public void run() {
         env.logger.info("Thread " + Thread.currentThread().getName() + " starting.");
-        reshuffle();
+        stats.gameStarted();
+        if(!resumed)
+            reshuffle();
+        if(env.config.displayFps > 0)
+            clock = new DisplayClock(env, this, players, env.config.displayFps);
         
-        //starting the players threads
-        for(int i = 0; i<players.length; i++)
+        if(env.config.engine.equals("event-loop"))
         {
-            Thread t = new Thread(players[i]);
-            playersThreads[i]=t;
-            t.start();
+            loop = new GameLoop(env, this, players);
+            loop.run();
         }
-        while (!shouldFinish()) 
+        else
         {
-            placeCardsOnTable();
-            timerLoop();
-            updateTimerDisplay(false);
-            removeAllCardsFromTable();
+            //starting the players threads
+            for(int i = 0; i<players.length; i++)
+            {
+                Thread t = new Thread(players[i], "player-" + i);
+                playersThreads[i]=t;
+                t.start();
+            }
+            if(env.config.dealerPipeline)
+                tableStage = new TableStage(env.logger, table, "dealer-table");
+            if(clock != null)
+                clock.start();
+            while (!shouldFinish()) 
+            {
+                onTable(tableStage == null ? this::placeCardsOnTable : this::placeCardsOnTableWithSet);
+                timerLoop();
+                updateTimerDisplay(false);
+                onTable(this::removeAllCardsFromTable);
+            }
+            if(tableStage != null)
+            {
+                try
+                {
+                    tableStage.close();
+                }
+                catch(InterruptedException e) {}
+            }
         }
+        if(clock != null)
+            clock.stop();
+        if(snapshots != null)
+            // the last snapshot of a game that was stopped before its end is kept, to resume the game from it
+            snapshots.close(env.util.findSets(deck, 1).isEmpty());
+        stats.gameEnded();
+        env.logger.info(analytics.report());
+        for(int i = 0; i<players.length; i++)
+            env.logger.info(analytics.report(i));
         announceWinners();
         terminate();
         env.logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
@@ -107,12 +232,96 @@ public class Dealer implements Runnable {
      * The inner loop of the dealer thread that runs as long as the countdown did not time out.
      */
     private void timerLoop() {
-        reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;//magic number
+        reshuffleTime = System.currentTimeMillis() + turnMillis();
         while (!terminate && System.currentTimeMillis() < reshuffleTime) {
             updateTimerDisplay(false);
             sleepUntilWokenOrTimeout();
-            removeAllCardsFromTableNoSet();
+            if(tableStage == null)
+            {
+                // the table stage does this after each collected set
+                removeAllCardsFromTableNoSet();
+                placeCardsOnTable();
+            }
+            snapshotIfDue();
+        }
+    }
+
+    /**
+     * Applies a change of the table: right away, or on the table stage of the pipelined dealer (waiting until it
+     * was applied, so the dealer can read the table and the deck afterwards).
+     */
+    private void onTable(Runnable change)
+    {
+        if(tableStage == null)
+            change.run();
+        else
+        {
+            try
+            {
+                tableStage.submitAndWait(change);
+            }
+            catch(InterruptedException e)
+            {
+                terminate = true;
+            }
+        }
+    }
+
+    /**
+     * @return - the clock that shows the countdown and the freezes (null if the dealer and the players show them).
+     */
+    DisplayClock clock() {
+        return clock;
+    }
+
+    /**
+     * @return - the pool that moves the computer players (shared by all the games), null if they move on threads of
+     *           their own (threads engine) or on the dealer thread (event loop engine).
+     */
+    AiPool aiPool() {
+        return env.config.aiThreads > 0 ? AiPool.shared(env.config.aiThreads) : null;
+    }
+
+    /**
+     * @param slot - a slot.
+     * @return - the card in the slot as the dealer checks the claims: the table itself, or the view of the table
+     *           stage of the pipelined dealer (Table.EMPTY while a collected set is not taken off the table yet).
+     */
+    private int cardIn(int slot)
+    {
+        if(tableStage == null)
+            return table.slotToCard[slot];
+        TableStage.View view = tableStage.view();
+        return view.applied < lastCollect ? Table.EMPTY : view.slotToCard[slot];
+    }
+
+    /**
+     * Takes a collected set off the table and deals new cards: right away, or on the table stage of the pipelined
+     * dealer (which also reshuffles if the new table has no set).
+     *
+     * @param cards - the cards of the set.
+     */
+    private void collect(int[] cards)
+    {
+        if(tableStage == null)
+        {
+            removeCardsFromTable(cards);
             placeCardsOnTable();
+            return;
+        }
+        try
+        {
+            int[] collected = cards.clone(); // the cards of the next claim are checked meanwhile
+            // the change may reshuffle the whole table, so no slot can be checked before it was applied (the tokens
+            // the players place meanwhile are on the new cards, not on the cards of the view)
+            lastCollect = tableStage.submit(() -> {
+                removeCardsFromTable(collected);
+                placeCardsOnTableWithSet();
+            });
+        }
+        catch(InterruptedException e)
+        {
+            terminate = true;
         }
     }
 
@@ -121,9 +330,14 @@ public class Dealer implements Runnable {
      */
     public void terminate() {
         terminate = true;
+        GameLoop loop = this.loop;
+        if(loop != null)
+            loop.wakeup();
         for(int i=players.length-1; i>=0;i--)
         {
             players[i].terminate();
+            if(playersThreads[i] == null)
+                continue;
             try
             {
                 playersThreads[i].interrupt();
@@ -133,98 +347,278 @@ public class Dealer implements Runnable {
         }
     }
 
+    boolean terminated() {
+        return terminate;
+    }
+
     /**
-     * Check if the game should be terminated or the game end conditions are met.
+     * Starts a new turn: the countdown to the next reshuffle starts over.
+     */
+    void startTurn() {
+        reshuffleTime = System.currentTimeMillis() + turnMillis();
+    }
+
+    /**
+     * @return - the length of the next turn (the rest of the saved turn in the first turn of a resumed game).
+     */
+    private long turnMillis() {
+        long turn = resumedTurnMillis >= 0 ? resumedTurnMillis : env.config.turnTimeoutMillis;//magic number
+        resumedTurnMillis = -1;
+        return turn;
+    }
+
+    /**
+     * Hands a snapshot of the game to the snapshot writer if it is time for one (called by the dealer thread).
+     */
+    void snapshotIfDue() {
+        if(snapshots == null)
+            return;
+        long now = System.currentTimeMillis();
+        if(now < nextSnapshot)
+            return;
+        nextSnapshot = now + env.config.snapshotIntervalMillis;
+        onTable(() -> snapshots.submit(snapshot()));
+    }
+
+    /**
+     * Captures the state of the game. Must be called by the dealer thread (or before the game starts): only the
+     * tokens are changed by other threads, and they are copied under a single lock of the table, so the game threads
+     * wait a few microseconds at most.
      *
-     * @return true iff the game should be finished.
+     * @return - the snapshot.
      */
-    private boolean shouldFinish() {
-        return terminate || env.util.findSets(deck, 1).size() == 0;
+    GameSnapshot snapshot() {
+        long now = System.currentTimeMillis();
+        int featureSize = env.config.featureSize;
+        int[] tokens = new int[players.length * featureSize];
+        int[] tokenCount = new int[players.length];
+        table.tokens(tokens, tokenCount);
+        int[] deck = new int[this.deck.size()];
+        for(int i = 0; i < deck.length; i++)
+            deck[i] = this.deck.get(i);
+        int[] points = new int[players.length];
+        int[] penalties = new int[players.length];
+        boolean[] cameBackFromPenalty = new boolean[players.length];
+        long[] freezeLeft = new long[players.length];
+        for(int i = 0; i < players.length; i++)
+        {
+            points[i] = stats.points(i);
+            penalties[i] = stats.penalties(i);
+            cameBackFromPenalty[i] = players[i].getCameBackFromPenalty();
+            long frozenUntil = players[i].frozenUntil();
+            freezeLeft[i] = frozenUntil == 0 ? 0 : Math.max(0, frozenUntil - now);
+        }
+        long turnLeft = reshuffleTime == Long.MAX_VALUE ? env.config.turnTimeoutMillis : Math.max(0, reshuffleTime - now);
+        return new GameSnapshot(featureSize, env.config.deckSize, env.config.tableSize, players.length,
+                stats.durationMillis(), turnLeft, stats.sets(), stats.reshuffles(), deck, table.slotToCard.clone(),
+                tokens, tokenCount, points, penalties, cameBackFromPenalty, freezeLeft);
     }
 
     /**
-     * Check if any cards can be removed from the deck and placed on the table.
+     * Restores a saved game, so that the game goes on from where it was saved when the dealer thread starts. Must be
+     * called before the dealer thread starts (and after the players were created).
+     *
+     * @param snapshot - the saved game.
+     * @throws IllegalArgumentException - if the snapshot is not of a game with the same config.
      */
-    private void placeCardsOnTableAfterSet() {
-        int k = 0;
-        boolean done = false;
-       
-        for(int i = 0; i<table.slotToCard.length;i++)
+    public void resume(GameSnapshot snapshot)
+    {
+        snapshot.checkCompatible(env.config);
+        deck.clear();
+        for(int card : snapshot.deck)
+            deck.add(card);
+        for(int i = 0; i<table.slotToCard.length; i++)
+        {
+            if(table.hasCard(i))
+                table.removeCard(i);
+        }
+        cardsOnTheTable.clear();
+        table.removeAllTokens();
+        for(int slot = 0; slot<snapshot.slotToCard.length; slot++)
         {
-            if(table.slotToCard[i]== null)
+            int card = snapshot.slotToCard[slot];
+            if(card != Table.EMPTY)
             {
-                done = false;
-                while(k<deck.size() && !done)
-                {
-                    if(deck.get(k)!= null && !cardsOnTheTable.contains(deck.get(k)))
-                    {
-                        int card = deck.get(k);
-                        cardsOnTheTable.add(card);
-                        table.slotToCard[i] = card;
-                        table.cardToSlot[card] = i;
-                        env.ui.placeCard(card, i);
-                        done = true;
-                    }
-                    k++;
-                }          
+                cardsOnTheTable.add(card);
+                table.placeCard(card, slot);
             }
         }
+        for(int i = 0; i<players.length; i++)
+        {
+            for(int k = 0; k<snapshot.tokenCount[i]; k++)
+                table.placeToken(i, snapshot.tokens[i * snapshot.featureSize + k]);
+            players[i].resume(snapshot.points[i], snapshot.cameBackFromPenalty[i], snapshot.freezeLeftMillis[i]);
+        }
+        stats.resume(snapshot.sets, snapshot.reshuffles, snapshot.points, snapshot.penalties, snapshot.elapsedMillis);
+        resumedTurnMillis = snapshot.turnLeftMillis;
+        resumed = true;
+    }
+
+    /**
+     * @return - the time when the dealer needs to reshuffle the deck due to turn timeout.
+     */
+    long reshuffleTime() {
+        return reshuffleTime;
     }
 
-    private void placeCardsOnTable()
+    /**
+     * Check if the game should be terminated or the game end conditions are met.
+     *
+     * @return true iff the game should be finished.
+     */
+    boolean shouldFinish() {
+        return terminate || !env.util.containsSet(deck);
+    }
+
+    /**
+     * Deals the empty slots and reshuffles until the table has a set (or the game ends). The table stage of the
+     * pipelined dealer does this, as its dealer thread has no timer loop that catches a table without a set.
+     */
+    private void placeCardsOnTableWithSet()
     {
-        cardsOnTheTable.clear();
-        terminate = env.util.findSets(deck, 1).isEmpty();//make sure that no sets available
+        placeCardsOnTable();
+        while(!terminate && !env.util.containsSet(cardsOnTheTable))
+        {
+            removeAllCardsFromTableNoSet();
+            placeCardsOnTable();
+        }
+    }
+
+    /**
+     * Check if any cards can be removed from the deck and placed on the table.
+     */
+    void placeCardsOnTable()
+    {
+        // make sure that sets are available (without clearing a terminate that came from outside, e.g. a drained room)
+        if(!env.util.containsSet(deck))
+            terminate = true;
         if(!terminate)
         {
-            int rightSize = env.config.rows*env.config.columns;//magic number
-            //check if the index is in bounds of the deck size
-            if(deck.size()<rightSize)
-                rightSize = deck.size();
-            for(int i = 0; i<rightSize;i++)
+            int emptySlots = table.slotToCard.length - cardsOnTheTable.size();
+            if(emptySlots == 0)
+                return;
+            if(!env.config.guaranteeSetOnTable)
             {
-                if(deck.get(i)!= null)
+                // the next cards of the deck, in the order of the empty slots (without the lists of chooseCardsToPlace)
+                int slot = 0;
+                for(int i = 0; i<deck.size() && emptySlots>0; i++)
                 {
                     int card = deck.get(i);
+                    if(table.isOnTable(card))
+                        continue;
+                    while(table.hasCard(slot))
+                        slot++;
                     cardsOnTheTable.add(card);
-                    table.slotToCard[i] = card;
-                    table.cardToSlot[card] = i;
-                    env.ui.placeCard(card, i);
+                    table.placeCard(card, slot);
+                    emptySlots--;
+                }
+                return;
+            }
+            int onTable = cardsOnTheTable.size();
+            for(int i = 0; i<onTable; i++)
+                dealCards[i] = cardsOnTheTable.get(i);
+            int count = onTable;
+            for(int i = 0; i<deck.size(); i++)
+            {
+                int card = deck.get(i);
+                if(!table.isOnTable(card))
+                    dealCards[count++] = card;
+            }
+            int toPlace = chooseCardsToPlace(onTable, count, emptySlots);
+            int k = 0;
+            for(int i = 0; i<table.slotToCard.length && k<toPlace;i++)
+            {
+                if(!table.hasCard(i))
+                {
+                    int card = dealChosen[k++];
+                    cardsOnTheTable.add(card);
+                    table.placeCard(card, i);
                 }
             }
         }
     }
 
+    /**
+     * Chooses the cards to place in the empty slots when the set guaranteeing deal is on: the next cards of the deck,
+     * unless they would leave the table without a legal set. In that case, a legal set that can be completed with
+     * the cards on the table and at most emptySlots cards of the deck is dealt (if there is one), and the
+     * remaining slots get the next cards of the deck.
+     *
+     * @param onTable    - the number of cards on the table (the first entries of dealCards).
+     * @param count      - the number of entries of dealCards (after the cards on the table, the cards of the deck that
+     *                     are not on the table, in deck order).
+     * @param emptySlots - the number of empty slots on the table.
+     * @return - the number of cards to place (the first entries of dealChosen, in the order of the empty slots).
+     */
+    private int chooseCardsToPlace(int onTable, int count, int emptySlots)
+    {
+        int next = Math.min(emptySlots, count - onTable);
+        System.arraycopy(dealCards, onTable, dealChosen, 0, next);
+        if(env.util.findSet(dealCards, onTable + next, 0, dealSet) >= 0)
+            return next;
+
+        // look for the set that needs the fewest cards from the deck
+        int missing = env.util.findSet(dealCards, count, onTable, dealSet);
+        if(missing < 0 || missing > emptySlots)
+            return next; // no legal set left, the dealer will end the game or reshuffle
+
+        int chosen = 0;
+        for(int card : dealSet)
+        {
+            if(!table.isOnTable(card))
+                dealChosen[chosen++] = card;
+        }
+        for(int i = onTable; i<count && chosen<emptySlots; i++)
+        {
+            boolean taken = false;
+            for(int j = 0; j<chosen; j++)
+                taken |= dealChosen[j] == dealCards[i];
+            if(!taken)
+                dealChosen[chosen++] = dealCards[i];
+        }
+        // shuffled like Collections.shuffle
+        for(int i = chosen; i>1; i--)
+        {
+            int j = random.nextInt(i);
+            int card = dealChosen[i - 1];
+            dealChosen[i - 1] = dealChosen[j];
+            dealChosen[j] = card;
+        }
+        return chosen;
+    }
+
     /**
      * Sleep for a fixed amount of time or until the thread is awakened for some purpose.
      */
     private void sleepUntilWokenOrTimeout() {
-        Integer tmp = -1;
+        int tmp = ClaimQueue.NONE;
         try{             
             inFinalSeconds = reshuffleTime - System.currentTimeMillis() <= env.config.turnTimeoutWarningMillis;//magic number
             if(!inFinalSeconds)
                 tmp = requests.poll((env.config.turnTimeoutMillis*900)/env.config.turnTimeoutMillis, TimeUnit.MILLISECONDS);//magic number
+            else if(clock != null) // the clock shows the countdown, wake up for the claims and the timeout only
+                tmp = requests.poll(Math.max(1, Math.min(900, reshuffleTime - System.currentTimeMillis())), TimeUnit.MILLISECONDS);//magic number
             else { //every millisecond
                 tmp = requests.poll(env.config.turnTimeoutWarningMillis/1000, TimeUnit.MILLISECONDS); //magic number
             }          
         }
         catch(InterruptedException e) {}
 
-        if(tmp != null) 
-            if(tmp.intValue()!=-1)
-                checkTheSetIfRequested(tmp);
+        if(tmp != ClaimQueue.NONE)
+            checkTheSetIfRequested(tmp);
     }
 
     /**
      * Reset and/or update the countdown and the countdown display.
      */
-    private void updateTimerDisplay(boolean reset) {
+    void updateTimerDisplay(boolean reset) {
         if(reset)
         {
             reshuffleTime=System.currentTimeMillis()+env.config.turnTimeoutMillis;//magic number
-            env.ui.setCountdown(env.config.turnTimeoutMillis, false);//magic number
+            if(clock == null)
+                env.ui.setCountdown(env.config.turnTimeoutMillis, false);//magic number
         }
-        else
+        else if(clock == null) // otherwise the clock shows it
         {
             if(reshuffleTime - System.currentTimeMillis()>env.config.turnTimeoutWarningMillis)//magic number
             {
@@ -237,36 +631,50 @@ public class Dealer implements Runnable {
         }
     }
 
+    /**
+     * Returns all the cards from the table to the deck (at the end of a turn or of the game).
+     */
+    void removeAllCardsFromTable() {
+        removeAllCardsFromTable(terminate ? "game end" : "timeout");
+    }
+
     /**
      * Returns all the cards from the table to the deck.
+     *
+     * @param reason - why the cards are returned (for the reshuffle event).
      */
-    private void removeAllCardsFromTable() {
+    private void removeAllCardsFromTable(String reason) {
+        if (GameEvents.RESHUFFLE.isEnabled()) {
+            GameEvents.Reshuffle event = new GameEvents.Reshuffle();
+            if (event.shouldCommit()) {
+                event.reason = reason;
+                event.cards = cardsOnTheTable.size();
+                event.commit();
+            }
+        }
         // don't have any sets in the table, so remove all the cards on the table
-        for(int i = 0;i<cardsOnTheTable.size();i++)
+        for(int i = 0;i<table.slotToCard.length;i++)
         {
-            if(cardsOnTheTable.get(i) != null)
-            {
-                int card = cardsOnTheTable.remove(i);
-                table.cardToSlot[card]=null;
-                table.slotToCard[i] = null;
-                env.ui.removeCard(i);
-            }
+            if(table.hasCard(i))
+                table.removeCard(i);
         }
+        cardsOnTheTable.clear();
         table.removeAllTokens();
         for(int i = 0; i<players.length; i++)
         {
-           table.getSetsOfTokensOfThePlayers().get(i).clear();
            players[i].setCameBackFromPenalty(false);
         }
+        if(!terminate)
+            stats.reshuffled();
         reshuffle();
     }
 
-    private void removeAllCardsFromTableNoSet() {
+    void removeAllCardsFromTableNoSet() {
         // don't have any sets in the table, so remove all the cards on the table
         
-        if(env.util.findSets(cardsOnTheTable, 1).isEmpty())//if there is no sets on the table
+        if(!env.util.containsSet(cardsOnTheTable))//if there is no sets on the table
         {
-            removeAllCardsFromTable();
+            removeAllCardsFromTable("no set");
             reshuffle();
             reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;//magic number
         }
@@ -285,27 +693,26 @@ public class Dealer implements Runnable {
     }
 
     /**
-     * Checks cards should be removed from the table and removes them.
+     * Removes the cards of a collected set from the table (wherever they are now), with all the tokens on them, and
+     * from the deck.
      */
     
-    private void removeCardsFromTable(Vector<Integer> setToRemove) {
-        int [] tmpArray = duplicateSetToRemove(setToRemove);
-        for(int i=0;i<tmpArray.length;i++)
+    private void removeCardsFromTable(int[] cards) {
+        for(int card : cards)
         {
-            for(int j =0; j<table.getSetsOfTokensOfThePlayers().size(); j++)
+            int slot = table.cardToSlot[card];
+            if(slot != Table.EMPTY)
             {
-                if(table.getSetsOfTokensOfThePlayers().get(j).contains(tmpArray[i]))
-                {
-                    table.removeToken(j, tmpArray[i]);                    
-                }
+                // only the players with a token on the slot are touched
+                table.removeTokens(slot);
+
+                table.clearSlot(slot);
+                cardsOnTheTable.remove(cardsOnTheTable.indexOf(card));
+                env.ui.removeCard(slot);
             }
-        
-            int card = table.slotToCard[tmpArray[i]];            
-            deck.remove(deck.indexOf(card));
-            cardsOnTheTable.remove(cardsOnTheTable.indexOf(card));
-            env.ui.removeCard(tmpArray[i]);
-            table.slotToCard[tmpArray[i]] = null;
-            table.cardToSlot[card] = null;
+            int index = deck.indexOf(card);
+            if(index >= 0) // never remove a card twice, even for a claim checked against a stale table
+                deck.remove(index);
 
             reshuffleTime = System.currentTimeMillis() + env.config.turnTimeoutMillis;//magic number
         }
@@ -327,19 +734,8 @@ public class Dealer implements Runnable {
      * Check who is/are the winner/s and displays them.
      */
     private void announceWinners() {
-        int maxScore = findMaxScoreAmongPlayers();
-        LinkedList<Integer> theWinner = new LinkedList<>();
-        for(int i = 0; i<players.length; i++)
-        {
-            if(players[i].score() == maxScore)
-                theWinner.add(players[i].id);
-        }
-        int [] toUI = new int [theWinner.size()];
-        for(int i = 0; i<theWinner.size(); i++)
-        {
-            toUI[i] = theWinner.get(i);
-        }
-
+        // the scores are the points in the game statistics (one int per player)
+        int [] toUI = stats.winners();
         env.ui.announceWinner(toUI);
     }
 
@@ -347,23 +743,43 @@ public class Dealer implements Runnable {
      * Reshuffles the deck
      */
     private void reshuffle() {
-        Collections.shuffle(deck);
+        Collections.shuffle(deck, random);
+    }
+
+    protected void checkTheSetIfRequested(int playerId)
+    {
+        long availableSince = players[playerId].availableSince();
+        checkTheSet(playerId);
+        int result = players[playerId].resultFromDealerAfterCheckSet;
+        if(result == 0 || result == 1)
+            analytics.claimChecked(playerId, result == 0, System.nanoTime() - availableSince);
+        if (GameEvents.CLAIM_VERDICT.isEnabled()) {
+            GameEvents.ClaimVerdict event = new GameEvents.ClaimVerdict();
+            if (event.shouldCommit()) {
+                event.player = playerId;
+                event.verdict = result == 0 ? "point" : result == 1 ? "penalty" : "stale";
+                event.latency = System.nanoTime() - requests.lastTimestamp();
+                event.commit();
+            }
+        }
     }
 
-    protected void checkTheSetIfRequested(Integer playerId)
+    private void checkTheSet(int playerId)
     {
-        if(table.getSetsOfTokensOfThePlayers().get(playerId).size()==env.config.featureSize)//magic number
+        int [] slots = claimSlots;
+        int size = table.tokens(playerId, slots);
+        if(size==env.config.featureSize)//magic number
         {
-            int [] setToCheck = new int [env.config.featureSize];//magic number
+            int [] setToCheck = claimCards;
             int tmp = 0;
-            for(int i = 0; i < setToCheck.length; i++)
+            for(int i = 0; i < env.config.featureSize; i++)
             {
-                Vector<Integer> v1 = table.getSetsOfTokensOfThePlayers().get(playerId);
-                if(i<v1.size())//check case when the submitted vector has changed and variables has been deleted
+                if(i<size)//check case when the submitted tokens have changed and some were removed
                 {
-                    tmp = v1.get(i);
-                    if(table.slotToCard[tmp]!= null)//check case when the submitted vector is good but the table has been changed
-                        setToCheck[i] = table.slotToCard[tmp];
+                    tmp = slots[i];
+                    int card = cardIn(tmp);
+                    if(card != Table.EMPTY)//check case when the submitted vector is good but the table has been changed
+                        setToCheck[i] = card;
                     else {
                             setToCheck = null;
                             i=env.config.featureSize;//magic number
@@ -382,12 +798,15 @@ public class Dealer implements Runnable {
                 {
                     // the set is ok
                     players[playerId].resultFromDealerAfterCheckSet = 0;
-                    removeCardsFromTable(table.getSetsOfTokensOfThePlayers().get(playerId));
-                    placeCardsOnTableAfterSet();
+                    stats.setCollected(playerId);
+                    collect(setToCheck);
                 }
                 else
-                // the set is not ok
-                players[playerId].resultFromDealerAfterCheckSet = 1;
+                {
+                    // the set is not ok
+                    players[playerId].resultFromDealerAfterCheckSet = 1;
+                    stats.penalized(playerId);
+                }
             }
         }
         else
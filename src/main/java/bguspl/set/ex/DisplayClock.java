@@ -0,0 +1,135 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.Arrays;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Owns the time based values of the user interface (the countdown and the freeze of each player): instead of the
+ * dealer and the players pushing them whenever they wake up, the clock reads their deadlines (the reshuffle time and
+ * the end of each freeze) once per frame, and publishes only the values that look different on the screen.
+ * <p>
+ * So the user interface gets at most one countdown and one freeze update per player per frame, and a player's freeze
+ * is updated only when its seconds change: the calls per second depend on the frame rate, not on the number of
+ * players or how often the threads wake up. The threads engine runs the clock on its own thread (see start), the event
+ * loop engine calls frame when nextFrame is due.
+ */
+class DisplayClock implements Runnable {
+
+    private final Env env;
+    private final Dealer dealer;
+    private final Player[] players;
+
+    /**
+     * The time between two frames.
+     */
+    private final long frameNanos;
+
+    /**
+     * What was last shown: the countdown (in its displayed unit, see countdownKey) and the freeze of each player (in
+     * whole seconds, -1 for not frozen). Touched by the thread that draws the frames only.
+     */
+    private long shownCountdown = Long.MIN_VALUE;
+    private final long[] shownFreeze;
+
+    private long nextFrame;
+    private volatile boolean stopped;
+    private Thread thread;
+
+    /**
+     * @param framesPerSecond - the frame rate (positive).
+     */
+    DisplayClock(Env env, Dealer dealer, Player[] players, double framesPerSecond) {
+        if (!(framesPerSecond > 0)) throw new IllegalArgumentException("the frame rate must be positive");
+        this.env = env;
+        this.dealer = dealer;
+        this.players = players;
+        this.frameNanos = Math.max(1, (long) (1_000_000_000L / framesPerSecond));
+        this.shownFreeze = new long[players.length];
+        Arrays.fill(shownFreeze, Long.MIN_VALUE);
+    }
+
+    /**
+     * Starts drawing the frames on a thread of the clock.
+     */
+    void start() {
+        thread = new Thread(this, "display-clock");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void run() {
+        env.logger.info("Thread " + Thread.currentThread().getName() + " starting.");
+        long next = System.nanoTime();
+        while (!stopped) {
+            frame(System.currentTimeMillis());
+            next += frameNanos;
+            long wait = next - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(this, wait);
+            else next = System.nanoTime(); // fell behind, do not try to catch up
+        }
+        env.logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
+    }
+
+    /**
+     * Draws a last frame and stops the thread of the clock (if it was started).
+     */
+    void stop() {
+        stopped = true;
+        Thread thread = this.thread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join();
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        frame(System.currentTimeMillis());
+    }
+
+    /**
+     * @return - the time (System.currentTimeMillis()) the next frame is due, for a caller that draws the frames.
+     */
+    long nextFrame() {
+        return nextFrame;
+    }
+
+    /**
+     * Publishes the values that changed on the screen since the last frame.
+     *
+     * @param now - the current time (System.currentTimeMillis()).
+     */
+    void frame(long now) {
+        nextFrame = now + Math.max(1, frameNanos / 1_000_000);
+
+        long left = Math.max(0, dealer.reshuffleTime() - now);
+        boolean warn = left <= env.config.turnTimeoutWarningMillis;
+        long countdown = countdownKey(left, warn);
+        if (countdown != shownCountdown) {
+            shownCountdown = countdown;
+            env.ui.setCountdown(left, warn);
+        }
+
+        for (int i = 0; i < players.length; ++i) {
+            Player player = players[i];
+            if (player == null) continue;
+            long until = player.frozenUntil();
+            long freezeLeft = until == 0 ? 0 : until - now;
+            long freeze = freezeLeft > 0 ? freezeLeft / 1000 : -1;
+            if (freeze != shownFreeze[i]) {
+                shownFreeze[i] = freeze;
+                env.ui.setFreeze(i, Math.max(0, freezeLeft));
+            }
+        }
+    }
+
+    /**
+     * @return - what the countdown looks like: whole seconds before the warning, hundredths of a second during it.
+     */
+    private static long countdownKey(long left, boolean warn) {
+        return warn ? -1 - left / 10 : left / 1000;
+    }
+}
@@ -0,0 +1,192 @@
+package bguspl.set.ex;
+
+import bguspl.set.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Streaming analytics of the players of a game, per player and for all the players:
+ * <ul>
+ * <li>token time: from the moment the player could see the current table (the last card change, or the end of its
+ * freeze) to each token it placed</li>
+ * <li>time to claim: from the same moment to each successful claim</li>
+ * <li>penalty rate: the share of the checked claims that were penalized</li>
+ * <li>ai cpu: the cpu time of the moves of a computer player on the AI pool (see AiPool)</li>
+ * </ul>
+ * The times are kept in histograms (in microseconds, see Histogram), so the memory does not grow with the length of
+ * the game. The samples come from the player and dealer threads, and the results can be queried at any time.
+ */
+public class GameAnalytics {
+
+    /**
+     * The precision of the histograms (3 bits: the quantiles are off by less than 12.5%).
+     */
+    static final int PRECISION_BITS = 3;
+
+    /**
+     * The longest time tracked by the histograms (longer times are counted as this one).
+     */
+    static final long HIGHEST_MICROS = TimeUnit.HOURS.toMicros(1);
+
+    private final Histogram[] tokenMicros;
+    private final Histogram[] claimMicros;
+    private final Histogram allTokenMicros = histogram();
+    private final Histogram allClaimMicros = histogram();
+
+    /**
+     * The number of checked claims and of penalized claims of each player.
+     */
+    private final AtomicLongArray claims;
+    private final AtomicLongArray penalties;
+
+    /**
+     * The number of moves of each computer player on the AI pool, and their cpu time (in nanoseconds).
+     */
+    private final AtomicLongArray aiMoves;
+    private final AtomicLongArray aiCpuNanos;
+
+    public GameAnalytics(int players) {
+        this.tokenMicros = new Histogram[players];
+        this.claimMicros = new Histogram[players];
+        for (int player = 0; player < players; ++player) {
+            tokenMicros[player] = histogram();
+            claimMicros[player] = histogram();
+        }
+        this.claims = new AtomicLongArray(players);
+        this.penalties = new AtomicLongArray(players);
+        this.aiMoves = new AtomicLongArray(players);
+        this.aiCpuNanos = new AtomicLongArray(players);
+    }
+
+    private static Histogram histogram() {
+        return new Histogram(PRECISION_BITS, HIGHEST_MICROS);
+    }
+
+    /**
+     * A player placed a token.
+     *
+     * @param nanos - the time since the player could see the table.
+     */
+    void tokenPlaced(int player, long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        tokenMicros[player].record(micros);
+        allTokenMicros.record(micros);
+    }
+
+    /**
+     * The dealer checked a claim of a player.
+     *
+     * @param legal - true iff the claim was a legal set (false if it was penalized).
+     * @param nanos - the time since the player could see the table.
+     */
+    void claimChecked(int player, boolean legal, long nanos) {
+        claims.incrementAndGet(player);
+        if (legal) {
+            long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+            claimMicros[player].record(micros);
+            allClaimMicros.record(micros);
+        } else {
+            penalties.incrementAndGet(player);
+        }
+    }
+
+    /**
+     * A computer player made a move on the AI pool.
+     *
+     * @param cpuNanos - the cpu time of the move.
+     */
+    void aiMoved(int player, long cpuNanos) {
+        aiMoves.incrementAndGet(player);
+        aiCpuNanos.addAndGet(player, cpuNanos);
+    }
+
+    public int players() {
+        return tokenMicros.length;
+    }
+
+    /**
+     * @return - the token times of a player (in microseconds).
+     */
+    public Histogram tokenMicros(int player) {
+        return tokenMicros[player];
+    }
+
+    /**
+     * @return - the token times of all the players (in microseconds).
+     */
+    public Histogram tokenMicros() {
+        return allTokenMicros;
+    }
+
+    /**
+     * @return - the times to a successful claim of a player (in microseconds).
+     */
+    public Histogram claimMicros(int player) {
+        return claimMicros[player];
+    }
+
+    /**
+     * @return - the times to a successful claim of all the players (in microseconds).
+     */
+    public Histogram claimMicros() {
+        return allClaimMicros;
+    }
+
+    /**
+     * @return - the share of the checked claims of a player that were penalized (0 if none were checked).
+     */
+    public double penaltyRate(int player) {
+        long claims = this.claims.get(player);
+        return claims == 0 ? 0 : (double) penalties.get(player) / claims;
+    }
+
+    /**
+     * @return - the share of all the checked claims that were penalized (0 if none were checked).
+     */
+    public double penaltyRate() {
+        long claims = 0;
+        long penalties = 0;
+        for (int player = 0; player < players(); ++player) {
+            claims += this.claims.get(player);
+            penalties += this.penalties.get(player);
+        }
+        return claims == 0 ? 0 : (double) penalties / claims;
+    }
+
+    /**
+     * @return - the number of moves of a computer player on the AI pool.
+     */
+    public long aiMoves(int player) {
+        return aiMoves.get(player);
+    }
+
+    /**
+     * @return - the cpu time of the moves of a computer player on the AI pool (in nanoseconds).
+     */
+    public long aiCpuNanos(int player) {
+        return aiCpuNanos.get(player);
+    }
+
+    /**
+     * @return - a line with the analytics of a player.
+     */
+    public String report(int player) {
+        String report = report("player " + (player + 1), tokenMicros[player], claimMicros[player], penaltyRate(player));
+        long moves = aiMoves.get(player);
+        if (moves == 0) return report;
+        return String.format("%s; ai cpu %.1f ms in %d moves", report, aiCpuNanos.get(player) / 1e6, moves);
+    }
+
+    /**
+     * @return - a line with the analytics of all the players.
+     */
+    public String report() {
+        return report("all players", allTokenMicros, allClaimMicros, penaltyRate());
+    }
+
+    private static String report(String who, Histogram tokens, Histogram claims, double penaltyRate) {
+        return String.format("%s: token time [us] %s; time to claim [us] %s; penalty rate %.1f%%",
+                who, tokens, claims, penaltyRate * 100);
+    }
+}
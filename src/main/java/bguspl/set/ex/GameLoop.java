@@ -0,0 +1,236 @@
+package bguspl.set.ex;
+
+import bguspl.set.Env;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The single-threaded engine: runs the dealer logic, the state machines of all the players (including the computer
+ * players) and all the timers on the dealer thread.
+ * <p>
+ * Each iteration handles the due events in a fixed order: freeze expiries, computer player moves, key presses (in
+ * order of player id), claims (in order of submission) and the countdown. Then the loop parks until the next timer
+ * is due or a key press arrives (every key inbox unparks the loop). Nothing is shared with other threads except the
+ * key inboxes, so there are no locks and the order of events is deterministic for a given order of key presses.
+ * With an AI pool (see AiPool) the computer players move on the pool instead, and their key presses arrive like the
+ * ones of the human players.
+ */
+class GameLoop {
+
+    /**
+     * The time between two moves of a computer player.
+     */
+    static final long COMPUTER_STEP_MILLIS = 1;
+
+    /**
+     * The time between two updates of the freeze display of a player.
+     */
+    static final long FREEZE_DISPLAY_MILLIS = 1000;
+
+    /**
+     * The time between two updates of the countdown display (before and during the warning time).
+     */
+    static final long COUNTDOWN_DISPLAY_MILLIS = 900;
+
+    private final Env env;
+    private final Dealer dealer;
+    private final Player[] players;
+
+    /**
+     * The end of the freeze of each player, and the next update of its freeze display (0 if not frozen).
+     */
+    private final long[] freezeUntil;
+    private final long[] nextFreezeDisplay;
+
+    /**
+     * The time of the next move of each computer player.
+     */
+    private final long[] nextComputerStep;
+
+    private long nextCountdownDisplay;
+
+    /**
+     * The pool that moves the computer players instead of the loop (null if the loop moves them).
+     */
+    private AiPool aiPool;
+
+    private Thread thread;
+
+    GameLoop(Env env, Dealer dealer, Player[] players) {
+        this.env = env;
+        this.dealer = dealer;
+        this.players = players;
+        this.freezeUntil = new long[players.length];
+        this.nextFreezeDisplay = new long[players.length];
+        this.nextComputerStep = new long[players.length];
+    }
+
+    /**
+     * Runs the game on the calling thread until it ends or the dealer is terminated.
+     */
+    void run() {
+        thread = Thread.currentThread();
+        for (Player player : players)
+            player.inbox.listen(thread);
+        // the freezes of a resumed game go on
+        for (int i = 0; i < players.length; ++i)
+            freezeUntil[i] = players[i].frozenUntil();
+        aiPool = dealer.aiPool();
+        if (aiPool != null)
+            for (Player player : players)
+                if (!player.isHuman()) player.startOn(aiPool);
+        try {
+            while (!dealer.shouldFinish()) {
+                dealer.placeCardsOnTable();
+                turn();
+                dealer.updateTimerDisplay(false);
+                dealer.removeAllCardsFromTable();
+            }
+        } finally {
+            for (Player player : players)
+                player.inbox.listen(null);
+        }
+    }
+
+    /**
+     * Wakes the loop up (e.g. to notice that the dealer was terminated).
+     */
+    void wakeup() {
+        Thread thread = this.thread;
+        if (thread != null) LockSupport.unpark(thread);
+    }
+
+    /**
+     * Handles the events of one turn, until the countdown times out.
+     */
+    private void turn() {
+        dealer.startTurn();
+        nextCountdownDisplay = 0;
+        long now = System.currentTimeMillis();
+        while (!dealer.terminated() && now < dealer.reshuffleTime()) {
+            expireFreezes(now);
+            moveComputerPlayers(now);
+            dispatchKeyPresses();
+            if (checkClaims(now)) {
+                dealer.removeAllCardsFromTableNoSet();
+                dealer.placeCardsOnTable();
+            }
+            DisplayClock clock = dealer.clock();
+            if (clock != null && now >= clock.nextFrame()) clock.frame(now);
+            if (now >= nextCountdownDisplay) {
+                dealer.updateTimerDisplay(false);
+                dealer.snapshotIfDue();
+                boolean warn = clock == null && dealer.reshuffleTime() - now <= env.config.turnTimeoutWarningMillis;
+                nextCountdownDisplay = now + (warn ? Math.max(1, env.config.turnTimeoutWarningMillis / 1000) : COUNTDOWN_DISPLAY_MILLIS);
+            }
+            park(nextDeadline(), now);
+            now = System.currentTimeMillis();
+        }
+    }
+
+    private void expireFreezes(long now) {
+        for (int i = 0; i < players.length; ++i) {
+            if (freezeUntil[i] == 0) continue;
+            if (now >= freezeUntil[i]) {
+                freezeUntil[i] = 0;
+                showFreeze(i, 0);
+                players[i].endFreeze();
+            } else if (now >= nextFreezeDisplay[i]) {
+                showFreeze(i, freezeUntil[i] - now);
+                nextFreezeDisplay[i] = now + FREEZE_DISPLAY_MILLIS;
+            }
+        }
+    }
+
+    /**
+     * Shows the freeze time left of a player (unless the display clock shows it).
+     */
+    private void showFreeze(int player, long millis) {
+        if (dealer.clock() == null) env.ui.setFreeze(player, millis);
+    }
+
+    private void moveComputerPlayers(long now) {
+        if (aiPool != null) return;
+        for (int i = 0; i < players.length; ++i) {
+            Player player = players[i];
+            if (player.isHuman() || freezeUntil[i] != 0 || now < nextComputerStep[i]) continue;
+            if (player.isSeeker()) player.seekStep();
+            else player.randomStep();
+            nextComputerStep[i] = now + COMPUTER_STEP_MILLIS;
+        }
+    }
+
+    /**
+     * Applies the queued key presses of the players that are not frozen. A player that completes a set submits a
+     * claim, and its remaining key presses wait for the answer.
+     */
+    private void dispatchKeyPresses() {
+        for (int i = 0; i < players.length; ++i) {
+            if (freezeUntil[i] != 0) continue;
+            Player player = players[i];
+            if (player.readyToClaim()) {
+                submitClaim(player);
+                continue;
+            }
+            int slot;
+            while ((slot = player.inbox.poll()) != KeyInbox.NONE) {
+                player.applyKeyPress(slot);
+                if (player.readyToClaim()) {
+                    submitClaim(player);
+                    break;
+                }
+            }
+        }
+    }
+
+    private void submitClaim(Player player) {
+        player.claimSubmitted();
+        dealer.requests.offer(player.id, System.nanoTime());
+    }
+
+    /**
+     * Checks the submitted claims and freezes their players.
+     *
+     * @return - true iff there was a claim.
+     */
+    private boolean checkClaims(long now) {
+        boolean claimed = false;
+        int id;
+        while ((id = dealer.requests.poll()) != ClaimQueue.NONE) {
+            claimed = true;
+            dealer.checkTheSetIfRequested(id);
+            long freeze = players[id].startFreeze();
+            if (freeze > 0) {
+                freezeUntil[id] = now + freeze;
+                nextFreezeDisplay[id] = now + FREEZE_DISPLAY_MILLIS;
+                showFreeze(id, freeze);
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * @return - the time when the next timer is due.
+     */
+    private long nextDeadline() {
+        long deadline = Math.min(dealer.reshuffleTime(), nextCountdownDisplay);
+        DisplayClock clock = dealer.clock();
+        if (clock != null) deadline = Math.min(deadline, clock.nextFrame());
+        for (int i = 0; i < players.length; ++i) {
+            if (freezeUntil[i] != 0) {
+                deadline = Math.min(deadline, Math.min(freezeUntil[i], nextFreezeDisplay[i]));
+            } else {
+                if (!players[i].isHuman() && aiPool == null) deadline = Math.min(deadline, nextComputerStep[i]);
+                // key presses left behind by a claim (or queued during a freeze) are handled right away
+                if (!players[i].inbox.isEmpty()) return 0;
+            }
+        }
+        return deadline;
+    }
+
+    private void park(long deadline, long now) {
+        if (deadline <= now || dealer.terminated()) return;
+        LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(deadline - now));
+    }
+}
@@ -0,0 +1,212 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * The state of a running game, as flat primitive arrays: the deck order and the time left to the next reshuffle
+ * (Dealer), the slots and the tokens (Table), and the scores, penalties and freezes of the players.
+ * <p>
+ * A snapshot is captured by the dealer thread (see Dealer.snapshot), which only copies a few small arrays, so the
+ * game is never held up by the encoding or the disk. Times are stored relative to the capture (time left, time
+ * elapsed), so a game resumed from a snapshot (see Dealer.resume) goes on where it stopped. The same files can seed
+ * tests and benchmarks with mid-game states.
+ * <p>
+ * The binary format (big endian) is:
+ * <pre>
+ * int magic "SETG", int version
+ * int featureSize, int deckSize, int tableSize, int players
+ * long elapsedMillis, long turnLeftMillis, int sets, int reshuffles
+ * int deck length, int[] deck (in deck order)
+ * int[tableSize] slot -> card (-1 for an empty slot)
+ * per player: int points, int penalties, byte cameBackFromPenalty, long freezeLeftMillis,
+ *             int tokens, int[tokens] slots (in the order they were placed)
+ * </pre>
+ */
+public final class GameSnapshot {
+
+    private static final int MAGIC = 0x53455447; // "SETG"
+    private static final int VERSION = 1;
+
+    final int featureSize;
+    final int deckSize;
+    final int tableSize;
+    final int players;
+
+    /**
+     * The time played so far and the time left to the next reshuffle (in milliseconds).
+     */
+    final long elapsedMillis;
+    final long turnLeftMillis;
+
+    final int sets;
+    final int reshuffles;
+
+    /**
+     * The cards of the deck (including the cards on the table), in deck order.
+     */
+    final int[] deck;
+
+    /**
+     * The card in each slot (Table.EMPTY for an empty slot).
+     */
+    final int[] slotToCard;
+
+    /**
+     * The tokens of player p are tokens[p * featureSize] .. tokens[p * featureSize + tokenCount[p] - 1].
+     */
+    final int[] tokens;
+    final int[] tokenCount;
+
+    final int[] points;
+    final int[] penalties;
+    final boolean[] cameBackFromPenalty;
+
+    /**
+     * The time left to the end of the freeze of each player (0 if not frozen).
+     */
+    final long[] freezeLeftMillis;
+
+    GameSnapshot(int featureSize, int deckSize, int tableSize, int players, long elapsedMillis, long turnLeftMillis,
+                 int sets, int reshuffles, int[] deck, int[] slotToCard, int[] tokens, int[] tokenCount,
+                 int[] points, int[] penalties, boolean[] cameBackFromPenalty, long[] freezeLeftMillis) {
+        this.featureSize = featureSize;
+        this.deckSize = deckSize;
+        this.tableSize = tableSize;
+        this.players = players;
+        this.elapsedMillis = elapsedMillis;
+        this.turnLeftMillis = turnLeftMillis;
+        this.sets = sets;
+        this.reshuffles = reshuffles;
+        this.deck = deck;
+        this.slotToCard = slotToCard;
+        this.tokens = tokens;
+        this.tokenCount = tokenCount;
+        this.points = points;
+        this.penalties = penalties;
+        this.cameBackFromPenalty = cameBackFromPenalty;
+        this.freezeLeftMillis = freezeLeftMillis;
+    }
+
+    /**
+     * @param config - the config of a game.
+     * @throws IllegalArgumentException - if a game with this config cannot be resumed from the snapshot.
+     */
+    void checkCompatible(Config config) {
+        if (config.featureSize != featureSize || config.deckSize != deckSize || config.tableSize != tableSize
+                || config.players != players)
+            throw new IllegalArgumentException("the snapshot is of a game with " + players + " players, "
+                    + tableSize + " slots and " + deckSize + " cards of " + featureSize + " values per feature");
+    }
+
+    /**
+     * @return - the total score of the players (the number of sets collected).
+     */
+    public int sets() {
+        return sets;
+    }
+
+    /**
+     * @return - the number of cards left in the deck (including the cards on the table).
+     */
+    public int cardsLeft() {
+        return deck.length;
+    }
+
+    public void write(OutputStream stream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(featureSize);
+        out.writeInt(deckSize);
+        out.writeInt(tableSize);
+        out.writeInt(players);
+        out.writeLong(elapsedMillis);
+        out.writeLong(turnLeftMillis);
+        out.writeInt(sets);
+        out.writeInt(reshuffles);
+        out.writeInt(deck.length);
+        for (int card : deck) out.writeInt(card);
+        for (int card : slotToCard) out.writeInt(card);
+        for (int player = 0; player < players; ++player) {
+            out.writeInt(points[player]);
+            out.writeInt(penalties[player]);
+            out.writeByte(cameBackFromPenalty[player] ? 1 : 0);
+            out.writeLong(freezeLeftMillis[player]);
+            out.writeInt(tokenCount[player]);
+            for (int i = 0; i < tokenCount[player]; ++i)
+                out.writeInt(tokens[player * featureSize + i]);
+        }
+        out.flush();
+    }
+
+    public static GameSnapshot read(InputStream stream) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION)
+            throw new IOException("not a game snapshot (or of an unsupported version)");
+        int featureSize = in.readInt();
+        int deckSize = in.readInt();
+        int tableSize = in.readInt();
+        int players = in.readInt();
+        if (featureSize <= 0 || deckSize < 0 || tableSize < 0 || players < 0)
+            throw new IOException("corrupted game snapshot");
+        long elapsedMillis = in.readLong();
+        long turnLeftMillis = in.readLong();
+        int sets = in.readInt();
+        int reshuffles = in.readInt();
+        int[] deck = new int[checkRange(in.readInt(), deckSize + 1)];
+        for (int i = 0; i < deck.length; ++i) deck[i] = checkRange(in.readInt(), deckSize);
+        int[] slotToCard = new int[tableSize];
+        for (int i = 0; i < tableSize; ++i) slotToCard[i] = checkRange(in.readInt() + 1, deckSize + 1) - 1;
+        int[] tokens = new int[players * featureSize];
+        int[] tokenCount = new int[players];
+        int[] points = new int[players];
+        int[] penalties = new int[players];
+        boolean[] cameBackFromPenalty = new boolean[players];
+        long[] freezeLeftMillis = new long[players];
+        for (int player = 0; player < players; ++player) {
+            points[player] = in.readInt();
+            penalties[player] = in.readInt();
+            cameBackFromPenalty[player] = in.readByte() != 0;
+            freezeLeftMillis[player] = in.readLong();
+            tokenCount[player] = checkRange(in.readInt(), featureSize + 1);
+            for (int i = 0; i < tokenCount[player]; ++i)
+                tokens[player * featureSize + i] = checkRange(in.readInt(), tableSize);
+        }
+        return new GameSnapshot(featureSize, deckSize, tableSize, players, elapsedMillis, turnLeftMillis, sets,
+                reshuffles, deck, slotToCard, tokens, tokenCount, points, penalties, cameBackFromPenalty,
+                freezeLeftMillis);
+    }
+
+    private static int checkRange(int value, int bound) throws IOException {
+        if (value < 0 || value >= bound) throw new IOException("corrupted game snapshot");
+        return value;
+    }
+
+    /**
+     * Writes the snapshot to a file, replacing it atomically (a crash during the write leaves the previous one).
+     */
+    public void save(Path file) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream out = Files.newOutputStream(tmp)) {
+            write(out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static GameSnapshot load(Path file) throws IOException {
+        try (InputStream in = Files.newInputStream(file)) {
+            return read(in);
+        }
+    }
+}
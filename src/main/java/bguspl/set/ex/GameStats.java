@@ -0,0 +1,123 @@
+package bguspl.set.ex;
+
+/**
+ * Statistics of a single game, collected by the dealer.
+ * Written by the dealer thread only (the reshuffles by the table stage of the pipelined dealer); read them after the
+ * dealer thread has finished (or treat them as approximate).
+ */
+public class GameStats {
+
+    /**
+     * The number of legal sets collected.
+     */
+    private int sets;
+
+    /**
+     * The number of times all the cards were returned to the deck and the deck was reshuffled.
+     */
+    private int reshuffles;
+
+    /**
+     * The number of points (legal sets, i.e. the score) and penalties (illegal sets) of each player, one int per
+     * player so that games with hundreds of players stay compact.
+     */
+    private final int[] points;
+    private final int[] penalties;
+
+    /**
+     * The time the game started and ended (in milliseconds).
+     */
+    private long startMillis;
+    private long endMillis;
+
+    /**
+     * The time played before the game was saved (in milliseconds, 0 unless the game was resumed).
+     */
+    private long resumedMillis;
+
+    public GameStats(int players) {
+        this.points = new int[players];
+        this.penalties = new int[players];
+    }
+
+    void gameStarted() {
+        startMillis = System.currentTimeMillis() - resumedMillis;
+    }
+
+    /**
+     * Restores the statistics of a saved game (see Dealer.resume).
+     */
+    void resume(int sets, int reshuffles, int[] points, int[] penalties, long elapsedMillis) {
+        this.sets = sets;
+        this.reshuffles = reshuffles;
+        System.arraycopy(points, 0, this.points, 0, this.points.length);
+        System.arraycopy(penalties, 0, this.penalties, 0, this.penalties.length);
+        this.resumedMillis = elapsedMillis;
+    }
+
+    void gameEnded() {
+        endMillis = System.currentTimeMillis();
+    }
+
+    void setCollected(int player) {
+        ++sets;
+        ++points[player];
+    }
+
+    void penalized(int player) {
+        ++penalties[player];
+    }
+
+    void reshuffled() {
+        ++reshuffles;
+    }
+
+    public int sets() {
+        return sets;
+    }
+
+    public int reshuffles() {
+        return reshuffles;
+    }
+
+    public int points(int player) {
+        return points[player];
+    }
+
+    public int penalties(int player) {
+        return penalties[player];
+    }
+
+    /**
+     * @return - the ids of the players with the most points (in ascending order).
+     */
+    public int[] winners() {
+        int max = 0;
+        int count = 0;
+        for (int point : points) {
+            if (point > max) {
+                max = point;
+                count = 0;
+            }
+            if (point == max) ++count;
+        }
+        int[] winners = new int[count];
+        for (int player = 0, i = 0; i < count; ++player)
+            if (points[player] == max) winners[i++] = player;
+        return winners;
+    }
+
+    public int penalties() {
+        int total = 0;
+        for (int penalty : penalties)
+            total += penalty;
+        return total;
+    }
+
+    /**
+     * @return - the game duration in milliseconds (up to now, if the game did not end yet).
+     */
+    public long durationMillis() {
+        return (endMillis > 0 ? endMillis : System.currentTimeMillis()) - startMillis;
+    }
+}
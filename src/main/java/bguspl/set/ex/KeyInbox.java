@@ -0,0 +1,227 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The non-blocking inbox of the key presses (slots) of a single player.
+ * <p>
+ * The whole inbox (the number of queued slots and the slots themselves, oldest first) is packed into one long and
+ * updated with compare-and-set, so input sources (the Swing event dispatch thread, the network server, a computer
+ * player) never block and never take a lock. When the inbox is full, the overflow policy decides what happens:
+ * <ul>
+ * <li>DROP_NEWEST: the new key press is dropped.</li>
+ * <li>DROP_OLDEST: the oldest queued key press is dropped to make room for the new one.</li>
+ * <li>COALESCE: a key press on a slot that is already queued cancels it (two toggles of the same slot do nothing);
+ * otherwise the new key press is dropped if the inbox is full.</li>
+ * </ul>
+ * Dropped key presses are counted.
+ *
+ * @inv 0 <= size() <= capacity
+ */
+public class KeyInbox {
+
+    public enum OverflowPolicy {
+        DROP_NEWEST, DROP_OLDEST, COALESCE;
+
+        /**
+         * @param name - the policy name as written in the config file (e.g. "drop-oldest").
+         */
+        public static OverflowPolicy parse(String name) {
+            return valueOf(name.trim().toUpperCase().replace('-', '_'));
+        }
+    }
+
+    /**
+     * The value returned by poll when the inbox is empty.
+     */
+    public static final int NONE = -1;
+
+    private static final int SIZE_BITS = 6;
+    private static final long SIZE_MASK = (1L << SIZE_BITS) - 1;
+
+    private final int capacity;
+    private final int slotBits;
+    private final long slotMask;
+    private final OverflowPolicy policy;
+
+    /**
+     * The number of queued slots (lowest SIZE_BITS bits) followed by the slots, slotBits bits each, oldest first.
+     */
+    private final AtomicLong state = new AtomicLong();
+
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * The consumer waiting for a key press, and a producer waiting for room (null if none).
+     */
+    private volatile Thread waitingConsumer;
+    private volatile Thread waitingProducer;
+
+    /**
+     * A thread that polls many inboxes instead of taking from this one, unparked on every key press (null if none).
+     */
+    private volatile Thread listener;
+
+    /**
+     * @param capacity  - the maximal number of queued key presses.
+     * @param tableSize - the number of slots on the table (slots are 0 .. tableSize - 1).
+     * @param policy    - what to do with a key press when the inbox is full.
+     */
+    public KeyInbox(int capacity, int tableSize, OverflowPolicy policy) {
+        int bits = Math.max(1, 32 - Integer.numberOfLeadingZeros(tableSize - 1));
+        if (capacity < 1 || capacity > SIZE_MASK || SIZE_BITS + capacity * bits > Long.SIZE)
+            throw new IllegalArgumentException("cannot fit " + capacity + " slots of a table of " + tableSize + " in an inbox");
+        this.capacity = capacity;
+        this.slotBits = bits;
+        this.slotMask = (1L << bits) - 1;
+        this.policy = policy;
+    }
+
+    private static int size(long state) {
+        return (int) (state & SIZE_MASK);
+    }
+
+    private int slot(long state, int i) {
+        return (int) ((state >>> (SIZE_BITS + i * slotBits)) & slotMask);
+    }
+
+    private long append(long state, int slot) {
+        int size = size(state);
+        return (state | ((long) slot << (SIZE_BITS + size * slotBits))) + 1;
+    }
+
+    private long remove(long state, int i) {
+        long slots = state >>> SIZE_BITS;
+        long below = slots & ((1L << (i * slotBits)) - 1);
+        long above = i + 1 < capacity ? (slots >>> ((i + 1) * slotBits)) << (i * slotBits) : 0;
+        return ((below | above) << SIZE_BITS) | (size(state) - 1);
+    }
+
+    private int indexOf(long state, int slot) {
+        for (int i = 0; i < size(state); ++i)
+            if (slot(state, i) == slot) return i;
+        return -1;
+    }
+
+    /**
+     * Queues a key press without ever blocking, applying the overflow policy if the inbox is full.
+     *
+     * @param slot - the slot of the key press.
+     * @return - true iff the key press was queued (or coalesced with a queued one).
+     */
+    public boolean offer(int slot) {
+        while (true) {
+            long current = state.get();
+            long next;
+            boolean drop = false;
+            int queued = policy == OverflowPolicy.COALESCE ? indexOf(current, slot) : -1;
+            if (queued >= 0)
+                next = remove(current, queued);
+            else if (size(current) < capacity)
+                next = append(current, slot);
+            else if (policy == OverflowPolicy.DROP_OLDEST) {
+                next = append(remove(current, 0), slot);
+                drop = true;
+            } else {
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (state.compareAndSet(current, next)) {
+                if (drop) dropped.incrementAndGet();
+                signal();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Queues a key press, waiting for room if the inbox is full (for a computer player, which should not flood it).
+     *
+     * @param slot - the slot of the key press.
+     * @throws InterruptedException - if interrupted while waiting.
+     */
+    public void put(int slot) throws InterruptedException {
+        while (true) {
+            long current = state.get();
+            if (size(current) < capacity) {
+                if (state.compareAndSet(current, append(current, slot))) {
+                    signal();
+                    return;
+                }
+                continue;
+            }
+            waitingProducer = Thread.currentThread();
+            if (size(state.get()) >= capacity) LockSupport.parkNanos(this, 1_000_000L);
+            waitingProducer = null;
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    private void signal() {
+        Thread consumer = waitingConsumer;
+        if (consumer != null) LockSupport.unpark(consumer);
+        Thread listener = this.listener;
+        if (listener != null) LockSupport.unpark(listener);
+    }
+
+    /**
+     * Makes every key press unpark the given thread, for a consumer that polls many inboxes (e.g. an event loop).
+     *
+     * @param thread - the thread to unpark (null to stop).
+     */
+    public void listen(Thread thread) {
+        listener = thread;
+    }
+
+    /**
+     * Takes the oldest key press (never blocks).
+     *
+     * @return - the slot of the key press, or NONE if the inbox is empty.
+     */
+    public int poll() {
+        while (true) {
+            long current = state.get();
+            if (size(current) == 0) return NONE;
+            if (state.compareAndSet(current, remove(current, 0))) {
+                Thread producer = waitingProducer;
+                if (producer != null) LockSupport.unpark(producer);
+                return slot(current, 0);
+            }
+        }
+    }
+
+    /**
+     * Takes the oldest key press, waiting until there is one (single consumer).
+     *
+     * @return - the slot of the key press.
+     * @throws InterruptedException - if interrupted while waiting.
+     */
+    public int take() throws InterruptedException {
+        while (true) {
+            int slot = poll();
+            if (slot != NONE) return slot;
+            waitingConsumer = Thread.currentThread();
+            slot = poll();
+            if (slot == NONE) LockSupport.park(this);
+            waitingConsumer = null;
+            if (slot != NONE) return slot;
+            if (Thread.interrupted()) throw new InterruptedException();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size(state.get()) == 0;
+    }
+
+    public int size() {
+        return size(state.get());
+    }
+
+    /**
+     * @return - the number of key presses dropped because the inbox was full.
+     */
+    public long dropped() {
+        return dropped.get();
+    }
+}
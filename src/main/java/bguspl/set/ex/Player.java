@@ -1,9 +1,8 @@
 package bguspl.set.ex;
 
-import java.util.concurrent.ArrayBlockingQueue;
-import java.util.concurrent.BlockingQueue;
-
 import bguspl.set.Env;
+import bguspl.set.GameEvents;
+
 import java.util.Random;
 
 
@@ -35,11 +34,33 @@ public class Player implements Runnable {
      */
     private Thread aiThread;
 
+    /**
+     * The task of the computer player on the shared AI pool (instead of aiThread, see AiPool), null if none.
+     */
+    private volatile AiPool.Bot bot;
+
+    /**
+     * True iff the last search of the seeker on the AI pool found nothing to press, and the time (Table.changedNanos)
+     * of the table it searched: the seeker searches again only after the table changed (touched by the pool only).
+     */
+    private boolean aiIdle;
+    private long aiSearchedChange;
+
     /**
      * True iff the player is human (not a computer player).
      */
     private final boolean human;
 
+    /**
+     * The strategy of the player ("human" for human players, otherwise one of config.computerStrategies).
+     */
+    private final String strategy;
+
+    /**
+     * The time a seeker computer player waits before checking the table again.
+     */
+    private static final long SEEKER_PAUSE_MILLIS = 1;
+
     /**
      * True iff game should be terminated.
      */
@@ -56,13 +77,28 @@ public class Player implements Runnable {
     protected int resultFromDealerAfterCheckSet;
 
     /**
-     * keep the actions of the player
+     * keep the actions of the player (never blocks the input sources, see KeyInbox)
      */
-    private BlockingQueue<Integer> actionQueue;
+    final KeyInbox inbox;
 
-    private boolean cameBackFromPenalty = false;
+    private volatile boolean cameBackFromPenalty = false;
 
-    private boolean maxPresses = false;
+    private volatile boolean maxPresses = false;
+
+    /**
+     * The time (System.currentTimeMillis()) the freeze of the player ends, 0 if not frozen.
+     */
+    private volatile long frozenUntil;
+
+    /**
+     * The time (System.nanoTime()) the player was last free to play (it was created or its freeze ended).
+     */
+    private volatile long readySince = System.nanoTime();
+
+    /**
+     * The analytics of the game the player takes part in.
+     */
+    private final GameAnalytics analytics;
 
 
     /**
@@ -70,6 +106,26 @@ public class Player implements Runnable {
      */
     private Dealer dealer;
 
+    /**
+     * The freeze of the player in the event loop engine (ended by endFreeze), null if not frozen.
+     */
+    private GameEvents.Freeze freezeEvent;
+
+    /**
+     * The random source of the key presses of a computer player (seeded from the config).
+     */
+    private final Random random;
+
+    /**
+     * The tokens of a seeker computer player, the candidate sets it checks (see completingSlot), and the cards it
+     * sees on the table with the set it finds among them (see seekStep).
+     */
+    private final int[] tokens;
+    private final int[] candidates;
+    private final int[] candidateSlots;
+    private final int[] seen;
+    private final int[] seekSet;
+
     /**
      * The class constructor.
      *
@@ -85,7 +141,15 @@ public class Player implements Runnable {
         this.id = id;
         this.human = human;
         this.dealer = dealer;
-        this.actionQueue = new ArrayBlockingQueue<>(env.config.featureSize,true);//magic number
+        this.strategy = human ? "human" : env.config.computerStrategies[(id - env.config.humanPlayers) % env.config.computerStrategies.length];
+        this.inbox = new KeyInbox(env.config.featureSize, env.config.tableSize, KeyInbox.OverflowPolicy.parse(env.config.inputOverflowPolicy));//magic number
+        this.random = new Random(env.config.seed("computer-" + id));
+        this.analytics = dealer.analytics();
+        this.tokens = new int[env.config.featureSize];
+        this.candidates = new int[64 * env.config.featureSize];//magic number
+        this.candidateSlots = new int[64];//magic number
+        this.seen = new int[env.config.tableSize];
+        this.seekSet = new int[env.config.featureSize];
         this.resultFromDealerAfterCheckSet = -2;//irrelevant value
     }
 
@@ -100,6 +164,14 @@ public class Player implements Runnable {
         return this.cameBackFromPenalty;
     }
 
+    /**
+     * @return - the strategy of the player ("human" for human players).
+     */
+    public String strategy()
+    {
+        return this.strategy;
+    }
+
     //for tests only
     public boolean getBoolTerminate()
     {
@@ -113,60 +185,318 @@ public class Player implements Runnable {
     public void run() {
         env.logger.info("Thread " + Thread.currentThread().getName() + " starting.");
         if (!human) createArtificialIntelligence();
+        resumeFreeze();
         while (!terminate) {
-            if(actionQueue.size() !=0)
-            {
-                try{
-                Integer slotToTable = actionQueue.take();
-                if(table.slotToCard[slotToTable] != null)
-                {
-                    if(table.getSetsOfTokensOfThePlayers().get(id).contains(slotToTable))
-                    {
-                        table.removeToken(id, slotToTable);
-                        cameBackFromPenalty = false;
-                    }
-                    else
-                    {
-                        if(table.getSetsOfTokensOfThePlayers().get(id).size()<env.config.featureSize)//magic number
-                            table.placeToken(id, slotToTable);
-                    }
-                }
-                }
-                catch (InterruptedException e) {}
-            }
-            int tmp = table.getSetsOfTokensOfThePlayers().get(id).size();
-            if(tmp == env.config.featureSize && !cameBackFromPenalty)//magic number
+            if(readyToClaim())
             {
                 addToDealerList(id);
+                continue;
             }
+            try{
+                // sleeps until a key is pressed (or the player is terminated)
+                applyKeyPress(inbox.take());
+            }
+            catch (InterruptedException e) {}
         }
+        if(inbox.dropped() > 0)
+            env.logger.info("player " + (id + 1) + " dropped " + inbox.dropped() + " key presses.");
         env.logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
     }
 
+    /**
+     * Waits out the rest of a freeze the player had when the game was saved (see resume).
+     */
+    private void resumeFreeze()
+    {
+        if(frozenUntil == 0)
+            return;
+        long timeLeft = frozenUntil - System.currentTimeMillis();
+        try
+        {
+            while(timeLeft > 0 && !terminate)
+            {
+                showFreeze(timeLeft);
+                Thread.sleep(Math.min(timeLeft, 1000));//magic number
+                timeLeft = frozenUntil - System.currentTimeMillis();
+            }
+        }
+        catch (InterruptedException e){}
+        showFreeze(0);
+        frozenUntil = 0;
+        readySince = System.nanoTime();
+        maxPresses = false;
+        aiWake();
+    }
+
+    /**
+     * Places or removes the token of the player on the given slot (if there is a card on it).
+     *
+     * @param slotToTable - the slot of the key press.
+     */
+    void applyKeyPress(int slotToTable) {
+        if(table.hasCard(slotToTable))
+        {
+            if(table.hasToken(id, slotToTable))
+            {
+                table.removeToken(id, slotToTable);
+                cameBackFromPenalty = false;
+            }
+            else
+            {
+                if(table.tokenCount(id)<env.config.featureSize)//magic number
+                {
+                    table.placeToken(id, slotToTable);
+                    analytics.tokenPlaced(id, System.nanoTime() - availableSince());
+                }
+            }
+        }
+        // the key press was handled, the computer player may press the next key
+        aiWake();
+    }
+
+    /**
+     * @return - the time (System.nanoTime()) since when the player could see the current table: the last change of
+     *           the cards on the table, or the end of the last freeze of the player if it was later.
+     */
+    long availableSince() {
+        return Math.max(table.changedNanos(), readySince);
+    }
+
+    /**
+     * @return - true iff the player has a full set of tokens that was not penalized yet, i.e. should claim it.
+     */
+    boolean readyToClaim() {
+        return table.tokenCount(id) == env.config.featureSize && !cameBackFromPenalty;//magic number
+    }
+
     /**
      * Creates an additional thread for an AI (computer) player. The main loop of this thread repeatedly generates
      * key presses. If the queue of key presses is full, the thread waits until it is not full.
+     * When the dealer has an AI pool, the player becomes a task of the pool instead.
      */
     private void createArtificialIntelligence() {
+        AiPool pool = dealer.aiPool();
+        if(pool != null)
+        {
+            startOn(pool);
+            return;
+        }
         // note: this is a very, very smart AI (!)
         aiThread = new Thread(() -> {
             env.logger.info("Thread " + Thread.currentThread().getName() + " starting.");
             while (!terminate) {
-                Random random = new Random();
-                Integer number = random.nextInt(env.config.tableSize);//magic number
-                keyPressed(number);
+                if(isSeeker())
+                    seek();
+                else
+                {
+                    int number = random.nextInt(env.config.tableSize);//magic number
+                    if(!maxPresses)
+                    {
+                        try
+                        {
+                            inbox.put(number);
+                        }
+                        catch (InterruptedException e) {}
+                    }
+                }
             }
             env.logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
         }, "computer-" + id);
         aiThread.start();
     }
 
+    /**
+     * Starts moving the computer player on the AI pool (until it is terminated).
+     */
+    void startOn(AiPool pool)
+    {
+        AiPool.Bot bot = pool.start(this);
+        this.bot = bot;
+        table.onChange(bot::wake);
+        if(terminate)
+            bot.stop();
+    }
+
+    /**
+     * Wakes the task of the computer player on the AI pool (if any): it may have something to do again.
+     */
+    private void aiWake()
+    {
+        AiPool.Bot bot = this.bot;
+        if(bot != null)
+            bot.wake();
+    }
+
+    /**
+     * @return - true iff a move on the AI pool has nothing to do: the player is frozen or waits for the dealer, its key
+     *           presses were not handled yet (a seeker waits for all of them, a random player for room in the inbox),
+     *           or it is a seeker that found nothing on the table and the table did not change since.
+     */
+    boolean aiIdle()
+    {
+        if(terminate || maxPresses)
+            return true;
+        if(!isSeeker())
+            return inbox.size() >= env.config.featureSize;
+        return !inbox.isEmpty() || aiIdle && aiSearchedChange == table.changedNanos();
+    }
+
+    /**
+     * One move of the computer player on the AI pool (after aiIdle returned false).
+     */
+    void aiStep()
+    {
+        try
+        {
+            if(!isSeeker())
+            {
+                randomStep();
+                return;
+            }
+            long change = table.changedNanos();
+            // a key press that was refused (the player was frozen meanwhile) is not a reason to wait for the table
+            aiIdle = !seekStep() && inbox.isEmpty() && !maxPresses;
+            aiSearchedChange = change;
+        }
+        catch(RuntimeException e)
+        {
+            // a failed move must not stop the task, the next move tries again
+            env.logger.severe("computer player " + (id + 1) + " failed to move: " + e);
+        }
+    }
+
+    /**
+     * Counts a move of the computer player on the AI pool.
+     *
+     * @param cpuNanos - the cpu time the move took.
+     */
+    void aiMoved(long cpuNanos)
+    {
+        analytics.aiMoved(id, cpuNanos);
+    }
+
+    boolean isHuman() {
+        return human;
+    }
+
+    boolean isSeeker() {
+        return strategy.equals("seeker");
+    }
+
+    /**
+     * One step of the seeker strategy on the AI thread: waits while earlier key presses are not handled yet or
+     * there is nothing to press.
+     */
+    private void seek() {
+        try
+        {
+            if(maxPresses || !inbox.isEmpty() || !seekStep())
+                Thread.sleep(SEEKER_PAUSE_MILLIS);
+        }
+        catch (InterruptedException e) {}
+    }
+
+    /**
+     * Looks for a legal set on the table and makes one key press towards it (removing a token that is not part of
+     * the set first). A player that is one card short of a set first looks for a card that completes its tokens.
+     *
+     * @return - true iff a key was pressed.
+     */
+    boolean seekStep() {
+        int count = table.tokens(id, tokens);
+        if(count == env.config.featureSize - 1)
+        {
+            int slot = completingSlot(count);
+            if(slot != Table.EMPTY)
+                return keyPressed(slot);
+        }
+        // a copy of the table, the dealer may change it while the set is looked for (empty slots are skipped)
+        System.arraycopy(table.slotToCard, 0, seen, 0, seen.length);
+        if(env.util.findSet(seen, seen.length, 0, seekSet) < 0)
+            return false;
+        int[] set = seekSet;
+        for(int i = 0; i < count; i++)
+        {
+            int slot = tokens[i];
+            boolean inSet = false;
+            for(int card : set)
+                if(table.cardToSlot[card] == slot)
+                    inSet = true;
+            if(!inSet)
+                return keyPressed(slot);
+        }
+        for(int card : set)
+        {
+            int slot = table.cardToSlot[card];
+            boolean placed = false;
+            for(int i = 0; i < count; i++)
+                if(tokens[i] == slot)
+                    placed = true;
+            if(slot != Table.EMPTY && !placed)
+                return keyPressed(slot);
+        }
+        return false;
+    }
+
+    /**
+     * Looks for a card on the table that completes the tokens of the player to a legal set. Every other card on the
+     * table is a candidate, and the candidates are checked 64 at a time (see Util.testSets).
+     *
+     * @param count - the number of tokens of the player (in tokens).
+     * @return - the slot of such a card, Table.EMPTY if there is none.
+     */
+    private int completingSlot(int count)
+    {
+        int setSize = env.config.featureSize;
+        int candidateCount = 0;
+        for(int slot = 0; slot < table.slotToCard.length; slot++)
+        {
+            int card = table.slotToCard[slot];
+            boolean token = false;
+            for(int i = 0; i < count; i++)
+                if(tokens[i] == slot)
+                    token = true;
+            if(card == Table.EMPTY || token)
+                continue;
+            int first = candidateCount * setSize;
+            for(int i = 0; i < count; i++)
+            {
+                candidates[first + i] = table.slotToCard[tokens[i]];
+                if(candidates[first + i] == Table.EMPTY)
+                    return Table.EMPTY; // the table changed under the tokens
+            }
+            candidates[first + count] = card;
+            candidateSlots[candidateCount++] = slot;
+            if(candidateCount == candidateSlots.length)
+            {
+                long legal = env.util.testSets(candidates, setSize, candidateCount);
+                if(legal != 0)
+                    return candidateSlots[Long.numberOfTrailingZeros(legal)];
+                candidateCount = 0;
+            }
+        }
+        long legal = env.util.testSets(candidates, setSize, candidateCount);
+        return legal != 0 ? candidateSlots[Long.numberOfTrailingZeros(legal)] : Table.EMPTY;
+    }
+
+    /**
+     * One step of the random strategy: presses a random slot.
+     *
+     * @return - true iff the key press was queued.
+     */
+    boolean randomStep() {
+        return keyPressed(random.nextInt(env.config.tableSize));//magic number
+    }
+
     /**
      * Called when the game should be terminated.
      */
     public void terminate() {
         terminate = true;
-        if(!human)
+        AiPool.Bot bot = this.bot;
+        if(bot != null)
+            bot.stop();
+        if(aiThread != null)
         {
             try
             {
@@ -178,20 +508,22 @@ public class Player implements Runnable {
     }
 
     /**
-     * This method is called when a key is pressed.
+     * This method is called when a key is pressed. It never blocks: when the inbox of the player is full, the key
+     * press is handled by the configured overflow policy.
      *
      * @param slot - the slot corresponding to the key pressed.
+     * @return - true iff the key press was queued.
      */
-    public void keyPressed(Integer slot) {
+    public boolean keyPressed(int slot) {
         // insert the slot to queue or array limit to 3
-        if(!maxPresses)
-        {
-            try{
-            actionQueue.put(slot);
-            }
-            catch(InterruptedException e) {}
-        }
-        
+        return !maxPresses && inbox.offer(slot);
+    }
+
+    /**
+     * @return - the number of key presses dropped because the inbox of the player was full.
+     */
+    public long droppedKeyPresses() {
+        return inbox.dropped();
     }
 
     /**
@@ -203,42 +535,70 @@ public class Player implements Runnable {
     public void point() {
         // raise one point and wait little time
         int ignored = table.countCards(); // this part is just for demonstration in the unit tests
-        score++;
-        env.ui.setScore(id, score);
-        env.ui.setFreeze(id, env.config.pointFreezeMillis);//magic number
+        awardPoint();
+        showFreeze(env.config.pointFreezeMillis);//magic number
+        GameEvents.Freeze event = freezeEvent("point");
+        frozenUntil = System.currentTimeMillis() + env.config.pointFreezeMillis;
         try
         {
             long timeLeftForWait = env.config.pointFreezeMillis;//magic number
             while(timeLeftForWait>0)
             {
-                env.ui.setFreeze(id, timeLeftForWait);
+                showFreeze(timeLeftForWait);
                 long timeToWait = (env.config.pointFreezeMillis*1000)/env.config.pointFreezeMillis;//magic number
                 Thread.sleep(timeToWait);
                 timeLeftForWait = timeLeftForWait - timeToWait;
             }
-            env.ui.setFreeze(id, 0);
+            showFreeze(0);
         }
         catch (InterruptedException e){}
+        frozenUntil = 0;
+        readySince = System.nanoTime();
+        if(event != null)
+            event.commit();
+    }
+
+    /**
+     * Shows the freeze time left of the player (unless the display clock of the dealer shows it).
+     */
+    private void showFreeze(long millis)
+    {
+        if(dealer.clock() == null)
+            env.ui.setFreeze(id, millis);
+    }
+
+    /**
+     * Raises the score of the player by one and shows it (without the freeze).
+     */
+    void awardPoint() {
+        score++;
+        env.ui.setScore(id, score);
     }
 
     /**
      * Penalize a player and perform other related actions.
      */
     public void penalty() {
+        GameEvents.Freeze event = freezeEvent("penalty");
+        frozenUntil = System.currentTimeMillis() + env.config.penaltyFreezeMillis;
         try
         {
             cameBackFromPenalty = true;
             long timeLeftForPenalty = env.config.penaltyFreezeMillis;
             while(timeLeftForPenalty>0)
             {
-                env.ui.setFreeze(id, timeLeftForPenalty);
+                showFreeze(timeLeftForPenalty);
                 long timeToWait = (env.config.pointFreezeMillis*1000)/env.config.penaltyFreezeMillis;//magic number
                 Thread.sleep(timeToWait);
                 timeLeftForPenalty = timeLeftForPenalty - timeToWait;
             }
-            env.ui.setFreeze(id, 0);
+            showFreeze(0);
         }
         catch (InterruptedException e){}
+        frozenUntil = 0;
+        readySince = System.nanoTime();
+        if(event != null)
+            event.commit();
     }
 
     // for tests
@@ -255,12 +615,104 @@ public class Player implements Runnable {
     {
         try{
             maxPresses = true;
+            claimSubmitted();
             dealer.requests.put(id);
             afterCheckFromDealer();
         }
         catch(InterruptedException e ){}
     }
 
+    /**
+     * Starts the freeze that follows the answer of the dealer to a claim, without waiting for it to end (used by the
+     * event loop engine, which ends it with endFreeze).
+     *
+     * @return - the freeze duration in milliseconds (0 if the claim was not checked).
+     */
+    long startFreeze()
+    {
+        long freeze = 0;
+        if(resultFromDealerAfterCheckSet == 0)
+        {
+            awardPoint();
+            freeze = env.config.pointFreezeMillis;
+            freezeEvent = freezeEvent("point");
+        }
+        else if(resultFromDealerAfterCheckSet == 1)
+        {
+            cameBackFromPenalty = true;
+            freeze = env.config.penaltyFreezeMillis;
+            freezeEvent = freezeEvent("penalty");
+        }
+        resultFromDealerAfterCheckSet = -2;
+        maxPresses = freeze > 0;
+        if(!maxPresses)
+            aiWake();
+        frozenUntil = freeze > 0 ? System.currentTimeMillis() + freeze : 0;
+        return freeze;
+    }
+
+    void endFreeze()
+    {
+        maxPresses = false;
+        frozenUntil = 0;
+        readySince = System.nanoTime();
+        aiWake();
+        if(freezeEvent != null)
+        {
+            freezeEvent.commit();
+            freezeEvent = null;
+        }
+    }
+
+    /**
+     * @return - the time (System.currentTimeMillis()) the freeze of the player ends, 0 if not frozen.
+     */
+    long frozenUntil()
+    {
+        return frozenUntil;
+    }
+
+    /**
+     * Restores the state of the player from a saved game, before the game starts (see Dealer.resume).
+     *
+     * @param score               - the score of the player.
+     * @param cameBackFromPenalty - true iff the tokens of the player were already penalized.
+     * @param freezeMillis        - the time left to the end of the freeze of the player (0 if not frozen).
+     */
+    void resume(int score, boolean cameBackFromPenalty, long freezeMillis)
+    {
+        this.score = score;
+        this.cameBackFromPenalty = cameBackFromPenalty;
+        this.frozenUntil = freezeMillis > 0 ? System.currentTimeMillis() + freezeMillis : 0;
+        this.maxPresses = freezeMillis > 0;
+        env.ui.setScore(id, score);
+    }
+
+    void claimSubmitted()
+    {
+        if (!GameEvents.CLAIM_SUBMITTED.isEnabled())
+            return;
+        GameEvents.ClaimSubmitted event = new GameEvents.ClaimSubmitted();
+        if (event.shouldCommit()) {
+            event.player = id;
+            event.commit();
+        }
+    }
+
+    /**
+     * @return - the event of a freeze that starts now (null if the event is not enabled).
+     */
+    private GameEvents.Freeze freezeEvent(String reason)
+    {
+        if(!GameEvents.FREEZE.isEnabled())
+            return null;
+        GameEvents.Freeze event = new GameEvents.Freeze();
+        event.player = id;
+        event.reason = reason;
+        event.begin();
+        return event;
+    }
+
     /**
      * Does the right action after the dealer check our set
      */
@@ -281,6 +733,7 @@ public class Player implements Runnable {
         else if(resultFromDealerAfterCheckSet == 1) 
                 penalty();
         maxPresses = false;
+        aiWake();
         resultFromDealerAfterCheckSet = -2;
     } 
 }
\ No newline at end of file
@@ -0,0 +1,70 @@
+package bguspl.set.ex;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.logging.Logger;
+
+/**
+ * Writes the game snapshots to a file on a background thread, so the dealer only pays for capturing them.
+ * When the disk is slower than the snapshots, the snapshots that were not written yet are replaced by the newest one.
+ */
+class SnapshotWriter {
+
+    private final Logger logger;
+    private final Path file;
+    private final ExecutorService executor;
+
+    /**
+     * The newest snapshot that was not written yet (null if none).
+     */
+    private final AtomicReference<GameSnapshot> pending = new AtomicReference<>();
+
+    SnapshotWriter(Logger logger, Path file) {
+        this.logger = logger;
+        this.file = file;
+        this.executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "snapshot-writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Queues a snapshot to be written (never blocks).
+     */
+    void submit(GameSnapshot snapshot) {
+        if (pending.getAndSet(snapshot) == null) executor.execute(this::writePending);
+    }
+
+    private void writePending() {
+        GameSnapshot snapshot = pending.getAndSet(null);
+        if (snapshot == null) return;
+        try {
+            snapshot.save(file);
+        } catch (IOException e) {
+            logger.severe("cannot write the game snapshot " + file + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the pending snapshot (if any) and stops the writer thread.
+     *
+     * @param delete - true iff the snapshot file should be deleted (e.g. the game is over, there is nothing to resume).
+     */
+    void close(boolean delete) {
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+            if (delete) Files.deleteIfExists(file);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.severe("cannot delete the game snapshot " + file + ": " + e.getMessage());
+        }
+    }
+}
@@ -1,58 +1,96 @@
 package bguspl.set.ex;
 
 import bguspl.set.Env;
+import bguspl.set.GameEvents;
 
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.List;
-import java.util.Objects;
-import java.util.Vector;
 import java.util.stream.Collectors;
 
 /**
  * This class contains the data that is visible to the player.
  *
  * @inv slotToCard[x] == y iff cardToSlot[y] == x
+ * @inv cardsOnTable.get(y) iff cardToSlot[y] != EMPTY (for cards placed through the table methods)
  */
 public class Table {
 
+    /**
+     * The value stored in slotToCard / cardToSlot for an empty slot / a card that is not on the table.
+     */
+    public static final int EMPTY = -1;
+
     /**
      * The game environment object.
      */
     private final Env env;
 
     /**
-     * Mapping between a slot and the card placed in it (null if none).
+     * Mapping between a slot and the card placed in it (EMPTY if none).
      */
-    protected final Integer[] slotToCard; // card per slot (if any)
+    protected final int[] slotToCard; // card per slot (if any)
 
     /**
-     * Mapping between a card and the slot it is in (null if none).
+     * Mapping between a card and the slot it is in (EMPTY if none).
      */
-    protected final Integer[] cardToSlot; // slot per card (if any)
+    protected final int[] cardToSlot; // slot per card (if any)
 
     /**
-     * The sets of the players
+     * The cards that are currently on the table (one bit per card id).
      */
-    private final Vector<Vector<Integer>> setsOfTokensOfThePlayers;
+    private final BitSet cardsOnTable;
+
+    /**
+     * The time (System.nanoTime()) the cards on the table last changed.
+     */
+    private volatile long changedNanos = System.nanoTime();
+
+    /**
+     * Called when the cards on the table change (e.g. to wake the computer players on the AI pool, see onChange).
+     */
+    private volatile Runnable[] changeListeners = new Runnable[0];
+
+    /**
+     * The maximal number of tokens of a player (the number of cards in a set).
+     */
+    private final int featureSize;
+
+    /**
+     * The slots of the tokens of each player, in the order they were placed: the tokens of player p are
+     * tokens[p * featureSize] .. tokens[p * featureSize + tokenCount[p] - 1] (guarded by this).
+     */
+    private final int[] tokens;
+    private final int[] tokenCount;
+
+    /**
+     * The players that have a token on each slot: slotPlayers[s][0] .. slotPlayers[s][slotTokenCount[s] - 1], in no
+     * particular order (the rows start with room for 4 players and grow on demand, guarded by this).
+     */
+    private final int[][] slotPlayers;
+    private final int[] slotTokenCount;
 
     /**
      * Constructor for testing.
      *
      * @param env        - the game environment objects.
-     * @param slotToCard - mapping between a slot and the card placed in it (null if none).
-     * @param cardToSlot - mapping between a card and the slot it is in (null if none).
+     * @param slotToCard - mapping between a slot and the card placed in it (EMPTY if none).
+     * @param cardToSlot - mapping between a card and the slot it is in (EMPTY if none).
      */
-    public Table(Env env, Integer[] slotToCard, Integer[] cardToSlot) {
+    public Table(Env env, int[] slotToCard, int[] cardToSlot) {
 
         this.env = env;
         this.slotToCard = slotToCard;
         this.cardToSlot = cardToSlot;
-        Vector<Vector<Integer>> vec = new Vector<Vector<Integer>>();
-        for(int i = 0;i<env.config.players;i++)
-        {   
-            vec.add(new Vector<Integer>(env.config.featureSize,0));//magic number
-        }
-        this.setsOfTokensOfThePlayers = vec;
+        this.cardsOnTable = new BitSet(cardToSlot.length);
+        for (int card : slotToCard)
+            if (card != EMPTY)
+                cardsOnTable.set(card);
+        this.featureSize = env.config.featureSize;
+        this.tokens = new int[env.config.players * featureSize];
+        this.tokenCount = new int[env.config.players];
+        this.slotPlayers = new int[slotToCard.length][Math.min(4, env.config.players)];
+        this.slotTokenCount = new int[slotToCard.length];
     }
 
 
@@ -62,14 +100,20 @@ public class Table {
      * @param env - the game environment objects.
      */
     public Table(Env env) {
-        this(env, new Integer[env.config.tableSize], new Integer[env.config.deckSize]);
+        this(env, emptyArray(env.config.tableSize), emptyArray(env.config.deckSize));
+    }
+
+    private static int[] emptyArray(int length) {
+        int[] array = new int[length];
+        Arrays.fill(array, EMPTY);
+        return array;
     }
 
     /**
      * This method prints all possible legal sets of cards that are currently on the table.
      */
     public void hints() {
-        List<Integer> deck = Arrays.stream(slotToCard).filter(Objects::nonNull).collect(Collectors.toList());
+        List<Integer> deck = cards();
         env.util.findSets(deck, Integer.MAX_VALUE).forEach(set -> {
             StringBuilder sb = new StringBuilder().append("Hint: Set found: ");
             List<Integer> slots = Arrays.stream(set).mapToObj(card -> cardToSlot[card]).sorted().collect(Collectors.toList());
@@ -85,12 +129,90 @@ public class Table {
      */
     public int countCards() {
         int cards = 0;
-        for (Integer card : slotToCard)
-            if (card != null)
+        for (int card : slotToCard)
+            if (card != EMPTY)
                 ++cards;
         return cards;
     }
 
+    /**
+     * @return - the ids of the cards currently on the table (in ascending order).
+     */
+    public List<Integer> cards() {
+        return cardsOnTable.stream().boxed().collect(Collectors.toList());
+    }
+
+    /**
+     * @param card - the card id.
+     * @return - true iff the card is currently placed on the table.
+     */
+    public boolean isOnTable(int card) {
+        return cardsOnTable.get(card);
+    }
+
+    /**
+     * @param slot - the slot to check.
+     * @return - true iff there is a card in the slot.
+     */
+    public boolean hasCard(int slot) {
+        return slotToCard[slot] != EMPTY;
+    }
+
+    /**
+     * Updates the mappings of a card placed in a slot (no delay and no ui update).
+     * A card already in the slot is taken off the table, and the card leaves its previous slot (if any).
+     * @param card - the card id to place in the slot.
+     * @param slot - the slot in which the card is placed.
+     */
+    void putCard(int card, int slot) {
+        clearSlot(slot);
+        if (cardToSlot[card] != EMPTY)
+            slotToCard[cardToSlot[card]] = EMPTY;
+        cardToSlot[card] = slot;
+        slotToCard[slot] = card;
+        cardsOnTable.set(card);
+        changed();
+    }
+
+    /**
+     * Clears the mappings of the card in a slot (no delay and no ui update).
+     * @param slot - the slot to clear.
+     * @return - the card that was in the slot (EMPTY if none).
+     */
+    int clearSlot(int slot) {
+        int card = slotToCard[slot];
+        if (card != EMPTY) {
+            cardToSlot[card] = EMPTY;
+            cardsOnTable.clear(card);
+            changed();
+        }
+        slotToCard[slot] = EMPTY;
+        return card;
+    }
+
+    private void changed() {
+        changedNanos = System.nanoTime();
+        for (Runnable listener : changeListeners)
+            listener.run();
+    }
+
+    /**
+     * Adds a listener that is called (on the thread that changed the table) whenever the cards on the table change.
+     * @param listener - the listener (it should return quickly).
+     */
+    synchronized void onChange(Runnable listener) {
+        Runnable[] listeners = Arrays.copyOf(changeListeners, changeListeners.length + 1);
+        listeners[listeners.length - 1] = listener;
+        changeListeners = listeners;
+    }
+
+    /**
+     * @return - the time (System.nanoTime()) the cards on the table last changed.
+     */
+    public long changedNanos() {
+        return changedNanos;
+    }
+
     /**
      * Places a card on the table in a grid slot.
      * @param card - the card id to place in the slot.
@@ -99,12 +221,8 @@ public class Table {
      * @post - the card placed is on the table, in the assigned slot.
      */
     public void placeCard(int card, int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
-
-        cardToSlot[card] = slot;
-        slotToCard[slot] = card;
+        // the table delay is an animation of the user interface (see CardAnimator), the card is placed right away
+        putCard(card, slot);
 
         // update UI
         env.ui.placeCard(card, slot);
@@ -116,25 +234,28 @@ public class Table {
      * @param slot - the slot from which to remove the card.
      */
     public void removeCard(int slot) {
-        try {
-            Thread.sleep(env.config.tableDelayMillis);
-        } catch (InterruptedException ignored) {}
-
-        cardToSlot[slotToCard[slot]] = null;
-        slotToCard[slot] = null;
+        clearSlot(slot);
         env.ui.removeCard(slot);
     }
 
     /**
-     * Places a player token on a grid slot.
+     * Places a player token on a grid slot (if the player has less than featureSize tokens and none on the slot).
      * @param player - the player the token belongs to.
      * @param slot   - the slot on which to place the token.
      */
-    public void placeToken(int player, int slot) {
-        if(setsOfTokensOfThePlayers.get(player).size()<3)
+    public synchronized void placeToken(int player, int slot) {
+        int count = tokenCount[player];
+        if(count < featureSize && indexOfToken(player, slot) < 0)
         {
-            setsOfTokensOfThePlayers.get(player).add(slot);
+            tokens[player * featureSize + count] = slot;
+            tokenCount[player] = count + 1;
+            int onSlot = slotTokenCount[slot];
+            if(onSlot == slotPlayers[slot].length)
+                slotPlayers[slot] = Arrays.copyOf(slotPlayers[slot], Math.max(4, onSlot * 2));
+            slotPlayers[slot][onSlot] = player;
+            slotTokenCount[slot] = onSlot + 1;
             env.ui.placeToken(player, slot);
+            tokenEvent(player, slot, true);
         }
     }
 
@@ -144,30 +265,131 @@ public class Table {
      * @param slot   - the slot from which to remove the token.
      * @return       - true iff a token was successfully removed.
      */
-    public boolean removeToken(int player, int slot) {    
-        int indexOfSlot = setsOfTokensOfThePlayers.get(player).indexOf(slot);
-        setsOfTokensOfThePlayers.get(player).remove(indexOfSlot);
+    public synchronized boolean removeToken(int player, int slot) {
+        int index = indexOfToken(player, slot);
+        if(index < 0)
+            return false;
+        removeFromPlayer(player, index);
+        int[] players = slotPlayers[slot];
+        int onSlot = slotTokenCount[slot];
+        for(int i = 0; i < onSlot; i++)
+        {
+            if(players[i] == player)
+            {
+                players[i] = players[onSlot - 1];
+                break;
+            }
+        }
+        slotTokenCount[slot] = onSlot - 1;
         env.ui.removeToken(player, slot);
+        tokenEvent(player, slot, false);
         return true;
     }
 
-    public void removeAllTokens() {
-        for(int i = 0; i<setsOfTokensOfThePlayers.size();i++)
+    /**
+     * Removes the tokens of all the players from a grid slot (the cost depends on the tokens on the slot only).
+     * @param slot - the slot from which to remove the tokens.
+     */
+    public synchronized void removeTokens(int slot) {
+        int onSlot = slotTokenCount[slot];
+        if(onSlot == 0)
+            return;
+        for(int i = 0; i < onSlot; i++)
         {
-            int innerSize = setsOfTokensOfThePlayers.get(i).size();
-            for(int j = 0;j<innerSize;j++)
-            {
-                if(setsOfTokensOfThePlayers.get(i).size()>0)
-                {
-                    int s1 = setsOfTokensOfThePlayers.get(i).get(0);
-                    removeToken(i, s1);
-                }
-            }
+            int player = slotPlayers[slot][i];
+            removeFromPlayer(player, indexOfToken(player, slot));
+            tokenEvent(player, slot, false);
+        }
+        slotTokenCount[slot] = 0;
+        env.ui.removeTokens(slot);
+    }
+
+    /**
+     * Removes the tokens of all the players from the table.
+     */
+    public synchronized void removeAllTokens() {
+        for(int slot = 0; slot < slotTokenCount.length; slot++)
+        {
+            for(int i = 0; i < slotTokenCount[slot]; i++)
+                tokenEvent(slotPlayers[slot][i], slot, false);
+            slotTokenCount[slot] = 0;
+        }
+        Arrays.fill(tokenCount, 0);
+        env.ui.removeTokens();
+    }
+
+    /**
+     * @param player - the player.
+     * @return - the number of tokens the player has on the table.
+     */
+    public synchronized int tokenCount(int player) {
+        return tokenCount[player];
+    }
+
+    /**
+     * @param player - the player.
+     * @param slot   - the slot.
+     * @return - true iff the player has a token on the slot.
+     */
+    public synchronized boolean hasToken(int player, int slot) {
+        return indexOfToken(player, slot) >= 0;
+    }
+
+    /**
+     * Copies the slots of the tokens of a player (in the order they were placed).
+     * @param player - the player.
+     * @param slots  - the array to fill (at least featureSize long).
+     * @return - the number of tokens copied.
+     */
+    public synchronized int tokens(int player, int[] slots) {
+        int count = tokenCount[player];
+        System.arraycopy(tokens, player * featureSize, slots, 0, count);
+        return count;
+    }
+
+    /**
+     * Copies the tokens of all the players at once (a consistent copy, see GameSnapshot).
+     * @param tokens - the array to fill with the slots of the tokens (players * featureSize long).
+     * @param counts - the array to fill with the number of tokens of each player (players long).
+     */
+    public synchronized void tokens(int[] tokens, int[] counts) {
+        System.arraycopy(this.tokens, 0, tokens, 0, this.tokens.length);
+        System.arraycopy(tokenCount, 0, counts, 0, tokenCount.length);
+    }
+
+    /**
+     * @param slot - the slot.
+     * @return - the number of tokens (of all players) on the slot.
+     */
+    public synchronized int tokensOnSlot(int slot) {
+        return slotTokenCount[slot];
+    }
+
+    private int indexOfToken(int player, int slot) {
+        int base = player * featureSize;
+        for(int i = 0; i < tokenCount[player]; i++)
+        {
+            if(tokens[base + i] == slot)
+                return i;
         }
+        return -1;
     }
 
-    public Vector<Vector<Integer>> getSetsOfTokensOfThePlayers()
-    {
-        return this.setsOfTokensOfThePlayers;
+    private void removeFromPlayer(int player, int index) {
+        int base = player * featureSize;
+        int count = tokenCount[player] - 1;
+        System.arraycopy(tokens, base + index + 1, tokens, base + index, count - index);
+        tokenCount[player] = count;
+    }
+
+    private static void tokenEvent(int player, int slot, boolean placed) {
+        if (!GameEvents.TOKEN.isEnabled()) return;
+        GameEvents.Token event = new GameEvents.Token();
+        if (event.shouldCommit()) {
+            event.player = player;
+            event.slot = slot;
+            event.placed = placed;
+            event.commit();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,122 @@
+package bguspl.set.ex;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+/**
+ * The table-mutation stage of the pipelined dealer: a thread that applies the changes of the table, the deck and the
+ * user interface (removing collected sets, dealing, reshuffling) in the order they were submitted, while the dealer
+ * thread goes on checking claims.
+ * <p>
+ * The stages are connected by a bounded queue: when the table stage falls behind, the dealer waits for room (so the
+ * changes cannot pile up). After each change the stage publishes a view of the slots, which is what the dealer checks
+ * the claims against.
+ */
+class TableStage {
+
+    /**
+     * The number of changes that can wait for the table stage before the dealer has to wait.
+     */
+    static final int CAPACITY = 8;
+
+    /**
+     * The slots of the table after the first applied changes.
+     */
+    static final class View {
+        /**
+         * The number of changes applied.
+         */
+        final long applied;
+
+        /**
+         * The card in each slot (Table.EMPTY for an empty slot).
+         */
+        final int[] slotToCard;
+
+        View(long applied, int[] slotToCard) {
+            this.applied = applied;
+            this.slotToCard = slotToCard;
+        }
+    }
+
+    private static final Runnable STOP = () -> {};
+
+    private final Logger logger;
+    private final Table table;
+    private final BlockingQueue<Runnable> queue = new ArrayBlockingQueue<>(CAPACITY);
+    private final Thread thread;
+
+    /**
+     * The number of changes submitted (written by the submitting thread only).
+     */
+    private long submitted;
+
+    private volatile View view;
+
+    TableStage(Logger logger, Table table, String name) {
+        this.logger = logger;
+        this.table = table;
+        this.view = new View(0, table.slotToCard.clone());
+        this.thread = new Thread(this::run, name);
+        thread.start();
+    }
+
+    private void run() {
+        logger.info("Thread " + Thread.currentThread().getName() + " starting.");
+        long applied = 0;
+        try {
+            for (Runnable change = queue.take(); change != STOP; change = queue.take()) {
+                try {
+                    change.run();
+                } catch (RuntimeException e) {
+                    logger.severe("table change failed: " + e);
+                }
+                view = new View(++applied, table.slotToCard.clone());
+            }
+        } catch (InterruptedException ignored) {
+        }
+        logger.info("Thread " + Thread.currentThread().getName() + " terminated.");
+    }
+
+    /**
+     * Submits a change, waiting while the queue is full.
+     *
+     * @return - the number of the change (the view shows it once view().applied reaches this number).
+     */
+    long submit(Runnable change) throws InterruptedException {
+        queue.put(change);
+        return ++submitted;
+    }
+
+    /**
+     * Submits a change and waits until it (and every change before it) was applied.
+     */
+    void submitAndWait(Runnable change) throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        submit(() -> {
+            try {
+                change.run();
+            } finally {
+                done.countDown();
+            }
+        });
+        done.await();
+    }
+
+    /**
+     * @return - the slots of the table after the changes applied so far.
+     */
+    View view() {
+        return view;
+    }
+
+    /**
+     * Applies the changes submitted so far and stops the thread of the stage.
+     */
+    void close() throws InterruptedException {
+        queue.put(STOP);
+        thread.join();
+    }
+}
@@ -0,0 +1,114 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.logging.ErrorManager;
+import java.util.logging.Formatter;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AsyncRollingHandlerTest {
+
+    @TempDir
+    Path directory;
+
+    AsyncRollingHandler handler;
+
+    @AfterEach
+    void tearDown() {
+        if (handler != null) handler.close();
+    }
+
+    private static LogRecord record(Level level, int i) {
+        return new LogRecord(level, String.format("record %04d", i));
+    }
+
+    private static List<String> gunzip(Path file) throws IOException {
+        try (BufferedReader in = new BufferedReader(new InputStreamReader(
+                new GZIPInputStream(Files.newInputStream(file)), StandardCharsets.UTF_8))) {
+            return in.lines().collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void writesTheRecordsInOrder() throws IOException {
+        handler = new AsyncRollingHandler(directory, "game", 1 << 20, 2, 1000);
+        for (int i = 0; i < 100; i++) handler.publish(record(Level.INFO, i));
+        handler.flush();
+
+        List<String> lines = Files.readAllLines(handler.file());
+        assertEquals(100, lines.size());
+        for (int i = 0; i < 100; i++) assertEquals(String.format("record %04d", i), lines.get(i));
+    }
+
+    @Test
+    void rollsToGzippedFilesAndKeepsTheNewest() throws IOException {
+        // 12 characters per line, 10 lines per file
+        handler = new AsyncRollingHandler(directory, "game", 120, 2, 1000);
+        for (int i = 0; i < 45; i++) handler.publish(record(Level.INFO, i));
+        handler.close();
+
+        assertEquals(5, Files.readAllLines(handler.file()).size());
+        List<String> newest = gunzip(handler.rolledFile(1));
+        assertEquals("record 0030", newest.get(0));
+        assertEquals("record 0039", newest.get(9));
+        assertEquals("record 0020", gunzip(handler.rolledFile(2)).get(0));
+        assertFalse(Files.exists(handler.rolledFile(3)));
+    }
+
+    @Test
+    void keepsWritingWhenTheRollFails() throws IOException {
+        // the temporary file of the gzip cannot be created
+        Files.createDirectories(directory.resolve("game.1.log.gz.tmp"));
+        handler = new AsyncRollingHandler(directory, "game", 120, 2, 1000);
+        handler.setErrorManager(new ErrorManager() {
+            @Override
+            public synchronized void error(String msg, Exception ex, int code) {
+            }
+        });
+        for (int i = 0; i < 25; i++) handler.publish(record(Level.INFO, i));
+        handler.close();
+
+        List<String> lines = Files.readAllLines(handler.file());
+        assertEquals(25, lines.size());
+        for (int i = 0; i < 25; i++) assertEquals(String.format("record %04d", i), lines.get(i));
+        assertFalse(Files.exists(handler.rolledFile(1)));
+    }
+
+    @Test
+    void dropsTheLowLevelRecordsWhenTheWriterIsBehind() throws IOException, InterruptedException {
+        handler = new AsyncRollingHandler(directory, "game", 1 << 20, 2, 10);
+        // keep the writer busy so the records pile up
+        handler.setFormatter(new Formatter() {
+            @Override
+            public String format(LogRecord record) {
+                try {
+                    Thread.sleep(2);
+                } catch (InterruptedException ignored) {
+                }
+                return record.getMessage() + System.lineSeparator();
+            }
+        });
+        for (int i = 0; i < 200; i++) handler.publish(record(i % 20 == 0 ? Level.SEVERE : Level.FINE, i));
+        handler.close();
+
+        assertTrue(handler.dropped() > 0);
+        List<String> lines = Files.readAllLines(handler.file());
+        for (int i = 0; i < 200; i += 20) assertTrue(lines.contains(String.format("record %04d", i)));
+        assertEquals(200 - handler.dropped() + 1, lines.size());
+        assertTrue(lines.get(lines.size() - 1).startsWith("log: dropped " + handler.dropped()));
+    }
+}
@@ -0,0 +1,100 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class CachingUtilTest {
+
+    @Mock
+    private Util util;
+    private CachingUtil cache;
+
+    private final int[] set1 = {0, 1, 2};
+    private final int[] set2 = {3, 4, 5};
+
+    @BeforeEach
+    void setUp() {
+        cache = new CachingUtil(util, 2);
+    }
+
+    @Test
+    void sameCardsAreSearchedOnce() {
+        when(util.findSets(any(), eq(1))).thenReturn(Collections.singletonList(set1));
+
+        assertSame(set1, cache.findSets(Arrays.asList(0, 1, 2, 7), 1).get(0));
+        // the order of the cards does not matter
+        assertSame(set1, cache.findSets(Arrays.asList(7, 2, 1, 0), 1).get(0));
+
+        verify(util, times(1)).findSets(any(), anyInt());
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    void allTheSetsServeAnyCount() {
+        List<Integer> cards = Arrays.asList(0, 1, 2, 3, 4, 5);
+        when(util.findSets(cards, Integer.MAX_VALUE)).thenReturn(Arrays.asList(set1, set2));
+
+        assertEquals(2, cache.findSets(cards, Integer.MAX_VALUE).size());
+        assertEquals(Collections.singletonList(set1), cache.findSets(cards, 1));
+        assertEquals(2, cache.findSets(cards, 5).size());
+        assertEquals(2, cache.hits());
+    }
+
+    @Test
+    void fewerSetsThanRequestedAreSearchedAgain() {
+        List<Integer> cards = Arrays.asList(0, 1, 2, 3, 4, 5);
+        when(util.findSets(cards, 1)).thenReturn(Collections.singletonList(set1));
+        when(util.findSets(cards, 2)).thenReturn(Arrays.asList(set1, set2));
+
+        assertEquals(1, cache.findSets(cards, 1).size());
+        assertEquals(2, cache.findSets(cards, 2).size());
+        // the bigger answer replaced the smaller one
+        assertEquals(1, cache.findSets(cards, 1).size());
+        assertEquals(2, cache.misses());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    void leastRecentlyUsedIsEvicted() {
+        when(util.findSets(any(), eq(1))).thenReturn(Collections.emptyList());
+        List<Integer> a = Collections.singletonList(1);
+        List<Integer> b = Collections.singletonList(2);
+        List<Integer> c = Collections.singletonList(3);
+
+        cache.findSets(a, 1);
+        cache.findSets(b, 1);
+        cache.findSets(a, 1); // a is used after b
+        cache.findSets(c, 1); // evicts b
+        assertEquals(2, cache.size());
+        cache.findSets(a, 1);
+        cache.findSets(b, 1);
+
+        verify(util, times(2)).findSets(b, 1);
+        verify(util, times(1)).findSets(a, 1);
+    }
+
+    @Test
+    void emptyCards() {
+        when(util.findSets(Collections.emptyList(), 1)).thenReturn(Collections.emptyList());
+        assertTrue(cache.findSets(Collections.emptyList(), 1).isEmpty());
+        assertTrue(cache.findSets(Collections.emptyList(), 1).isEmpty());
+        assertEquals(1, cache.hits());
+    }
+}
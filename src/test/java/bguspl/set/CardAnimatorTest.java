@@ -0,0 +1,85 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CardAnimatorTest {
+
+    CardAnimator animator;
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0.05");
+        animator = new CardAnimator(new Config(logger, properties), ui);
+    }
+
+    @AfterEach
+    void tearDown() {
+        animator.dispose();
+    }
+
+    @Test
+    void cardsAreAnimatedWithoutBlocking() {
+        long start = System.nanoTime();
+        for (int slot = 0; slot < 3; ++slot)
+            animator.placeCard(slot + 10, slot);
+        animator.placeToken(0, 2);
+        animator.setScore(0, 1);
+        // the caller does not wait for the animation
+        assertTrue(System.nanoTime() - start < 50_000_000L);
+
+        // other updates are not delayed
+        verify(ui).setScore(0, 1);
+        verify(ui, never()).placeCard(12, 2);
+
+        // the cards are drawn in order, and the token after its card
+        verify(ui, timeout(1000)).placeToken(0, 2);
+        assertTrue(System.nanoTime() - start >= 150_000_000L);
+        InOrder inOrder = inOrder(ui);
+        inOrder.verify(ui).placeCard(10, 0);
+        inOrder.verify(ui).placeCard(11, 1);
+        inOrder.verify(ui).placeCard(12, 2);
+        inOrder.verify(ui).placeToken(0, 2);
+    }
+
+    @Test
+    void tokensAreNeverDrawnBeforeTheirCards() {
+        Properties properties = new Properties();
+        properties.put("TableDelaySeconds", "0.001");
+        CardAnimator fast = new CardAnimator(new Config(logger, properties), ui);
+        try {
+            // a token scheduled right after its card has the deadline of the card
+            for (int slot = 0; slot < 12; ++slot) {
+                fast.placeCard(slot + 10, slot);
+                fast.placeToken(0, slot);
+                fast.removeTokens(slot);
+            }
+            verify(ui, timeout(1000)).removeTokens(11);
+            InOrder inOrder = inOrder(ui);
+            for (int slot = 0; slot < 12; ++slot) {
+                inOrder.verify(ui).placeCard(slot + 10, slot);
+                inOrder.verify(ui).placeToken(0, slot);
+                inOrder.verify(ui).removeTokens(slot);
+            }
+        } finally {
+            fast.dispose();
+        }
+    }
+}
@@ -0,0 +1,76 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class DeferredUserInterfaceTest {
+
+    DeferredUserInterface deferred;
+    @Mock
+    UserInterface ui;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        Logger logger = Logger.getLogger("DeferredUserInterfaceTest");
+        logger.setUseParentHandlers(false);
+        deferred = new DeferredUserInterface(new Config(logger, properties));
+    }
+
+    @Test
+    void attachReplaysTheLatestState() {
+        deferred.placeCard(5, 0);
+        deferred.placeCard(6, 1);
+        deferred.removeCard(1);
+        deferred.placeCard(7, 2);
+        deferred.placeToken(1, 2);
+        deferred.placeToken(0, 0);
+        deferred.removeToken(0, 0);
+        deferred.setScore(1, 4);
+        deferred.setCountdown(30_000, false);
+        deferred.setCountdown(29_000, false);
+        assertFalse(deferred.attached());
+
+        deferred.attach(ui);
+        assertTrue(deferred.attached());
+        InOrder inOrder = inOrder(ui);
+        inOrder.verify(ui).placeCard(5, 0);
+        inOrder.verify(ui).placeCard(7, 2);
+        inOrder.verify(ui).placeToken(1, 2);
+        verify(ui).setScore(1, 4);
+        verify(ui).setCountdown(29_000, false);
+        verify(ui, never()).placeCard(6, 1);
+        verify(ui, never()).placeToken(0, 0);
+        verify(ui, never()).setFreeze(anyInt(), anyLong());
+        verifyNoMoreInteractions(ui);
+
+        // from now on the calls are forwarded
+        deferred.removeTokens(2);
+        verify(ui).removeTokens(2);
+    }
+
+    @Test
+    void aGameThatEndedBeforeTheAttachIsShownAndDisposed() {
+        deferred.announceWinner(new int[]{0, 1});
+        deferred.dispose();
+
+        deferred.attach(ui);
+        verify(ui).announceWinner(new int[]{0, 1});
+        verify(ui).dispose();
+        assertThrows(IllegalStateException.class, () -> deferred.attach(ui));
+    }
+}
@@ -0,0 +1,55 @@
+package bguspl.set;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@ExtendWith(MockitoExtension.class)
+class GameEventsTest {
+
+    @Mock
+    private Logger logger;
+
+    @Test
+    void findSetsIsRecorded() throws IOException {
+        Properties properties = new Properties();
+        properties.put("RandomSeed", "1");
+        Config config = new Config(logger, properties);
+        Util util = new UtilImpl(config);
+
+        Path file = Files.createTempFile("set", ".jfr");
+        try (Recording recording = new Recording()) {
+            recording.enable("bguspl.set.FindSets").withThreshold(Duration.ZERO);
+            recording.start();
+            util.findSets(Arrays.asList(0, 1, 2, 3, 4, 5, 6, 7, 8), 2);
+            recording.stop();
+            recording.dump(file);
+
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+                    .filter(e -> e.getEventType().getName().equals("bguspl.set.FindSets"))
+                    .collect(Collectors.toList());
+            assertEquals(1, events.size());
+            assertEquals(9, events.get(0).getInt("cards"));
+            assertEquals(2, events.get(0).getInt("requested"));
+            assertEquals(2, events.get(0).getInt("found"));
+        } finally {
+            Files.delete(file);
+        }
+    }
+}
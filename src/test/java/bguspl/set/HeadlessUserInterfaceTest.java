@@ -0,0 +1,70 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeadlessUserInterfaceTest {
+
+    HeadlessUserInterface ui;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        Logger logger = Logger.getLogger("HeadlessUserInterfaceTest");
+        logger.setUseParentHandlers(false);
+        ui = new HeadlessUserInterface(new Config(logger, properties));
+    }
+
+    @Test
+    void keepsTheLatestCardsAndTokens() {
+        assertEquals(-1, ui.card(3));
+        ui.placeCard(17, 3);
+        ui.placeToken(0, 3);
+        ui.placeToken(1, 3);
+        ui.placeToken(1, 4);
+        assertEquals(17, ui.card(3));
+        assertEquals(2, ui.tokens(3));
+
+        ui.removeToken(0, 3);
+        assertEquals(1, ui.tokens(3));
+        ui.removeTokens(3);
+        assertEquals(0, ui.tokens(3));
+        assertEquals(1, ui.tokens(4));
+        ui.removeTokens();
+        assertEquals(0, ui.tokens(4));
+        ui.removeCard(3);
+        assertEquals(-1, ui.card(3));
+
+        assertEquals(1, ui.calls(HeadlessUserInterface.Call.PLACE_CARD));
+        assertEquals(3, ui.calls(HeadlessUserInterface.Call.PLACE_TOKEN));
+        assertEquals(2, ui.calls(HeadlessUserInterface.Call.REMOVE_TOKENS));
+    }
+
+    @Test
+    void keepsTheLatestTimersAndScores() {
+        ui.setCountdown(5000, false);
+        ui.setCountdown(4999, true);
+        ui.setElapsed(1200);
+        ui.setScore(1, 3);
+        ui.setFreeze(0, 900);
+        assertNull(ui.winners());
+        ui.announceWinner(new int[]{1});
+
+        assertEquals(4999, ui.countdown());
+        assertTrue(ui.warn());
+        assertEquals(1200, ui.elapsed());
+        assertEquals(3, ui.score(1));
+        assertEquals(0, ui.score(0));
+        assertEquals(900, ui.freeze(0));
+        assertArrayEquals(new int[]{1}, ui.winners());
+        assertEquals(2, ui.calls(HeadlessUserInterface.Call.SET_COUNTDOWN));
+        assertEquals("calls: set_countdown=2 set_elapsed=1 set_freeze=1 set_score=1 announce_winner=1", ui.toString());
+    }
+}
@@ -0,0 +1,53 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HistogramTest {
+
+    @Test
+    void smallValuesAreExact() {
+        Histogram histogram = new Histogram(3, 1000);
+        for (int value = 1; value <= 7; ++value)
+            histogram.record(value);
+        assertEquals(7, histogram.count());
+        assertEquals(4, histogram.percentile(50));
+        assertEquals(7, histogram.percentile(100));
+        assertEquals(1, histogram.percentile(0));
+        assertEquals(4.0, histogram.mean());
+    }
+
+    @Test
+    void percentilesAreWithinThePrecision() {
+        Histogram histogram = new Histogram(3, 1L << 40);
+        for (long value = 1; value <= 100_000; ++value)
+            histogram.record(value);
+        for (double percentile : new double[]{10, 50, 90, 99, 99.9}) {
+            long exact = (long) (percentile * 1000);
+            long value = histogram.percentile(percentile);
+            assertTrue(value >= exact && value <= exact * 1.125, percentile + ": " + value);
+        }
+        assertEquals(100_000, histogram.max());
+        assertEquals(100_000, histogram.percentile(100));
+    }
+
+    @Test
+    void valuesOutOfRangeAreClamped() {
+        Histogram histogram = new Histogram(2, 100);
+        histogram.record(-5);
+        histogram.record(1_000_000);
+        assertEquals(2, histogram.count());
+        assertEquals(0, histogram.percentile(50));
+        assertEquals(100, histogram.max());
+        assertEquals(100, histogram.percentile(100));
+    }
+
+    @Test
+    void emptyHistogram() {
+        Histogram histogram = new Histogram(3, 1000);
+        assertEquals(0, histogram.count());
+        assertEquals(0, histogram.percentile(99));
+        assertEquals(0.0, histogram.mean());
+    }
+}
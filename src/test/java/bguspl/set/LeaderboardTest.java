@@ -0,0 +1,113 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LeaderboardTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void recordAndGet() throws IOException {
+        try (Leaderboard leaderboard = new Leaderboard(dir.resolve("leaderboard.bin"))) {
+            assertNull(leaderboard.get("alice"));
+            leaderboard.record("alice", 5, true, 30_000);
+            leaderboard.record("alice", 3, true, 20_000);
+            leaderboard.record("alice", 9, false, 10_000);
+
+            Leaderboard.Entry alice = leaderboard.get("alice");
+            assertEquals(17, alice.score);
+            assertEquals(3, alice.games);
+            assertEquals(20_000, alice.bestMillis);
+            assertEquals(1, leaderboard.size());
+        }
+    }
+
+    @Test
+    void persistsAcrossRuns() throws IOException {
+        Path file = dir.resolve("leaderboard.bin");
+        try (Leaderboard leaderboard = new Leaderboard(file)) {
+            leaderboard.record("alice", 5, false, 1000);
+            leaderboard.record("bob", 7, true, 1000);
+        }
+        try (Leaderboard leaderboard = new Leaderboard(file)) {
+            assertEquals(2, leaderboard.size());
+            assertEquals(5, leaderboard.get("alice").score);
+            assertEquals(Leaderboard.NO_TIME, leaderboard.get("alice").bestMillis);
+            assertEquals("bob", leaderboard.top(1).get(0).name);
+        }
+    }
+
+    @Test
+    void topMatchesSortedScoresWhileGrowing() throws IOException {
+        int players = 3 * Leaderboard.MIN_CAPACITY;
+        long[] scores = new long[players];
+        Random random = new Random(1);
+        // more players than the initial capacity make the file grow twice
+        try (Leaderboard leaderboard = new Leaderboard(dir.resolve("leaderboard.bin"))) {
+            for (int i = 0; i < 20 * players; ++i) {
+                int player = random.nextInt(players);
+                int score = random.nextInt(10);
+                scores[player] += score;
+                leaderboard.record("player " + player, score, false, 0);
+            }
+
+            List<Leaderboard.Entry> top = leaderboard.top(10);
+            long[] sorted = scores.clone();
+            Arrays.sort(sorted);
+            assertEquals(10, top.size());
+            for (int i = 0; i < top.size(); ++i) {
+                assertEquals(sorted[players - 1 - i], top.get(i).score);
+                int player = Integer.parseInt(top.get(i).name.substring("player ".length()));
+                assertEquals(scores[player], top.get(i).score);
+            }
+        }
+    }
+
+    @Test
+    void longNamesAreRejected() throws IOException {
+        try (Leaderboard leaderboard = new Leaderboard(dir.resolve("leaderboard.bin"))) {
+            char[] name = new char[Leaderboard.MAX_NAME_BYTES + 1];
+            Arrays.fill(name, 'x');
+            assertThrows(IllegalArgumentException.class, () -> leaderboard.record(new String(name), 1, false, 0));
+        }
+    }
+
+    @Test
+    void corruptFilesAreRejected() throws IOException {
+        Path file = dir.resolve("leaderboard.bin");
+        try (Leaderboard leaderboard = new Leaderboard(file)) {
+            leaderboard.record("alice", 5, false, 1000);
+        }
+        long length = Files.size(file);
+
+        // a truncated file is not grown back with records of zeros
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(length - 1);
+        }
+        assertThrows(IOException.class, () -> new Leaderboard(file));
+        assertEquals(length - 1, Files.size(file));
+
+        // neither is a file with a capacity that is not a power of two, or too large
+        for (int capacity : new int[]{Leaderboard.MIN_CAPACITY + 1, Integer.MAX_VALUE}) {
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.write((ByteBuffer) ByteBuffer.allocate(Integer.BYTES).putInt(capacity).flip(), 8);
+            }
+            assertThrows(IOException.class, () -> new Leaderboard(file));
+            assertEquals(length - 1, Files.size(file));
+        }
+    }
+}
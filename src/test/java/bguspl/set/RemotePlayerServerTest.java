@@ -0,0 +1,176 @@
+package bguspl.set;
+
+import bguspl.set.ex.Player;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+@ExtendWith(MockitoExtension.class)
+class RemotePlayerServerTest {
+
+    RemotePlayerServer server;
+    Thread serverThread;
+    SocketChannel client;
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Player player;
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.put("ServerPort", "0");
+        properties.put("HumanPlayers", "1");
+        properties.put("ComputerPlayers", "0");
+        Config config = new Config(logger, properties);
+        server = new RemotePlayerServer(logger, config, new Player[]{player}, ui);
+        serverThread = new Thread(server, "remote-server");
+        serverThread.start();
+
+        client = SocketChannel.open(new InetSocketAddress("localhost", server.port()));
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        client.close();
+        server.terminate();
+        serverThread.join();
+    }
+
+    private void send(byte op, int a) throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(RemotePlayerServer.FRAME_SIZE);
+        frame.put(op).putInt(a).putLong(0);
+        frame.flip();
+        while (frame.hasRemaining()) client.write(frame);
+    }
+
+    private ByteBuffer receive() throws IOException {
+        ByteBuffer frame = ByteBuffer.allocate(RemotePlayerServer.FRAME_SIZE);
+        while (frame.hasRemaining())
+            if (client.read(frame) < 0) throw new IOException("closed");
+        frame.flip();
+        return frame;
+    }
+
+    /**
+     * Reads frames until a frame with the given opcode arrives.
+     */
+    private ByteBuffer receive(byte op) throws IOException {
+        ByteBuffer frame;
+        do {
+            frame = receive();
+        } while (frame.get(0) != op);
+        return frame;
+    }
+
+    @Test
+    void joinReceivesTableAndUpdates() throws IOException {
+        // a card that is on the table before the client joins
+        server.placeCard(7, 3);
+
+        send(RemotePlayerServer.OP_JOIN, 0);
+        assertEquals(RemotePlayerServer.OP_JOINED, receive().get());
+
+        // the snapshot contains the card placed before joining
+        ByteBuffer card = receive(RemotePlayerServer.OP_PLACE_CARD);
+        assertEquals(3, card.getInt(1));
+        assertEquals(7, card.getLong(5));
+
+        // updates after joining are pushed to the client
+        server.setScore(0, 4);
+        ByteBuffer score;
+        do {
+            score = receive(RemotePlayerServer.OP_SCORE);
+        } while (score.getLong(5) != 4);
+        assertEquals(0, score.getInt(1));
+
+        // the wrapped user interface is updated as well
+        verify(ui).placeCard(7, 3);
+        verify(ui).setScore(0, 4);
+    }
+
+    @Test
+    void updatesThatDoNotFitAreReplacedByTheState() throws IOException {
+        send(RemotePlayerServer.OP_JOIN, 0);
+        assertEquals(RemotePlayerServer.OP_JOINED, receive().get());
+
+        // the selector thread waits for the lock while far more updates than its buffers hold are queued
+        synchronized (server) {
+            for (int i = 0; i < 20000; ++i) server.setElapsed(i);
+            server.placeCard(7, 3);
+            server.setScore(0, 4);
+        }
+
+        // the client stays connected and gets the state in place of the dropped updates
+        assertEquals(-1, receive(RemotePlayerServer.OP_REMOVE_TOKENS).getInt(1));
+        ByteBuffer card = receive(RemotePlayerServer.OP_PLACE_CARD);
+        assertEquals(3, card.getInt(1));
+        assertEquals(7, card.getLong(5));
+        assertEquals(4, receive(RemotePlayerServer.OP_SCORE).getLong(5));
+        server.setScore(0, 5);
+        assertEquals(5, receive(RemotePlayerServer.OP_SCORE).getLong(5));
+    }
+
+    @Test
+    void snapshotOfManyPlayersFitsTheClientBuffer() throws Exception {
+        Properties properties = new Properties();
+        properties.put("ServerPort", "0");
+        properties.put("HumanPlayers", "1");
+        properties.put("ComputerPlayers", "9999");
+        Config config = new Config(logger, properties);
+        RemotePlayerServer crowded = new RemotePlayerServer(logger, config, new Player[config.players], ui);
+        Thread crowdedThread = new Thread(crowded, "remote-server-crowded");
+        crowdedThread.start();
+        client.close();
+        client = SocketChannel.open(new InetSocketAddress("localhost", crowded.port()));
+        try {
+            // far more than 64 KB of scores
+            for (int player = 0; player < config.players; ++player)
+                crowded.setScore(player, player + 1);
+
+            send(RemotePlayerServer.OP_JOIN, 0);
+            assertEquals(RemotePlayerServer.OP_JOINED, receive().get());
+            ByteBuffer score;
+            do {
+                score = receive(RemotePlayerServer.OP_SCORE);
+            } while (score.getInt(1) < config.players - 1);
+            assertEquals(config.players, score.getLong(5));
+        } finally {
+            crowded.terminate();
+            crowdedThread.join();
+        }
+    }
+
+    @Test
+    void keyIsDispatchedToThePlayer() throws IOException {
+        send(RemotePlayerServer.OP_JOIN, 0);
+        assertEquals(RemotePlayerServer.OP_JOINED, receive().get());
+
+        send(RemotePlayerServer.OP_KEY, 5);
+        verify(player, timeout(1000)).keyPressed(5);
+    }
+
+    @Test
+    void joinAsUnknownPlayerIsRejected() throws IOException {
+        send(RemotePlayerServer.OP_JOIN, 1);
+        ByteBuffer frame = receive();
+        assertEquals(RemotePlayerServer.OP_REJECTED, frame.get());
+        assertEquals(1, frame.getInt());
+    }
+}
@@ -0,0 +1,169 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomCoordinatorTest {
+
+    RoomCoordinator coordinator;
+    Thread coordinatorThread;
+    List<Thread> workerThreads = new ArrayList<>();
+    Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("RoomCoordinatorTest");
+        logger.setUseParentHandlers(false);
+        coordinator = new RoomCoordinator(logger, 0);
+        coordinatorThread = new Thread(coordinator, "room-coordinator");
+        coordinatorThread.start();
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        coordinator.terminate();
+        coordinatorThread.join();
+        // the workers stop their rooms when the coordinator is gone
+        for (Thread thread : workerThreads) thread.join();
+    }
+
+    /**
+     * Rooms with one human player and no computer players: they play until they are stopped.
+     */
+    private static Properties roomProperties() {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "1");
+        properties.put("ComputerPlayers", "0");
+        properties.put("FeatureCount", "3");
+        properties.put("TableDelaySeconds", "0");
+        return properties;
+    }
+
+    private RoomWorker startWorker() {
+        RoomWorker worker = new RoomWorker(logger, roomProperties(), coordinator.port());
+        Thread thread = new Thread(worker, "room-worker-" + workerThreads.size());
+        workerThreads.add(thread);
+        thread.start();
+        return worker;
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        while (!condition.getAsBoolean()) Thread.sleep(5);
+    }
+
+    private int openRoom() throws IOException {
+        return RemotePlayerClient.roomPort("localhost", coordinator.port(), -1);
+    }
+
+    private int drain(int worker, long graceMillis) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), coordinator.port())) {
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeByte(RoomCoordinator.OP_DRAIN_WORKER);
+            out.writeInt(worker);
+            out.writeLong(graceMillis);
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            assertEquals(RoomCoordinator.OP_DRAINING, in.readByte());
+            int a = in.readInt();
+            in.readLong();
+            return a;
+        }
+    }
+
+    @Test
+    void roomsGoToTheLeastLoadedWorkerAndPlayersJoinThem() {
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            RoomWorker first = startWorker();
+            RoomWorker second = startWorker();
+            await(() -> coordinator.workers() == 2 && first.id() >= 0 && second.id() >= 0);
+
+            int[] ports = new int[4];
+            for (int i = 0; i < ports.length; ++i) ports[i] = openRoom();
+            await(() -> first.rooms() == 2 && second.rooms() == 2);
+            assertEquals(4, coordinator.rooms());
+            await(() -> coordinator.rooms(first.id()) == 2 && coordinator.rooms(second.id()) == 2);
+
+            // a player joins a room on the port the coordinator gave
+            try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), ports[3])) {
+                DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                out.writeByte(RemotePlayerServer.OP_JOIN);
+                out.writeInt(0);
+                out.writeLong(0);
+                out.flush();
+                assertEquals(RemotePlayerServer.OP_JOINED, new DataInputStream(socket.getInputStream()).readByte());
+            }
+            assertEquals(ports[0], RemotePlayerClient.roomPort("localhost", coordinator.port(), 0));
+            assertEquals(-1, RemotePlayerClient.roomPort("localhost", coordinator.port(), 99));
+        });
+    }
+
+    @Test
+    void drainedWorkerGetsNoRoomsAndLeavesAfterItsRooms() {
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            RoomWorker first = startWorker();
+            await(() -> coordinator.workers() == 1 && first.id() >= 0);
+            assertTrue(openRoom() > 0);
+            RoomWorker second = startWorker();
+            await(() -> coordinator.workers() == 2 && second.id() >= 0);
+
+            assertEquals(first.id(), drain(first.id(), 50));
+            assertEquals(-1, drain(99, 0));
+            // the room of the first worker is stopped after the grace time, and the worker leaves
+            workerThreads.get(0).join();
+            assertEquals(0, first.rooms());
+            await(() -> coordinator.workers() == 1 && coordinator.rooms() == 0);
+
+            assertTrue(openRoom() > 0);
+            assertEquals(1, second.rooms());
+        });
+    }
+
+    @Test
+    void workerRunsInAProcessOfItsOwn(@TempDir Path directory) {
+        assertTimeoutPreemptively(Duration.ofSeconds(30), () -> {
+            Path config = directory.resolve("worker.properties");
+            try (OutputStream out = Files.newOutputStream(config)) {
+                roomProperties().store(out, null);
+            }
+            String java = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+            Process worker = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    RoomWorker.class.getName(), Integer.toString(coordinator.port()), config.toString())
+                    .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD).start();
+            try {
+                await(() -> coordinator.workers() == 1);
+                int port = openRoom();
+                assertTrue(port > 0);
+                // the room accepts players
+                new Socket(InetAddress.getLoopbackAddress(), port).close();
+
+                drain(0, 50);
+                assertTrue(worker.waitFor(10, TimeUnit.SECONDS));
+                assertEquals(0, worker.exitValue());
+                await(() -> coordinator.workers() == 0);
+            } finally {
+                worker.destroyForcibly();
+            }
+        });
+    }
+}
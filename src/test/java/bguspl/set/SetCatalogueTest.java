@@ -0,0 +1,165 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SetCatalogueTest {
+
+    private static Config config(int featureCount, int featureSize) {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        properties.put("SetCatalogueMaxSets", "0"); // the brute force search, to compare against
+        Logger logger = Logger.getLogger("SetCatalogueTest");
+        logger.setUseParentHandlers(false);
+        return new Config(logger, properties);
+    }
+
+    private static Set<String> asStrings(List<int[]> sets) {
+        return sets.stream().map(Arrays::toString).collect(Collectors.toCollection(TreeSet::new));
+    }
+
+    @Test
+    void standardDeckHas1080Sets() {
+        SetCatalogue catalogue = SetCatalogue.build(4, 3);
+
+        assertEquals(1080, catalogue.setCount);
+        assertEquals(40, SetCatalogue.setsPerCard(4, 3));
+        for (int card = 0; card < catalogue.deckSize; ++card)
+            assertEquals(40, catalogue.setsOf(card));
+    }
+
+    @Test
+    void catalogueMatchesBruteForce() {
+        for (int[] deck : new int[][]{{4, 3}, {3, 4}, {3, 2}}) {
+            Config config = config(deck[0], deck[1]);
+            Util util = new UtilImpl(config);
+            SetCatalogue catalogue = SetCatalogue.build(deck[0], deck[1]);
+
+            List<Integer> cards = new ArrayList<>();
+            for (int card = 0; card < config.deckSize; ++card) cards.add(card);
+            List<int[]> all = util.findSets(cards, Integer.MAX_VALUE);
+
+            assertEquals(all.size(), catalogue.setCount);
+            assertEquals(asStrings(all), asStrings(catalogue.findSets(cards, Integer.MAX_VALUE)));
+            for (int set = 0; set < catalogue.setCount; ++set) {
+                int[] setCards = new int[config.featureSize];
+                for (int i = 0; i < setCards.length; ++i) setCards[i] = catalogue.card(set, i);
+                assertTrue(util.testSet(setCards));
+            }
+        }
+    }
+
+    @Test
+    void findSetsOnSubsets() {
+        Config config = config(4, 3);
+        Util util = new UtilImpl(config);
+        SetCatalogue catalogue = SetCatalogue.build(4, 3);
+        Random random = new Random(17);
+
+        List<Integer> cards = new ArrayList<>();
+        for (int card = 0; card < config.deckSize; ++card) cards.add(card);
+        for (int i = 0; i < 100; ++i) {
+            Collections.shuffle(cards, random);
+            List<Integer> table = cards.subList(0, 12);
+            assertEquals(asStrings(util.findSets(table, Integer.MAX_VALUE)), asStrings(catalogue.findSets(table, Integer.MAX_VALUE)));
+            assertEquals(Math.min(1, util.findSets(table, 1).size()), catalogue.findSets(table, 1).size());
+        }
+    }
+
+    @Test
+    void containsSetOnSubsets() {
+        Config config = config(4, 3);
+        Util util = new UtilImpl(config);
+        SetCatalogue catalogue = SetCatalogue.build(4, 3);
+        Random random = new Random(23);
+
+        List<Integer> cards = new ArrayList<>();
+        for (int card = 0; card < config.deckSize; ++card) cards.add(card);
+        int withoutSet = 0;
+        for (int i = 0; i < 200; ++i) {
+            Collections.shuffle(cards, random);
+            List<Integer> table = new ArrayList<>(cards.subList(0, 3 + i % 10));
+            boolean expected = !util.findSets(table, 1).isEmpty();
+            assertEquals(expected, catalogue.containsSet(table));
+            if (!expected) ++withoutSet;
+        }
+        assertTrue(withoutSet > 0);
+    }
+
+    @Test
+    void findSetPrefersTheFirstCards() {
+        Config config = config(4, 3);
+        Util util = new UtilImpl(config);
+        SetCatalogue catalogue = SetCatalogue.build(4, 3);
+        Random random = new Random(29);
+
+        int[] cards = new int[config.deckSize];
+        for (int card = 0; card < cards.length; ++card) cards[card] = card;
+        int[] expected = new int[3];
+        int[] found = new int[3];
+        for (int i = 0; i < 200; ++i) {
+            for (int k = cards.length; k > 1; --k) {
+                int j = random.nextInt(k);
+                int card = cards[k - 1];
+                cards[k - 1] = cards[j];
+                cards[j] = card;
+            }
+            int count = 3 + i % 20;
+            int preferred = i % 13;
+            int[] table = Arrays.copyOf(cards, count);
+            if (i % 4 == 0) table[i % count] = -1; // an empty slot
+            int missing = util.findSet(table, count, preferred, expected);
+            assertEquals(missing, catalogue.findSet(table, count, preferred, found));
+            if (missing >= 0) {
+                assertTrue(util.testSet(found));
+                int outside = 0;
+                for (int card : found) {
+                    int index = 0;
+                    while (index < count && table[index] != card) ++index;
+                    assertTrue(index < count);
+                    if (index >= preferred) ++outside;
+                }
+                assertEquals(missing, outside);
+            }
+        }
+        // the bits of the search are cleared after each call
+        assertTrue(catalogue.containsSet(Arrays.asList(0, 1, 2)));
+        assertEquals(-1, catalogue.findSet(new int[]{0, 1, 3}, 3, 0, found));
+    }
+
+    @Test
+    void writeAndRead() throws IOException {
+        SetCatalogue catalogue = SetCatalogue.build(4, 3);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        catalogue.write(out);
+
+        SetCatalogue read = SetCatalogue.read(new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(catalogue.setCount, read.setCount);
+        for (int card = 0; card < catalogue.deckSize; ++card) {
+            int[] expected = new int[catalogue.setsOf(card)];
+            int[] actual = new int[read.setsOf(card)];
+            for (int i = 0; i < expected.length; ++i) expected[i] = catalogue.setOf(card, i);
+            for (int i = 0; i < actual.length; ++i) actual[i] = read.setOf(card, i);
+            assertArrayEquals(expected, actual);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package bguspl.set;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Properties;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Compares checking candidate sets one at a time, feature by feature (UtilImpl.testSetScalar), with the bit-sliced
+ * check of 64 candidates at a time (Util.testSets), on the same candidates (random cards, so most of them are not
+ * sets).
+ * <p>
+ * Run with (from the project directory):
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main TestSetsBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TestSetsBenchmark {
+
+    /**
+     * The number of candidates checked in one invocation.
+     */
+    static final int CANDIDATES = 1024;
+
+    /**
+     * The deck: featureCount x featureSize.
+     */
+    @Param({"4x3", "6x3", "4x4"})
+    String deck;
+
+    private UtilImpl util;
+    private int setSize;
+    private int[] candidates;
+    private int[][] scalarCandidates;
+
+    @Setup
+    public void setUp() {
+        String[] dimensions = deck.split("x");
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("FeatureCount", dimensions[0]);
+        properties.put("FeatureSize", dimensions[1]);
+        Logger logger = Logger.getAnonymousLogger();
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        util = new UtilImpl(config);
+        setSize = config.featureSize;
+        Random random = new Random(1);
+        candidates = new int[CANDIDATES * setSize];
+        scalarCandidates = new int[CANDIDATES][setSize];
+        for (int i = 0; i < CANDIDATES; ++i)
+            for (int k = 0; k < setSize; ++k)
+                candidates[i * setSize + k] = scalarCandidates[i][k] = random.nextInt(config.deckSize);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CANDIDATES)
+    public int scalar() {
+        int legal = 0;
+        for (int[] cards : scalarCandidates)
+            if (util.testSetScalar(cards)) ++legal;
+        return legal;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CANDIDATES)
+    public int bitSliced() {
+        int legal = 0;
+        int[] batch = new int[64 * setSize];
+        for (int first = 0; first < CANDIDATES; first += 64) {
+            System.arraycopy(candidates, first * setSize, batch, 0, batch.length);
+            legal += Long.bitCount(util.testSets(batch, setSize, 64));
+        }
+        return legal;
+    }
+}
@@ -0,0 +1,84 @@
+package bguspl.set;
+
+import bguspl.set.ex.GameStats;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Properties;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TournamentTest {
+
+    Logger logger;
+    Tournament tournament;
+
+    @BeforeEach
+    void setUp() {
+        logger = Logger.getLogger("TournamentTest");
+        logger.setUseParentHandlers(false);
+        logger.setLevel(Level.OFF);
+        tournament = new Tournament(logger, 1, 2);
+    }
+
+    private static Properties config(String computerPlayers) {
+        Properties properties = new Properties();
+        properties.put("ComputerPlayers", computerPlayers);
+        properties.put("ComputerStrategies", "seeker,random");
+        properties.put("FeatureCount", "3");
+        properties.put("PointFreezeSeconds", "1");
+        properties.put("PenaltyFreezeSeconds", "3");
+        properties.put("TurnTimeoutSeconds", "60");
+        properties.put("TurnTimeoutWarningSeconds", "5");
+        properties.put("SnapshotFile", "game.snapshot");
+        return properties;
+    }
+
+    @Test
+    void configWithoutComputerPlayersIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> Tournament.tournamentProperties("c", config("0"), 0.01));
+        assertThrows(IllegalArgumentException.class, () -> Tournament.tournamentProperties("c", new Properties(), 0.01));
+    }
+
+    @Test
+    void gamesRunOnTheEventLoopWithScaledTimes() {
+        Properties properties = Tournament.tournamentProperties("c", config("2"), 0.01);
+        assertEquals("0", properties.getProperty("HumanPlayers"));
+        assertEquals("event-loop", properties.getProperty("Engine"));
+        assertEquals("", properties.getProperty("SnapshotFile"));
+        assertEquals(0.01, Double.parseDouble(properties.getProperty("PointFreezeSeconds")), 1e-9);
+        assertEquals(0.03, Double.parseDouble(properties.getProperty("PenaltyFreezeSeconds")), 1e-9);
+        assertEquals(0.6, Double.parseDouble(properties.getProperty("TurnTimeoutSeconds")), 1e-9);
+    }
+
+    @Test
+    void gameWithoutPointsHasNoWinner() {
+        tournament.record("c", new GameStats(2), new String[]{"seeker", "random"});
+        assertEquals(1, tournament.perConfig("c").sets.count());
+        assertEquals(1, tournament.perStrategy("seeker").wins.count());
+        assertEquals(0, tournament.perStrategy("seeker").wins.sum());
+        assertEquals(0, tournament.perStrategy("random").wins.sum());
+    }
+
+    @Test
+    void statisticsAreAggregatedPerConfigAndPerStrategy() {
+        Properties properties = Tournament.tournamentProperties("c", config("2"), 0.01);
+        assertTimeoutPreemptively(Duration.ofSeconds(30),
+                () -> tournament.run(3, Collections.singletonMap("c", properties)));
+
+        Tournament.Aggregate games = tournament.perConfig("c");
+        assertEquals(3, games.sets.count());
+        assertTrue(games.sets.sum() > 0);
+        Tournament.Aggregate seeker = tournament.perStrategy("seeker");
+        Tournament.Aggregate random = tournament.perStrategy("random");
+        assertEquals(3, seeker.points.count());
+        assertEquals(3, random.points.count());
+        assertEquals(games.sets.sum(), seeker.points.sum() + random.points.sum());
+        // every game with points has at least one winner
+        assertTrue(seeker.wins.sum() + random.wins.sum() >= 3);
+    }
+}
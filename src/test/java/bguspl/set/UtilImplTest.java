@@ -0,0 +1,90 @@
+package bguspl.set;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.Random;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UtilImplTest {
+
+    private static Config config(int featureCount, int featureSize) {
+        Properties properties = new Properties();
+        properties.put("FeatureCount", Integer.toString(featureCount));
+        properties.put("FeatureSize", Integer.toString(featureSize));
+        Logger logger = Logger.getLogger("UtilImplTest");
+        logger.setUseParentHandlers(false);
+        return new Config(logger, properties);
+    }
+
+    /**
+     * 64 candidates of random cards, every third one a legal set.
+     */
+    private static int[] candidates(Config config, Util util, Random random) {
+        List<Integer> deck = new ArrayList<>();
+        for (int card = 0; card < config.deckSize; ++card) deck.add(card);
+        List<int[]> sets = util.findSets(deck, Integer.MAX_VALUE);
+        int[] candidates = new int[64 * config.featureSize];
+        for (int i = 0; i < 64; ++i) {
+            int[] set = sets.get(random.nextInt(sets.size()));
+            for (int k = 0; k < config.featureSize; ++k)
+                candidates[i * config.featureSize + k] = i % 3 == 0 ? set[k] : random.nextInt(config.deckSize);
+        }
+        return candidates;
+    }
+
+    /**
+     * Compares with the check feature by feature (testSet itself is the bit-sliced check when it can be).
+     */
+    private static void assertSameAsTestSet(Config config, UtilImpl util, int[] candidates, int count, long legal) {
+        for (int i = 0; i < 64; ++i) {
+            int[] cards = new int[config.featureSize];
+            System.arraycopy(candidates, i * config.featureSize, cards, 0, cards.length);
+            assertEquals(i < count && util.testSetScalar(cards), (legal & (1L << i)) != 0, "candidate " + i);
+            assertEquals(util.testSetScalar(cards), util.testSet(cards), "candidate " + i);
+        }
+    }
+
+    @Test
+    void testSetsMatchesTestSet() {
+        Random random = new Random(1);
+        for (int[] deck : new int[][]{{4, 3}, {3, 4}, {2, 5}}) {
+            Config config = config(deck[0], deck[1]);
+            UtilImpl util = new UtilImpl(config);
+            for (int round = 0; round < 50; ++round) {
+                int[] candidates = candidates(config, util, random);
+                int count = round == 0 ? 64 : random.nextInt(65);
+                assertSameAsTestSet(config, util, candidates, count, util.testSets(candidates, config.featureSize, count));
+            }
+        }
+    }
+
+    @Test
+    void defaultTestSetsMatchesTestSet() {
+        Config config = config(4, 3);
+        UtilImpl impl = new UtilImpl(config);
+        // only the required methods, so testSets is the default method of the interface
+        Util util = new Util() {
+            public int[] cardToFeatures(int card) { return impl.cardToFeatures(card); }
+            public int[][] cardsToFeatures(int[] cards) { return impl.cardsToFeatures(cards); }
+            public boolean testSet(int[] cards) { return impl.testSetScalar(cards); }
+            public List<int[]> findSets(List<Integer> deck, int count) { return impl.findSets(deck, count); }
+            public void spin() {}
+        };
+        Random random = new Random(2);
+        for (int round = 0; round < 20; ++round) {
+            int[] candidates = candidates(config, util, random);
+            assertSameAsTestSet(config, impl, candidates, 64, util.testSets(candidates, config.featureSize, 64));
+        }
+    }
+
+    @Test
+    void noCandidates() {
+        Config config = config(4, 3);
+        assertEquals(0, new UtilImpl(config).testSets(new int[0], 3, 0));
+    }
+}
@@ -0,0 +1,128 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class AiPoolTest {
+
+    private static final int AI_THREADS = 2;
+
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Logger logger;
+
+    private Table table;
+    private Player[] players;
+
+    private Dealer game(String engine, int computerPlayers) {
+        Properties properties = new Properties();
+        properties.put("Engine", engine);
+        properties.put("AiThreads", Integer.toString(AI_THREADS));
+        properties.put("RandomSeed", "7");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", Integer.toString(computerPlayers));
+        properties.put("ComputerStrategies", "seeker,random");
+        properties.put("FeatureCount", "3");
+        properties.put("PointFreezeSeconds", "0.001");
+        properties.put("PenaltyFreezeSeconds", "0.001");
+        properties.put("TableDelaySeconds", "0");
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, ui, new UtilImpl(config));
+        table = new Table(env);
+        players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+        return dealer;
+    }
+
+    private static int threads(String prefix) {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+            if (thread.getName().startsWith(prefix)) ++count;
+        return count;
+    }
+
+    @Test
+    void thousandComputerPlayersTakeTheThreadsOfThePool() {
+        Dealer dealer = game("event-loop", 1000);
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            Thread game = new Thread(dealer, "dealer");
+            game.start();
+            Thread.sleep(50);
+            assertEquals(0, threads("computer-"));
+            assertEquals(0, threads("player-"));
+            assertTrue(threads("ai-") <= AI_THREADS);
+            game.join();
+        });
+
+        GameStats stats = dealer.stats();
+        assertTrue(stats.sets() > 0);
+        GameAnalytics analytics = dealer.analytics();
+        long moves = 0;
+        long cpuNanos = 0;
+        for (int i = 0; i < analytics.players(); ++i) {
+            moves += analytics.aiMoves(i);
+            cpuNanos += analytics.aiCpuNanos(i);
+        }
+        assertTrue(moves > 0);
+        assertTrue(cpuNanos > 0);
+        assertTrue(analytics.report(0).contains("ai cpu"));
+    }
+
+    @Test
+    void threadsEngineMovesTheComputerPlayersOnThePool() {
+        Dealer dealer = game("threads", 4);
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            Thread game = new Thread(dealer, "dealer");
+            game.start();
+            Thread.sleep(50);
+            // the player threads stay (they wait for the dealer and sleep their freezes), the AI threads are gone
+            assertEquals(0, threads("computer-"));
+            assertTrue(threads("ai-") <= AI_THREADS);
+            game.join();
+        });
+
+        GameStats stats = dealer.stats();
+        assertTrue(stats.sets() > 0);
+        assertTrue(dealer.analytics().aiMoves(0) > 0);
+    }
+
+    @Test
+    void idleComputerPlayersRunOnlyWhenWoken() {
+        Dealer dealer = game("event-loop", 4);
+        AiPool pool = new AiPool(1, "test-ai");
+        try {
+            assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+                // no cards on the table: the seekers find nothing to press
+                for (Player player : players) player.startOn(pool);
+                Thread.sleep(50);
+                long runs = pool.runs();
+                Thread.sleep(100);
+                assertEquals(runs, pool.runs());
+
+                // the cards on the table wake them
+                dealer.placeCardsOnTable();
+                while (players[0].inbox.isEmpty()) Thread.sleep(1);
+                assertTrue(pool.runs() > runs);
+            });
+        } finally {
+            for (Player player : players) player.terminate();
+            pool.shutdown();
+        }
+    }
+}
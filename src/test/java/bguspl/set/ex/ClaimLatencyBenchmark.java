@@ -0,0 +1,94 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.HeadlessUserInterface;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Measures the latency of a claim (submitting it, checking it and dealing the replacement cards) as the number of
+ * players at the table grows. The other players are idle, so the latency should not depend on their number.
+ * <p>
+ * Run with (from the project directory):
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt -Dmdep.includeScope=test
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main ClaimLatencyBenchmark
+ * </pre>
+ * To measure from a mid-game state, pass a game snapshot of a game with the same number of players (saved by a game
+ * with SnapshotFile set), e.g. {@code -p players=50 -p snapshot=game.snapshot}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 200)
+@Measurement(iterations = 200)
+@Fork(1)
+public class ClaimLatencyBenchmark {
+
+    /**
+     * The number of claims in one invocation (each starts from a fresh game).
+     */
+    static final int CLAIMS = 12;
+
+    @Param({"2", "50", "200", "500", "1000"})
+    int players;
+
+    /**
+     * The game snapshot the game starts from (empty for a new game).
+     */
+    @Param({""})
+    String snapshot;
+
+    private Util util;
+    private Table table;
+    private Dealer dealer;
+    private Player[] game;
+
+    @Setup(Level.Iteration)
+    public void setUp() throws IOException {
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("RandomSeed", "1");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", Integer.toString(players));
+        properties.put("GuaranteeSetOnTable", "True");
+        Logger logger = Logger.getAnonymousLogger();
+        Config config = new Config(logger, properties);
+        util = new UtilImpl(config);
+        Env env = new Env(logger, config, new HeadlessUserInterface(config), util);
+        table = new Table(env);
+        game = new Player[players];
+        dealer = new Dealer(env, table, game);
+        for (int i = 0; i < players; i++)
+            game[i] = new Player(env, dealer, table, i, false);
+        if (!snapshot.isEmpty()) dealer.resume(GameSnapshot.load(Paths.get(snapshot)));
+        dealer.placeCardsOnTable();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CLAIMS)
+    public int claim() {
+        int collected = 0;
+        for (int claim = 0; claim < CLAIMS; ++claim) {
+            int player = (claim * 7919) % players;
+            List<int[]> sets = util.findSets(table.cards(), 1);
+            if (sets.isEmpty()) throw new IllegalStateException("no set on the table");
+            for (int card : sets.get(0))
+                table.placeToken(player, table.cardToSlot[card]);
+            dealer.requests.offer(player, System.nanoTime());
+            dealer.checkTheSetIfRequested(dealer.requests.poll());
+            collected += game[player].resultFromDealerAfterCheckSet == 0 ? 1 : 0;
+            game[player].resultFromDealerAfterCheckSet = -2;
+        }
+        return collected;
+    }
+}
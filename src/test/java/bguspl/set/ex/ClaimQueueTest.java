@@ -0,0 +1,77 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClaimQueueTest {
+
+    ClaimQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        queue = new ClaimQueue(3);
+    }
+
+    @Test
+    void pollEmpty() throws InterruptedException {
+        assertEquals(ClaimQueue.NONE, queue.poll());
+        assertEquals(ClaimQueue.NONE, queue.poll(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void claimsAreTakenBySubmissionTime() {
+        // player 2 submitted first, but got its cell last
+        assertTrue(queue.offer(0, 20));
+        assertTrue(queue.offer(1, 30));
+        assertTrue(queue.offer(2, 10));
+
+        assertEquals(2, queue.poll());
+        assertEquals(10, queue.lastTimestamp());
+        assertEquals(0, queue.poll());
+        assertEquals(1, queue.poll());
+        assertEquals(ClaimQueue.NONE, queue.poll());
+    }
+
+    @Test
+    void offerFailsWhenFull() {
+        // the capacity is rounded up to a power of two
+        for (int i = 0; i < 4; ++i)
+            assertTrue(queue.offer(i, i));
+        assertFalse(queue.offer(4, 4));
+
+        assertEquals(0, queue.poll());
+        assertTrue(queue.offer(4, 4));
+    }
+
+    @Test
+    void manyProducers() throws InterruptedException {
+        int producers = 8;
+        int claims = 10000;
+        Thread[] threads = new Thread[producers];
+        for (int p = 0; p < producers; ++p) {
+            int player = p;
+            threads[p] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < claims; ++i) queue.put(player);
+                } catch (InterruptedException ignored) {}
+            });
+            threads[p].start();
+        }
+
+        int[] taken = new int[producers];
+        for (int i = 0; i < producers * claims; ++i) {
+            int player = queue.poll(10, TimeUnit.SECONDS);
+            assertNotEquals(ClaimQueue.NONE, player);
+            ++taken[player];
+        }
+        for (Thread thread : threads) thread.join();
+
+        for (int p = 0; p < producers; ++p)
+            assertEquals(claims, taken[p]);
+        assertEquals(0, queue.size());
+    }
+}
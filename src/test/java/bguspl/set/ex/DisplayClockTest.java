@@ -0,0 +1,86 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.HeadlessUserInterface;
+import bguspl.set.Util;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class DisplayClockTest {
+
+    static final int PLAYERS = 50;
+
+    HeadlessUserInterface ui;
+    DisplayClock clock;
+    Player[] players;
+    @Mock
+    private Dealer dealer;
+    @Mock
+    private Util util;
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", Integer.toString(PLAYERS));
+        properties.put("TurnTimeoutSeconds", "60");
+        properties.put("TurnTimeoutWarningSeconds", "5");
+        Config config = new Config(logger, properties);
+        ui = new HeadlessUserInterface(config);
+        players = new Player[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++)
+            players[i] = mock(Player.class);
+        clock = new DisplayClock(new Env(logger, config, ui, util), dealer, players, 20);
+    }
+
+    @Test
+    void publishesOnlyWhatChangesOnTheScreen() {
+        long start = 1_000_000;
+        when(dealer.reshuffleTime()).thenReturn(start + 60_000);
+        for (int i = 0; i < PLAYERS; i++)
+            when(players[i].frozenUntil()).thenReturn(start + 3_000);
+
+        // one second of frames at 20 fps
+        for (long now = start; now < start + 1000; now += 50)
+            clock.frame(now);
+
+        // the countdown and the freezes show whole seconds before the warning: 60 -> 59 and 3 -> 2
+        assertEquals(2, ui.calls(HeadlessUserInterface.Call.SET_COUNTDOWN));
+        assertEquals(2 * PLAYERS, ui.calls(HeadlessUserInterface.Call.SET_FREEZE));
+        assertEquals(59_950, ui.countdown());
+        assertFalse(ui.warn());
+        assertEquals(2_950, ui.freeze(0));
+    }
+
+    @Test
+    void showsTheWarningEveryFrameAndTheEndOfTheFreezes() {
+        long start = 1_000_000;
+        when(dealer.reshuffleTime()).thenReturn(start + 4_000);
+        for (int i = 0; i < PLAYERS; i++)
+            when(players[i].frozenUntil()).thenReturn(i == 0 ? start + 500 : 0);
+
+        for (long now = start; now < start + 1000; now += 50)
+            clock.frame(now);
+
+        assertEquals(20, ui.calls(HeadlessUserInterface.Call.SET_COUNTDOWN));
+        assertTrue(ui.warn());
+        // every player once (not frozen), then player 0 again when its freeze ends
+        assertEquals(PLAYERS + 1, ui.calls(HeadlessUserInterface.Call.SET_FREEZE));
+        assertEquals(0, ui.freeze(0));
+        assertEquals(start + 1000, clock.nextFrame());
+    }
+}
@@ -0,0 +1,67 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class GameLoopTest {
+
+    Dealer dealer;
+    Player[] players;
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("Engine", "event-loop");
+        properties.put("RandomSeed", "7");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        properties.put("ComputerStrategies", "seeker,random");
+        properties.put("FeatureCount", "3");
+        properties.put("PointFreezeSeconds", "0.001");
+        properties.put("PenaltyFreezeSeconds", "0.001");
+        properties.put("TableDelaySeconds", "0");
+        Config config = new Config(logger, properties);
+        Env env = new Env(logger, config, ui, new UtilImpl(config));
+        Table table = new Table(env);
+        players = new Player[config.players];
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+    }
+
+    @Test
+    void gameRunsToTheEndOnOneThread() {
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            Thread game = new Thread(dealer, "dealer");
+            game.start();
+            // no thread is started for the players
+            Thread.sleep(20);
+            for (Thread thread : Thread.getAllStackTraces().keySet())
+                assertFalse(thread.getName().startsWith("player-") || thread.getName().startsWith("computer-"));
+            game.join();
+        });
+
+        GameStats stats = dealer.stats();
+        assertTrue(stats.sets() > 0);
+        assertEquals(stats.sets(), players[0].score() + players[1].score());
+        assertEquals(stats.sets(), stats.points(0) + stats.points(1));
+    }
+}
@@ -0,0 +1,159 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class GameSnapshotTest {
+
+    Table table;
+    Dealer dealer;
+    Player[] players;
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        table = new Table(env(properties()));
+        players = new Player[2];
+        dealer = game(table, players, env(properties()), true);
+    }
+
+    private Properties properties() {
+        Properties properties = new Properties();
+        properties.put("RandomSeed", "3");
+        properties.put("HumanPlayers", "2");
+        properties.put("ComputerPlayers", "0");
+        properties.put("GuaranteeSetOnTable", "True");
+        return properties;
+    }
+
+    private Env env(Properties properties) {
+        Config config = new Config(logger, properties);
+        return new Env(logger, config, ui, new UtilImpl(config));
+    }
+
+    private Dealer game(Table table, Player[] players, Env env, boolean human) {
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, human);
+        return dealer;
+    }
+
+    /**
+     * Plays a few moves: player 1 collects a set and player 0 has two tokens on the table.
+     */
+    private void play() {
+        dealer.placeCardsOnTable();
+        List<int[]> sets = new UtilImpl(new Config(logger, properties())).findSets(table.cards(), 1);
+        for (int card : sets.get(0))
+            table.placeToken(1, table.cardToSlot[card]);
+        dealer.requests.offer(1, System.nanoTime());
+        dealer.checkTheSetIfRequested(dealer.requests.poll());
+        assertEquals(1000, players[1].startFreeze());
+        table.placeToken(0, 0);
+        table.placeToken(0, 5);
+    }
+
+    private static GameSnapshot copy(GameSnapshot snapshot) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        snapshot.write(bytes);
+        return GameSnapshot.read(new ByteArrayInputStream(bytes.toByteArray()));
+    }
+
+    @Test
+    void writeAndRead() throws IOException {
+        play();
+        GameSnapshot snapshot = dealer.snapshot();
+        GameSnapshot read = copy(snapshot);
+
+        assertEquals(1, read.sets());
+        assertEquals(81 - 3, read.cardsLeft());
+        assertArrayEquals(snapshot.deck, read.deck);
+        assertArrayEquals(table.slotToCard, read.slotToCard);
+        assertEquals(0, read.tokens[0]);
+        assertEquals(5, read.tokens[1]);
+        assertArrayEquals(new int[]{2, 0}, read.tokenCount);
+        assertArrayEquals(new int[]{0, 1}, read.points);
+        assertArrayEquals(snapshot.freezeLeftMillis, read.freezeLeftMillis);
+        assertTrue(read.freezeLeftMillis[1] > 0 && read.freezeLeftMillis[1] <= 1000);
+        assertEquals(snapshot.turnLeftMillis, read.turnLeftMillis);
+    }
+
+    @Test
+    void resumeRestoresTheGame() throws IOException {
+        play();
+        GameSnapshot snapshot = copy(dealer.snapshot());
+
+        Table resumedTable = new Table(env(properties()));
+        Player[] resumedPlayers = new Player[2];
+        Dealer resumed = game(resumedTable, resumedPlayers, env(properties()), true);
+        resumed.resume(snapshot);
+
+        assertArrayEquals(table.slotToCard, resumedTable.slotToCard);
+        assertTrue(resumedTable.hasToken(0, 0) && resumedTable.hasToken(0, 5));
+        assertEquals(0, resumedTable.tokenCount(1));
+        assertEquals(1, resumedPlayers[1].score());
+        assertEquals(1, resumed.stats().points(1));
+        assertTrue(resumedPlayers[1].frozenUntil() > 0);
+        assertArrayEquals(snapshot.deck, resumed.snapshot().deck);
+    }
+
+    @Test
+    void resumedGameRunsToTheEnd() throws IOException {
+        play();
+        GameSnapshot snapshot = copy(dealer.snapshot());
+
+        Properties properties = properties();
+        properties.put("Engine", "event-loop");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        properties.put("ComputerStrategies", "seeker");
+        properties.put("PointFreezeSeconds", "0.001");
+        properties.put("PenaltyFreezeSeconds", "0.001");
+        Player[] resumedPlayers = new Player[2];
+        Dealer resumed = game(new Table(env(properties)), resumedPlayers, env(properties), false);
+        resumed.resume(snapshot);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(10), () -> {
+            Thread game = new Thread(resumed, "dealer");
+            game.start();
+            game.join();
+        });
+        assertTrue(resumed.stats().sets() > snapshot.sets());
+        assertEquals(resumed.stats().sets(), resumedPlayers[0].score() + resumedPlayers[1].score());
+    }
+
+    @Test
+    void resumeRejectsAnotherGame() {
+        GameSnapshot snapshot = dealer.snapshot();
+        Properties properties = properties();
+        properties.put("HumanPlayers", "3");
+        Dealer other = game(new Table(env(properties)), new Player[3], env(properties), true);
+        assertThrows(IllegalArgumentException.class, () -> other.resume(snapshot));
+    }
+
+    @Test
+    void readRejectsOtherFiles() {
+        assertThrows(IOException.class, () -> GameSnapshot.read(new ByteArrayInputStream(new byte[64])));
+    }
+}
@@ -0,0 +1,84 @@
+package bguspl.set.ex;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class KeyInboxTest {
+
+    private static KeyInbox inbox(KeyInbox.OverflowPolicy policy) {
+        return new KeyInbox(3, 12, policy);
+    }
+
+    @Test
+    void keysAreTakenInOrder() {
+        KeyInbox inbox = inbox(KeyInbox.OverflowPolicy.DROP_NEWEST);
+        assertEquals(KeyInbox.NONE, inbox.poll());
+        assertTrue(inbox.offer(11));
+        assertTrue(inbox.offer(0));
+        assertTrue(inbox.offer(5));
+        assertEquals(3, inbox.size());
+
+        assertEquals(11, inbox.poll());
+        assertEquals(0, inbox.poll());
+        assertEquals(5, inbox.poll());
+        assertTrue(inbox.isEmpty());
+    }
+
+    @Test
+    void dropNewest() {
+        KeyInbox inbox = inbox(KeyInbox.OverflowPolicy.DROP_NEWEST);
+        for (int slot = 1; slot <= 3; ++slot) assertTrue(inbox.offer(slot));
+        assertFalse(inbox.offer(4));
+        assertEquals(1, inbox.dropped());
+
+        assertEquals(1, inbox.poll());
+        assertEquals(2, inbox.poll());
+        assertEquals(3, inbox.poll());
+    }
+
+    @Test
+    void dropOldest() {
+        KeyInbox inbox = inbox(KeyInbox.OverflowPolicy.DROP_OLDEST);
+        for (int slot = 1; slot <= 4; ++slot) assertTrue(inbox.offer(slot));
+        assertEquals(1, inbox.dropped());
+
+        assertEquals(2, inbox.poll());
+        assertEquals(3, inbox.poll());
+        assertEquals(4, inbox.poll());
+    }
+
+    @Test
+    void coalesce() {
+        KeyInbox inbox = inbox(KeyInbox.OverflowPolicy.COALESCE);
+        assertTrue(inbox.offer(1));
+        assertTrue(inbox.offer(2));
+        // pressing 1 again cancels the first press
+        assertTrue(inbox.offer(1));
+        assertEquals(1, inbox.size());
+        assertEquals(0, inbox.dropped());
+        assertEquals(2, inbox.poll());
+    }
+
+    @Test
+    void takeWaitsForKey() throws InterruptedException {
+        KeyInbox inbox = inbox(KeyInbox.OverflowPolicy.DROP_NEWEST);
+        int[] taken = {KeyInbox.NONE};
+        Thread consumer = new Thread(() -> {
+            try {
+                taken[0] = inbox.take();
+            } catch (InterruptedException ignored) {}
+        });
+        consumer.start();
+        Thread.sleep(20);
+        inbox.offer(7);
+        consumer.join(1000);
+        assertEquals(7, taken[0]);
+    }
+
+    @Test
+    void parsePolicy() {
+        assertEquals(KeyInbox.OverflowPolicy.DROP_OLDEST, KeyInbox.OverflowPolicy.parse("drop-oldest"));
+        assertEquals(KeyInbox.OverflowPolicy.COALESCE, KeyInbox.OverflowPolicy.parse(" Coalesce "));
+    }
+}
@@ -32,6 +32,7 @@ class PlayerTest {
     private Dealer dealer;
     @Mock
     private Logger logger;
+    private GameAnalytics analytics;
 
     void assertInvariants() {
         assertTrue(player.id >= 0);
@@ -42,6 +43,8 @@ class PlayerTest {
     void setUp() {
         // purposely do not find the configuration files (use defaults here).
         Env env = new Env(logger, new Config(logger, (String) null), ui, util);
+        analytics = new GameAnalytics(1);
+        when(dealer.analytics()).thenReturn(analytics);
         player = new Player(env, dealer, table, 0, true);
         assertInvariants();
     }
@@ -83,6 +86,20 @@ class PlayerTest {
         assertEquals(expectedBool, player.getCameBackFromPenalty());
     }
 
+    @Test
+    void placedTokenIsRecorded()
+    {
+        when(table.hasCard(3)).thenReturn(true);
+        when(table.changedNanos()).thenReturn(System.nanoTime());
+
+        player.applyKeyPress(3);
+
+        // the token was placed and its time since the table changed was sampled
+        verify(table).placeToken(player.id, 3);
+        assertEquals(1, analytics.tokenMicros(player.id).count());
+        assertEquals(1, analytics.tokenMicros().count());
+    }
+
     @Test
     void terminate()
     {
@@ -0,0 +1,184 @@
+package bguspl.set.ex;
+
+import bguspl.set.CachingUtil;
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.HeadlessUserInterface;
+import bguspl.set.Util;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Properties;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * The claims of a game in steady state must not allocate: the seeker looking for a set and pressing its keys, the
+ * claim, its check, taking the set off the table, dealing (with and without the set guaranteeing deal) and the freeze
+ * of the player (the steps of the event loop engine for a claim), and the claims of a game of the threads engine.
+ */
+class SteadyStateAllocationTest {
+
+    static final int PLAYERS = 4;
+
+    com.sun.management.ThreadMXBean threads;
+    Util util;
+    Table table;
+    Dealer dealer;
+    Player[] players;
+
+    @BeforeEach
+    void setUp() {
+        Assumptions.assumeTrue(ManagementFactory.getThreadMXBean() instanceof com.sun.management.ThreadMXBean);
+        threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported());
+        threads.setThreadAllocatedMemoryEnabled(true);
+    }
+
+    private Dealer game(String engine, boolean guaranteeSetOnTable) {
+        Properties properties = new Properties();
+        properties.put("LogLevel", "OFF");
+        properties.put("RandomSeed", "3");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", Integer.toString(PLAYERS));
+        properties.put("ComputerStrategies", "seeker");
+        properties.put("Engine", engine);
+        properties.put("GuaranteeSetOnTable", Boolean.toString(guaranteeSetOnTable));
+        properties.put("PointFreezeSeconds", "0.001");
+        properties.put("TableDelaySeconds", "0");
+        Logger logger = Logger.getLogger("SteadyStateAllocationTest");
+        logger.setUseParentHandlers(false);
+        Config config = new Config(logger, properties);
+        util = new CachingUtil(new UtilImpl(config), config.findSetsCacheSize);
+        Env env = new Env(logger, config, new HeadlessUserInterface(config), util);
+        table = new Table(env);
+        players = new Player[PLAYERS];
+        dealer = new Dealer(env, table, players);
+        for (int i = 0; i < PLAYERS; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+        return dealer;
+    }
+
+    private long allocated() {
+        return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * Plays a claim of the player, as the event loop does: the seeker presses the keys of a set, and the claim is
+     * checked, the set is replaced and the freeze of the player ends.
+     */
+    private void claim(Player player) {
+        while (!player.readyToClaim()) {
+            assertTrue(player.seekStep());
+            player.applyKeyPress(player.inbox.poll());
+        }
+        player.claimSubmitted();
+        dealer.requests.offer(player.id, System.nanoTime());
+        dealer.checkTheSetIfRequested(dealer.requests.poll());
+        long freeze = player.startFreeze();
+        assertTrue(freeze > 0);
+        dealer.removeAllCardsFromTableNoSet();
+        dealer.placeCardsOnTable();
+        player.endFreeze();
+    }
+
+    /**
+     * Plays the claims of a game, until there is no set left or the given number of rounds.
+     *
+     * @return - the bytes allocated by each claim.
+     */
+    private long[] playClaims(boolean guaranteeSetOnTable, int rounds) {
+        game("event-loop", guaranteeSetOnTable);
+        dealer.placeCardsOnTable();
+        long[] bytes = new long[rounds];
+        for (int round = 0; round < rounds; ++round) {
+            if (!util.containsSet(table.cards()) || dealer.shouldFinish()) return Arrays.copyOf(bytes, round);
+            Player player = players[round % PLAYERS];
+
+            long before = allocated();
+            claim(player);
+            bytes[round] = allocated() - before;
+        }
+        return bytes;
+    }
+
+    /**
+     * Asserts that the measured claims allocated nothing. A few of them may allocate a few hundred bytes once: the
+     * compiler may deoptimize a method in the middle of a game, and the objects it had eliminated are then allocated
+     * for the interpreter. An allocation of the claims shows in every measurement.
+     */
+    private static void assertNothingAllocated(long[] bytes) {
+        int allocating = 0;
+        for (long b : bytes)
+            if (b > 0) ++allocating;
+        assertTrue(allocating <= bytes.length / 4, "allocated " + Arrays.toString(bytes) + " bytes");
+    }
+
+    private void assertClaimsDoNotAllocate(boolean guaranteeSetOnTable) {
+        // a whole game (81 cards, 27 sets at most) to load the classes, fill the caches and let the compiler settle
+        playClaims(guaranteeSetOnTable, 81 / 3);
+        // the first claims of a game fill the caches of the game
+        long[] bytes = playClaims(guaranteeSetOnTable, 20);
+        assertEquals(20, bytes.length);
+        assertEquals(20, dealer.stats().sets());
+        assertNothingAllocated(Arrays.copyOfRange(bytes, 5, bytes.length));
+    }
+
+    @Test
+    void claimsDoNotAllocate() {
+        assertClaimsDoNotAllocate(false);
+    }
+
+    @Test
+    void claimsWithTheSetGuaranteeingDealDoNotAllocate() {
+        assertClaimsDoNotAllocate(true);
+    }
+
+    /**
+     * The bytes the threads of the game (the dealer, the players and the AI threads of the seekers) allocated so far.
+     */
+    private long allocated(Thread dealerThread) {
+        long bytes = threads.getThreadAllocatedBytes(dealerThread.getId());
+        for (Thread thread : Thread.getAllStackTraces().keySet())
+            if (thread.getName().startsWith("player-") || thread.getName().startsWith("computer-"))
+                bytes += threads.getThreadAllocatedBytes(thread.getId());
+        return bytes;
+    }
+
+    private void awaitSets(int sets, Thread dealerThread) throws InterruptedException {
+        while (dealer.stats().sets() < sets) {
+            assertTrue(dealerThread.isAlive(), "the game ended after " + dealer.stats().sets() + " sets");
+            Thread.sleep(1);
+        }
+    }
+
+    @Test
+    void threadsEngineClaimsDoNotAllocate() {
+        game("threads", true);
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            Thread dealerThread = new Thread(dealer, "dealer");
+            dealerThread.start();
+            try {
+                awaitSets(5, dealerThread);
+                // the bytes allocated between a claim and the next one (the threads run on)
+                long[] bytes = new long[12];
+                for (int i = 0; i < bytes.length; ++i) {
+                    int sets = dealer.stats().sets();
+                    long before = allocated(dealerThread);
+                    awaitSets(sets + 1, dealerThread);
+                    bytes[i] = allocated(dealerThread) - before;
+                }
+                assertNothingAllocated(bytes);
+            } finally {
+                dealer.terminate();
+                dealerThread.join();
+            }
+        });
+    }
+}
@@ -0,0 +1,175 @@
+package bguspl.set.ex;
+
+import bguspl.set.Config;
+import bguspl.set.Env;
+import bguspl.set.UserInterface;
+import bguspl.set.UtilImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@ExtendWith(MockitoExtension.class)
+class TableStageTest {
+
+    Config config;
+    Env env;
+    Table table;
+    @Mock
+    private UserInterface ui;
+    @Mock
+    private Logger logger;
+
+    @BeforeEach
+    void setUp() {
+        Properties properties = new Properties();
+        properties.put("RandomSeed", "7");
+        properties.put("HumanPlayers", "0");
+        properties.put("ComputerPlayers", "2");
+        properties.put("ComputerStrategies", "seeker,seeker");
+        properties.put("FeatureCount", "3");
+        properties.put("PointFreezeSeconds", "0.001");
+        properties.put("PenaltyFreezeSeconds", "0.001");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("DealerPipeline", "True");
+        config = new Config(logger, properties);
+        env = new Env(logger, config, ui, new UtilImpl(config));
+        table = new Table(env);
+    }
+
+    @Test
+    void changesAreAppliedInOrderAndPublished() throws InterruptedException {
+        TableStage stage = new TableStage(logger, table, "table-test");
+        List<Integer> applied = new ArrayList<>();
+        long last = 0;
+        for (int i = 0; i < 20; i++) {
+            int card = i;
+            last = stage.submit(() -> {
+                applied.add(card);
+                table.putCard(card, card % config.tableSize);
+            });
+        }
+        stage.submitAndWait(() -> {});
+        stage.close();
+
+        assertEquals(20, last);
+        for (int i = 0; i < 20; i++)
+            assertEquals(i, applied.get(i));
+        TableStage.View view = stage.view();
+        assertEquals(21, view.applied);
+        assertEquals(19, view.slotToCard[19 % config.tableSize]);
+    }
+
+    @Test
+    void submitWaitsWhileTheQueueIsFull() throws InterruptedException {
+        TableStage stage = new TableStage(logger, table, "table-test");
+        CountDownLatch release = new CountDownLatch(1);
+        stage.submit(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException ignored) {
+            }
+        });
+        // the first change may still be in the queue until the stage takes it
+        for (int i = 0; i < TableStage.CAPACITY - 1; i++)
+            stage.submit(() -> {});
+
+        Thread submitter = new Thread(() -> {
+            try {
+                stage.submit(() -> {});
+                stage.submit(() -> {});
+            } catch (InterruptedException ignored) {
+            }
+        });
+        submitter.start();
+        submitter.join(200);
+        assertTrue(submitter.isAlive());
+        assertEquals(0, stage.view().applied);
+
+        release.countDown();
+        submitter.join(2000);
+        assertFalse(submitter.isAlive());
+        stage.close();
+        assertEquals(TableStage.CAPACITY + 2, stage.view().applied);
+    }
+
+    @Test
+    void pipelinedDealerRunsTheGameToTheEnd() {
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        for (int i = 0; i < players.length; i++)
+            players[i] = new Player(env, dealer, table, i, false);
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            Thread game = new Thread(dealer, "dealer");
+            game.start();
+            game.join();
+        });
+
+        GameStats stats = dealer.stats();
+        assertTrue(stats.sets() > 0);
+        assertEquals(stats.sets(), players[0].score() + players[1].score());
+        assertEquals(0, table.countCards());
+    }
+
+    @Test
+    void pipelinedDealerReshufflesAFirstDealWithoutASet() {
+        Properties properties = new Properties();
+        properties.put("HumanPlayers", "1");
+        properties.put("ComputerPlayers", "0");
+        properties.put("FeatureCount", "4");
+        properties.put("TableDelaySeconds", "0");
+        properties.put("TurnTimeoutSeconds", "60");
+        properties.put("DealerPipeline", "True");
+        config = new Config(logger, properties);
+        env = new Env(logger, config, ui, new UtilImpl(config));
+        table = new Table(env);
+        Player[] players = new Player[config.players];
+        Dealer dealer = new Dealer(env, table, players);
+        players[0] = new Player(env, dealer, table, 0, true);
+
+        // a full table without a set (and the whole deck)
+        List<Integer> cards = new ArrayList<>();
+        for (int card = 0; card < config.deckSize && cards.size() < config.tableSize; card++) {
+            cards.add(card);
+            if (env.util.containsSet(cards)) cards.remove(cards.size() - 1);
+        }
+        assertEquals(config.tableSize, cards.size());
+        int[] slotToCard = new int[config.tableSize];
+        for (int slot = 0; slot < slotToCard.length; slot++)
+            slotToCard[slot] = cards.get(slot);
+        int[] deck = new int[config.deckSize];
+        for (int card = 0; card < deck.length; card++)
+            deck[card] = card;
+        dealer.resume(new GameSnapshot(config.featureSize, config.deckSize, config.tableSize, 1, 0,
+                config.turnTimeoutMillis, 0, 0, deck, slotToCard, new int[config.featureSize], new int[1],
+                new int[1], new int[1], new boolean[1], new long[1]));
+
+        assertTimeoutPreemptively(Duration.ofSeconds(20), () -> {
+            Thread game = new Thread(dealer, "dealer");
+            game.start();
+            // the table is reshuffled right away, not when the turn times out
+            while (!env.util.containsSet(tableCards())) Thread.sleep(5);
+            assertTrue(dealer.stats().reshuffles() > 0);
+            dealer.terminate();
+            game.join();
+        });
+    }
+
+    private List<Integer> tableCards() {
+        List<Integer> cards = new ArrayList<>();
+        for (int card : table.slotToCard)
+            if (card != Table.EMPTY) cards.add(card);
+        return cards;
+    }
+}
@@ -7,17 +7,20 @@ import bguspl.set.Util;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.Properties;
 import java.util.logging.Logger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 class TableTest {
 
     Table table;
-    private Integer[] slotToCard;
-    private Integer[] cardToSlot;
+    private int[] slotToCard;
+    private int[] cardToSlot;
 
     @BeforeEach
     void setUp() {
@@ -32,8 +35,10 @@ class TableTest {
         properties.put("PlayerKeys2", "85,73,79,80");
         MockLogger logger = new MockLogger();
         Config config = new Config(logger, properties);
-        slotToCard = new Integer[config.tableSize];
-        cardToSlot = new Integer[config.deckSize];
+        slotToCard = new int[config.tableSize];
+        cardToSlot = new int[config.deckSize];
+        Arrays.fill(slotToCard, Table.EMPTY);
+        Arrays.fill(cardToSlot, Table.EMPTY);
 
         Env env = new Env(logger, config, new MockUserInterface(), new MockUtil());
         table = new Table(env, slotToCard, cardToSlot);
@@ -58,8 +63,8 @@ class TableTest {
     private void placeSomeCardsAndAssert() throws InterruptedException {
         table.placeCard(8, 2);
 
-        assertEquals(8, (int) slotToCard[2]);
-        assertEquals(2, (int) cardToSlot[8]);
+        assertEquals(8, slotToCard[2]);
+        assertEquals(2, cardToSlot[8]);
     }
 
     @Test
@@ -163,7 +168,7 @@ class TableTest {
         table.removeCard(2);
 
         //check the function
-        assertEquals(slotToCard[2],null);
+        assertEquals(slotToCard[2],Table.EMPTY);
     }
 
     @Test
@@ -176,4 +181,60 @@ class TableTest {
         assertEquals(slotToCard[1],2);
     }
 
+    @Test
+    void tokens()
+    {
+        table.placeToken(0, 1);
+        table.placeToken(0, 3);
+        table.placeToken(1, 3);
+        // a second token on the same slot is ignored
+        table.placeToken(0, 1);
+
+        assertEquals(2, table.tokenCount(0));
+        assertTrue(table.hasToken(1, 3));
+        assertEquals(2, table.tokensOnSlot(3));
+        int[] slots = new int[3];
+        assertEquals(2, table.tokens(0, slots));
+        assertEquals(1, slots[0]);
+        assertEquals(3, slots[1]);
+
+        assertTrue(table.removeToken(0, 1));
+        assertFalse(table.removeToken(0, 1));
+        assertEquals(1, table.tokens(0, slots));
+        assertEquals(3, slots[0]);
+    }
+
+    @Test
+    void removeTokensFromSlot()
+    {
+        table.placeToken(0, 2);
+        table.placeToken(0, 0);
+        table.placeToken(1, 2);
+
+        table.removeTokens(2);
+
+        assertEquals(0, table.tokensOnSlot(2));
+        assertFalse(table.hasToken(0, 2));
+        assertFalse(table.hasToken(1, 2));
+        assertTrue(table.hasToken(0, 0));
+        assertEquals(0, table.tokenCount(1));
+
+        table.removeAllTokens();
+        assertEquals(0, table.tokenCount(0));
+        assertEquals(0, table.tokensOnSlot(0));
+    }
+
+    @Test
+    void isOnTable()
+    {
+        // place a card and then remove it
+        table.placeCard(8, 2);
+        assertTrue(table.isOnTable(8));
+        table.removeCard(2);
+
+        //check the function
+        assertFalse(table.isOnTable(8));
+        assertEquals(Table.EMPTY, cardToSlot[8]);
+    }
+
 }